@@ -5,6 +5,7 @@ import java.util.Map;
 import commoble.morered.api.internal.APIRegistries;
 import commoble.morered.api.internal.DefaultWireProperties;
 import net.minecraft.block.Block;
+import net.minecraft.world.World;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.CapabilityInject;
 
@@ -112,4 +113,35 @@ public final class MoreRedAPI
 	{
 		return DefaultWireProperties.DEFAULT_CABLE_CONNECTOR;
 	}
+	
+	/**
+	 * Starts a bulk edit in the given world.
+	 * While a bulk edit is open, wire and cable blocks that are placed, removed, or updated in that world
+	 * don't update their shapes or power right away; the affected positions are remembered instead.
+	 * When the last open bulk edit in the world ends, the remembered shapes are updated,
+	 * each affected wire network is solved once, and clients are sent the results together.
+	 * 
+	 * This is intended for placing many blocks at once, such as pasting a structure,
+	 * where updating power after each block would repeat the same work many times.
+	 * Bulk edits can be nested; each call to beginBulkEdit must be followed by a call to endBulkEdit
+	 * (use try/finally) as soon as the blocks have been placed, in the same method that began it.
+	 * Bulk edits that are left open are ended at the end of the world's next tick with a warning,
+	 * but until then they hold back the updates of every wire in the world, not just the edited ones.
+	 * Does nothing on the client.
+	 * @param world The world that blocks are about to be placed in
+	 */
+	public static void beginBulkEdit(World world)
+	{
+		APIRegistries.getBulkEditHandler().beginBulkEdit(world);
+	}
+	
+	/**
+	 * Ends a bulk edit started by {@link #beginBulkEdit}.
+	 * If this was the last open bulk edit in the world, the wire updates that were held back are run now.
+	 * @param world The world the bulk edit was started in
+	 */
+	public static void endBulkEdit(World world)
+	{
+		APIRegistries.getBulkEditHandler().endBulkEdit(world);
+	}
 }
@@ -20,6 +20,10 @@ public class APIRegistries
 	private static Map<Block, WireConnector> cableConnectabilities = new ConcurrentHashMap<>();
 	public static Map<Block, WireConnector> getCableConnectabilities() { return cableConnectabilities; }
 	
+	private static BulkEditHandler bulkEditHandler = BulkEditHandler.NONE;
+	public static BulkEditHandler getBulkEditHandler() { return bulkEditHandler; }
+	public static void setBulkEditHandler(BulkEditHandler handler) { bulkEditHandler = handler; }
+	
 	public static void freezeRegistries()
 	{
 		wireConnectabilities = freezeAPIRegistry(wireConnectabilities);
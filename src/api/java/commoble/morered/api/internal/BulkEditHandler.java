@@ -0,0 +1,26 @@
+package commoble.morered.api.internal;
+
+import net.minecraft.world.World;
+
+/**
+ * Implemented by More Red to back MoreRedAPI's bulk edit methods, so that the API doesn't depend on More Red's internals
+ */
+public interface BulkEditHandler
+{
+	public static final BulkEditHandler NONE = new BulkEditHandler()
+	{
+		@Override
+		public void beginBulkEdit(World world)
+		{
+		}
+
+		@Override
+		public void endBulkEdit(World world)
+		{
+		}
+	};
+	
+	public void beginBulkEdit(World world);
+	
+	public void endBulkEdit(World world);
+}
@@ -0,0 +1,45 @@
+package commoble.morered.benchmark;
+
+import commoble.morered.wires.WirePowerInChunk;
+import commoble.morered.wires.WirePowerInChunkCapability;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.util.LazyOptional;
+
+/**
+ * Chunk of a {@link BenchmarkWorld}, which only holds wire power; its blockstates are read from the world.
+ *
+ * Capabilities aren't attached or injected outside of a running game,
+ * so the chunk hands out its wire power storage for the (null) wire power capability itself.
+ */
+public class BenchmarkChunk extends Chunk
+{
+	private final WirePowerInChunk wirePower;
+	private final LazyOptional<WirePowerInChunk> wirePowerHolder;
+
+	public BenchmarkChunk(World world, ChunkPos pos)
+	{
+		super(world, pos, null);
+		this.wirePower = new WirePowerInChunk(this);
+		this.wirePowerHolder = LazyOptional.of(() -> this.wirePower);
+	}
+
+	@Override
+	public BlockState getBlockState(BlockPos pos)
+	{
+		return this.getLevel().getBlockState(pos);
+	}
+
+	@Override
+	public <T> LazyOptional<T> getCapability(Capability<T> cap, Direction side)
+	{
+		if (cap == WirePowerInChunkCapability.INSTANCE)
+			return this.wirePowerHolder.cast();
+		return super.getCapability(cap, side);
+	}
+}
@@ -0,0 +1,317 @@
+package commoble.morered.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.fluid.Fluid;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.item.crafting.RecipeManager;
+import net.minecraft.profiler.EmptyProfiler;
+import net.minecraft.scoreboard.Scoreboard;
+import net.minecraft.tags.ITagCollectionSupplier;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.Direction;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.SoundEvent;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.DynamicRegistries;
+import net.minecraft.world.Difficulty;
+import net.minecraft.world.DimensionType;
+import net.minecraft.world.EmptyTickList;
+import net.minecraft.world.ITickList;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.AbstractChunkProvider;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.storage.MapData;
+import net.minecraftforge.common.util.Constants;
+
+/**
+ * In-memory stand-in for a server world, holding only blockstates, tile entities, and wire power.
+ *
+ * It has no real chunks, entities, lighting, or ticks; every position in the build height counts as loaded
+ * unless its chunk has been marked as unloaded with {@link #setChunkLoaded}.
+ * Chunks only exist to hold wire power (see {@link BenchmarkChunk}).
+ * Block changes made through setBlock notify neighbors and call onPlace/onRemove like a real world does,
+ * so wire power propagation runs the same code paths as it does in game.
+ * It isn't a ServerWorld, so the server-only caches (the wire graph, sync buffers, the scheduler) aren't involved unless a benchmark uses them directly;
+ * benchmarks measure the propagation itself.
+ */
+public class BenchmarkWorld extends World
+{
+	private final Long2ObjectOpenHashMap<BlockState> states = new Long2ObjectOpenHashMap<>();
+	private final Long2ObjectOpenHashMap<TileEntity> tileEntities = new Long2ObjectOpenHashMap<>();
+	private final Long2ObjectOpenHashMap<BenchmarkChunk> chunks = new Long2ObjectOpenHashMap<>();
+	private final LongOpenHashSet unloadedChunks = new LongOpenHashSet();
+	private final Function<BlockState, TileEntity> tileEntityFactory;
+
+	/**
+	 * @param tileEntityFactory Creates the tile entity for blockstates that have one (blocks registered through forge can't make their own here)
+	 */
+	public BenchmarkWorld(Function<BlockState, TileEntity> tileEntityFactory)
+	{
+		super(new ClientWorld.ClientWorldInfo(Difficulty.NORMAL, false, false),
+			World.OVERWORLD,
+			DynamicRegistries.builtin().dimensionTypes().get(DimensionType.OVERWORLD_LOCATION),
+			() -> EmptyProfiler.INSTANCE,
+			false, false, 0L);
+		this.tileEntityFactory = tileEntityFactory;
+	}
+
+	/**
+	 * Sets a blockstate without notifying anything or calling onPlace, creating a tile entity if the state needs one;
+	 * used to build networks in their final state before measuring
+	 * @param pos The position to set the state at
+	 * @param state The state to set
+	 */
+	public void putBlock(BlockPos pos, BlockState state)
+	{
+		long key = pos.asLong();
+		if (state.isAir())
+		{
+			this.states.remove(key);
+		}
+		else
+		{
+			this.states.put(key, state);
+		}
+		this.tileEntities.remove(key);
+		if (state.hasTileEntity())
+		{
+			TileEntity te = this.tileEntityFactory.apply(state);
+			if (te != null)
+			{
+				te.setLevelAndPosition(this, pos.immutable());
+				this.tileEntities.put(key, te);
+			}
+		}
+	}
+
+	public int getBlockCount()
+	{
+		return this.states.size();
+	}
+
+	/**
+	 * Marks a chunk as loaded or unloaded; the blocks in an unloaded chunk are kept, but the chunk is reported as not loaded
+	 * @param chunkX The chunk's x-coordinate
+	 * @param chunkZ The chunk's z-coordinate
+	 * @param loaded Whether the chunk is loaded
+	 */
+	public void setChunkLoaded(int chunkX, int chunkZ, boolean loaded)
+	{
+		long key = ChunkPos.asLong(chunkX, chunkZ);
+		if (loaded)
+		{
+			this.unloadedChunks.remove(key);
+		}
+		else
+		{
+			this.unloadedChunks.add(key);
+		}
+	}
+
+	@Override
+	public BlockState getBlockState(BlockPos pos)
+	{
+		BlockState state = this.states.get(pos.asLong());
+		return state == null ? Blocks.AIR.defaultBlockState() : state;
+	}
+
+	@Override
+	public FluidState getFluidState(BlockPos pos)
+	{
+		return this.getBlockState(pos).getFluidState();
+	}
+
+	@Override
+	@Nullable
+	public TileEntity getBlockEntity(BlockPos pos)
+	{
+		return this.tileEntities.get(pos.asLong());
+	}
+
+	@Override
+	public boolean setBlock(BlockPos pos, BlockState state, int flags, int recursionLeft)
+	{
+		if (isOutsideBuildHeight(pos))
+			return false;
+		BlockState oldState = this.getBlockState(pos);
+		if (oldState == state)
+			return false;
+		BlockPos immutablePos = pos.immutable();
+		boolean isMoving = (flags & Constants.BlockFlags.IS_MOVING) != 0;
+		this.putBlock(immutablePos, state);
+		oldState.onRemove(this, immutablePos, state, isMoving);
+		state.onPlace(this, immutablePos, oldState, isMoving);
+		if ((flags & Constants.BlockFlags.BLOCK_UPDATE) != 0)
+		{
+			this.blockUpdated(immutablePos, oldState.getBlock());
+		}
+		if ((flags & Constants.BlockFlags.NO_NEIGHBOR_DROPS) == 0 && recursionLeft > 0)
+		{
+			int neighborFlags = flags & ~(Constants.BlockFlags.BLOCK_UPDATE | Constants.BlockFlags.NO_NEIGHBOR_DROPS);
+			oldState.updateIndirectNeighbourShapes(this, immutablePos, neighborFlags, recursionLeft - 1);
+			state.updateNeighbourShapes(this, immutablePos, neighborFlags, recursionLeft - 1);
+			state.updateIndirectNeighbourShapes(this, immutablePos, neighborFlags, recursionLeft - 1);
+		}
+		return true;
+	}
+
+	@Override
+	@Nullable
+	public IChunk getChunk(int chunkX, int chunkZ, ChunkStatus requiredStatus, boolean nonnull)
+	{
+		long key = ChunkPos.asLong(chunkX, chunkZ);
+		if (!nonnull && this.unloadedChunks.contains(key))
+			return null;
+		BenchmarkChunk chunk = this.chunks.get(key);
+		if (chunk == null)
+		{
+			chunk = new BenchmarkChunk(this, new ChunkPos(chunkX, chunkZ));
+			this.chunks.put(key, chunk);
+		}
+		return chunk;
+	}
+
+	@Override
+	public boolean hasChunk(int chunkX, int chunkZ)
+	{
+		return !this.unloadedChunks.contains(ChunkPos.asLong(chunkX, chunkZ));
+	}
+
+	@Override
+	public boolean isLoaded(BlockPos pos)
+	{
+		return !isOutsideBuildHeight(pos) && this.hasChunk(pos.getX() >> 4, pos.getZ() >> 4);
+	}
+
+	@Override
+	public void blockEntityChanged(BlockPos pos, TileEntity te)
+	{
+		// no chunks to mark unsaved
+	}
+
+	@Override
+	public void sendBlockUpdated(BlockPos pos, BlockState oldState, BlockState newState, int flags)
+	{
+		// no clients
+	}
+
+	@Override
+	public void playSound(@Nullable PlayerEntity player, double x, double y, double z, SoundEvent sound, SoundCategory category, float volume, float pitch)
+	{
+	}
+
+	@Override
+	public void playSound(@Nullable PlayerEntity player, Entity entity, SoundEvent sound, SoundCategory category, float volume, float pitch)
+	{
+	}
+
+	@Override
+	public void levelEvent(@Nullable PlayerEntity player, int type, BlockPos pos, int data)
+	{
+	}
+
+	@Override
+	public void destroyBlockProgress(int breakerID, BlockPos pos, int progress)
+	{
+	}
+
+	@Override
+	@Nullable
+	public Entity getEntity(int id)
+	{
+		return null;
+	}
+
+	@Override
+	public List<? extends PlayerEntity> players()
+	{
+		return Collections.emptyList();
+	}
+
+	@Override
+	@Nullable
+	public MapData getMapData(String id)
+	{
+		return null;
+	}
+
+	@Override
+	public void setMapData(MapData data)
+	{
+	}
+
+	@Override
+	public int getFreeMapId()
+	{
+		return 0;
+	}
+
+	@Override
+	public Scoreboard getScoreboard()
+	{
+		return null;
+	}
+
+	@Override
+	public RecipeManager getRecipeManager()
+	{
+		return null;
+	}
+
+	@Override
+	public ITagCollectionSupplier getTagManager()
+	{
+		return null;
+	}
+
+	@Override
+	public ITickList<net.minecraft.block.Block> getBlockTicks()
+	{
+		return EmptyTickList.empty();
+	}
+
+	@Override
+	public ITickList<Fluid> getLiquidTicks()
+	{
+		return EmptyTickList.empty();
+	}
+
+	@Override
+	public AbstractChunkProvider getChunkSource()
+	{
+		return null;
+	}
+
+	@Override
+	public DynamicRegistries registryAccess()
+	{
+		return DynamicRegistries.builtin();
+	}
+
+	@Override
+	public Biome getUncachedNoiseBiome(int x, int y, int z)
+	{
+		return null;
+	}
+
+	@Override
+	public float getShade(Direction direction, boolean shaded)
+	{
+		return 1F;
+	}
+}
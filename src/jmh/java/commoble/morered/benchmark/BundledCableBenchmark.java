@@ -0,0 +1,59 @@
+package commoble.morered.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Measures a sixteen-channel bundled cable bus with a colored cable tap on every channel.
+ * Each operation turns one tap on and off, moving to the next tap each time,
+ * so power changes reach every channel of the bus over the course of a measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BundledCableBenchmark
+{
+	@Param({"64"})
+	public int length;
+
+	@Param({"4"})
+	public int tapSpacing;
+
+	private BenchmarkWorld world;
+	private BlockPos[] sources;
+	private int nextSource = 0;
+
+	@Setup
+	public void setup()
+	{
+		WireFixture fixture = WireFixture.get();
+		this.world = fixture.makeWorld();
+		this.sources = fixture.buildBus(this.world, this.length, this.tapSpacing, 3);
+	}
+
+	@Benchmark
+	public BenchmarkWorld toggleTap()
+	{
+		BlockPos sourcePos = this.sources[this.nextSource];
+		this.nextSource = (this.nextSource + 1) % this.sources.length;
+		WireFixture.setSource(this.world, sourcePos, true);
+		WireFixture.setSource(this.world, sourcePos, false);
+		return this.world;
+	}
+}
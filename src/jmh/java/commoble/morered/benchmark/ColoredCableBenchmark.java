@@ -0,0 +1,67 @@
+package commoble.morered.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Measures turning a colored cable network on and off by placing and removing a redstone block next to it.
+ * Colored cables still update block by block, so the line is kept shorter than the red alloy line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ColoredCableBenchmark
+{
+	public enum Layout
+	{
+		/** a straight line of 64 cables */
+		LINE,
+		/** a 16x16 grid of cables */
+		GRID
+	}
+
+	@Param
+	public Layout layout;
+
+	private BenchmarkWorld world;
+	private BlockPos sourcePos;
+
+	@Setup
+	public void setup()
+	{
+		WireFixture fixture = WireFixture.get();
+		this.world = fixture.makeWorld();
+		if (this.layout == Layout.LINE)
+		{
+			this.sourcePos = WireFixture.buildLine(this.world, fixture.coloredCables[0], 64);
+		}
+		else
+		{
+			this.sourcePos = WireFixture.buildGrid(this.world, fixture.coloredCables[0], 16);
+		}
+	}
+
+	@Benchmark
+	public BenchmarkWorld toggleSource()
+	{
+		WireFixture.setSource(this.world, this.sourcePos, true);
+		WireFixture.setSource(this.world, this.sourcePos, false);
+		return this.world;
+	}
+}
@@ -0,0 +1,214 @@
+package commoble.morered.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import commoble.morered.util.PixelShapeMask;
+import commoble.morered.wires.AbstractWireBlock;
+import commoble.morered.wires.BundledCableBlock;
+import commoble.morered.wires.RedAlloyWireBlock;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockRayTraceResult;
+import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.util.math.shapes.VoxelShapes;
+import net.minecraft.util.math.vector.Vector3d;
+
+/**
+ * Compares expanded wire shapes built by or-ing pixel masks together against shapes built
+ * with one {@link VoxelShapes#or} per line (how they were built before), both the cost of building a shape on a cache miss
+ * and the cost of using the shapes afterward (raytracing them and listing their boxes).
+ * One operation covers the same 256 random expanded shape indices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExpandedShapeBenchmark
+{
+	private static final int INDEX_COUNT = 256;
+	private static final int RAY_COUNT = 16;
+
+	public enum Wire
+	{
+		RED_ALLOY,
+		BUNDLED_CABLE
+	}
+
+	@Param
+	public Wire wire;
+
+	private VoxelShape[] shapesByStateIndex;
+	private VoxelShape[] lineShapes;
+	private PixelShapeMask[] stateMasks;
+	private PixelShapeMask[] lineMasks;
+	private long[] indices;
+	private VoxelShape[] legacyShapes;
+	private VoxelShape[] maskedShapes;
+	private Vector3d[] rayStarts;
+	private Vector3d[] rayEnds;
+
+	@Setup
+	public void setup()
+	{
+		WireFixture.get();
+		switch(this.wire)
+		{
+			case RED_ALLOY:
+				this.shapesByStateIndex = RedAlloyWireBlock.SHAPES_BY_STATE_INDEX;
+				this.lineShapes = RedAlloyWireBlock.LINE_SHAPES;
+				break;
+			case BUNDLED_CABLE:
+			default:
+				this.shapesByStateIndex = BundledCableBlock.SHAPES_BY_STATE_INDEX;
+				this.lineShapes = BundledCableBlock.LINE_SHAPES;
+				break;
+		}
+		this.stateMasks = PixelShapeMask.ofAll(this.shapesByStateIndex);
+		this.lineMasks = PixelShapeMask.ofAll(this.lineShapes);
+
+		Random random = new Random(0);
+		this.indices = new long[INDEX_COUNT];
+		this.legacyShapes = new VoxelShape[INDEX_COUNT];
+		this.maskedShapes = new VoxelShape[INDEX_COUNT];
+		for (int i=0; i<INDEX_COUNT; i++)
+		{
+			long index = makeRandomIndex(random);
+			this.indices[i] = index;
+			this.legacyShapes[i] = makeLegacyShape(this.shapesByStateIndex, this.lineShapes, index);
+			this.maskedShapes[i] = AbstractWireBlock.makeExpandedShapeForIndex(this.stateMasks, this.lineMasks, new HashMap<>(), index);
+		}
+
+		// rays from random points outside the block toward random points inside it
+		this.rayStarts = new Vector3d[RAY_COUNT];
+		this.rayEnds = new Vector3d[RAY_COUNT];
+		for (int i=0; i<RAY_COUNT; i++)
+		{
+			this.rayStarts[i] = new Vector3d(random.nextDouble()*4D - 1.5D, random.nextDouble()*4D - 1.5D, random.nextDouble()*4D - 1.5D);
+			this.rayEnds[i] = new Vector3d(random.nextDouble(), random.nextDouble(), random.nextDouble());
+		}
+	}
+
+	// a random set of attached faces, each connecting to a random set of its four neighbors
+	private static long makeRandomIndex(Random random)
+	{
+		long index = 0;
+		for (int side=0; side<6; side++)
+		{
+			if (random.nextInt(3) == 0)
+			{
+				index |= (1L << side);
+				for (int subSide=0; subSide<4; subSide++)
+				{
+					if (random.nextBoolean())
+					{
+						index |= (1L << (side*4 + subSide + 6));
+					}
+				}
+			}
+		}
+		return index;
+	}
+
+	// how expanded shapes were built before they were built from masks
+	private static VoxelShape makeLegacyShape(VoxelShape[] shapesByStateIndex, VoxelShape[] lineShapes, long index)
+	{
+		int primaryShapeIndex = (int) (index & 63);
+		long expandedShapeIndex = index >> 6;
+		VoxelShape shape = shapesByStateIndex[primaryShapeIndex];
+		int flag = 1;
+		for (int side = 0; side < 6; side++)
+		{
+			for (int subSide = 0; subSide < 4; subSide++)
+			{
+				if ((expandedShapeIndex & flag) != 0)
+				{
+					shape = VoxelShapes.or(shape, AbstractWireBlock.getLineShape(lineShapes, side, subSide));
+				}
+				flag = flag << 1;
+			}
+		}
+		return shape;
+	}
+
+	@Benchmark
+	public void buildLegacy(Blackhole blackhole)
+	{
+		for (long index : this.indices)
+		{
+			blackhole.consume(makeLegacyShape(this.shapesByStateIndex, this.lineShapes, index));
+		}
+	}
+
+	// a new intern map per shape, so every build is a miss
+	@Benchmark
+	public void buildFromMasks(Blackhole blackhole)
+	{
+		for (long index : this.indices)
+		{
+			blackhole.consume(AbstractWireBlock.makeExpandedShapeForIndex(this.stateMasks, this.lineMasks, new HashMap<>(), index));
+		}
+	}
+
+	@Benchmark
+	public void toAabbsLegacy(Blackhole blackhole)
+	{
+		toAabbs(this.legacyShapes, blackhole);
+	}
+
+	@Benchmark
+	public void toAabbsFromMasks(Blackhole blackhole)
+	{
+		toAabbs(this.maskedShapes, blackhole);
+	}
+
+	@Benchmark
+	public void clipLegacy(Blackhole blackhole)
+	{
+		this.clip(this.legacyShapes, blackhole);
+	}
+
+	@Benchmark
+	public void clipFromMasks(Blackhole blackhole)
+	{
+		this.clip(this.maskedShapes, blackhole);
+	}
+
+	private static void toAabbs(VoxelShape[] shapes, Blackhole blackhole)
+	{
+		for (VoxelShape shape : shapes)
+		{
+			List<AxisAlignedBB> boxes = shape.toAabbs();
+			blackhole.consume(boxes);
+		}
+	}
+
+	private void clip(VoxelShape[] shapes, Blackhole blackhole)
+	{
+		for (VoxelShape shape : shapes)
+		{
+			for (int ray=0; ray<RAY_COUNT; ray++)
+			{
+				BlockRayTraceResult result = shape.clip(this.rayStarts[ray], this.rayEnds[ray], BlockPos.ZERO);
+				blackhole.consume(result);
+			}
+		}
+	}
+}
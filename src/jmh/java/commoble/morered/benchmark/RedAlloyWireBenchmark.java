@@ -0,0 +1,74 @@
+package commoble.morered.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Measures turning a red alloy wire network on and off by placing and removing a redstone block next to it.
+ * One operation is a full on/off cycle, so every operation does the same work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RedAlloyWireBenchmark
+{
+	public enum Layout
+	{
+		/** a straight line of 256 wires */
+		LINE,
+		/** a 64x64 grid of wires */
+		GRID,
+		/** a 15x15x15 lattice of stone blocks covered in wire */
+		MESH
+	}
+
+	@Param
+	public Layout layout;
+
+	private BenchmarkWorld world;
+	private BlockPos sourcePos;
+
+	@Setup
+	public void setup()
+	{
+		WireFixture fixture = WireFixture.get();
+		this.world = fixture.makeWorld();
+		switch(this.layout)
+		{
+			case LINE:
+				this.sourcePos = WireFixture.buildLine(this.world, fixture.redAlloyWire, 256);
+				break;
+			case GRID:
+				this.sourcePos = WireFixture.buildGrid(this.world, fixture.redAlloyWire, 64);
+				break;
+			case MESH:
+			default:
+				this.sourcePos = WireFixture.buildMesh(this.world, fixture.redAlloyWire, 15);
+				break;
+		}
+	}
+
+	@Benchmark
+	public BenchmarkWorld toggleSource()
+	{
+		WireFixture.setSource(this.world, this.sourcePos, true);
+		WireFixture.setSource(this.world, this.sourcePos, false);
+		return this.world;
+	}
+}
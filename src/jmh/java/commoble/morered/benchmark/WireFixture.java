@@ -0,0 +1,242 @@
+package commoble.morered.benchmark;
+
+import java.util.Map;
+
+import commoble.morered.api.ExpandedPowerSupplier;
+import commoble.morered.api.MoreRedAPI;
+import commoble.morered.api.WireConnector;
+import commoble.morered.wires.AbstractWireBlock;
+import commoble.morered.wires.BundledCableBlock;
+import commoble.morered.wires.BundledCableTileEntity;
+import commoble.morered.wires.ColoredCableBlock;
+import commoble.morered.wires.ColoredCableTileEntity;
+import commoble.morered.wires.RedAlloyWireBlock;
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.material.Material;
+import net.minecraft.item.DyeColor;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.tileentity.TileEntityType;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.Bootstrap;
+
+/**
+ * Wire blocks and network layouts for the benchmarks.
+ *
+ * The registered blocks only exist inside a running game, so the fixture makes its own instances
+ * and registers the same wire behaviour for them that MoreRed registers for its own blocks in common setup.
+ * Every layout sits on a stone floor at y=0 with wires attached to the floor at y=1,
+ * and has a source position where a redstone block can be placed and removed to toggle the network.
+ */
+public class WireFixture
+{
+	private static WireFixture instance = null;
+
+	public final RedAlloyWireBlock redAlloyWire;
+	public final ColoredCableBlock[] coloredCables = new ColoredCableBlock[16];
+	public final BundledCableBlock bundledCable;
+
+	private TileEntityType<ColoredCableTileEntity> coloredCableType;
+	private TileEntityType<BundledCableTileEntity> bundledCableType;
+
+	private WireFixture()
+	{
+		AbstractBlock.Properties properties = AbstractBlock.Properties.of(Material.DECORATION).noCollission().instabreak();
+		this.redAlloyWire = new RedAlloyWireBlock(properties);
+		for (int i=0; i<16; i++)
+		{
+			this.coloredCables[i] = new ColoredCableBlock(properties, DyeColor.byId(i));
+		}
+		this.bundledCable = new BundledCableBlock(properties);
+		this.coloredCableType = TileEntityType.Builder.of(() -> new ColoredCableTileEntity(this.coloredCableType), this.coloredCables).build(null);
+		this.bundledCableType = TileEntityType.Builder.of(() -> new BundledCableTileEntity(this.bundledCableType), this.bundledCable).build(null);
+
+		Map<Block, WireConnector> wireConnectors = MoreRedAPI.getWireConnectabilityRegistry();
+		Map<Block, ExpandedPowerSupplier> expandedPowerSuppliers = MoreRedAPI.getExpandedPowerRegistry();
+		Map<Block, WireConnector> cableConnectors = MoreRedAPI.getCableConnectabilityRegistry();
+		wireConnectors.put(this.redAlloyWire, AbstractWireBlock::canWireConnectToAdjacentWireOrCable);
+		expandedPowerSuppliers.put(this.redAlloyWire, this.redAlloyWire::getExpandedPower);
+		for (ColoredCableBlock coloredCable : this.coloredCables)
+		{
+			wireConnectors.put(coloredCable, coloredCable::canConnectToAdjacentWireOrCable);
+			expandedPowerSuppliers.put(coloredCable, coloredCable::getExpandedPower);
+			cableConnectors.put(coloredCable, coloredCable::canConnectToAdjacentWireOrCable);
+		}
+		cableConnectors.put(this.bundledCable, AbstractWireBlock::canWireConnectToAdjacentWireOrCable);
+	}
+
+	public static WireFixture get()
+	{
+		if (instance == null)
+		{
+			Bootstrap.bootStrap();
+			instance = new WireFixture();
+		}
+		return instance;
+	}
+
+	public BenchmarkWorld makeWorld()
+	{
+		return new BenchmarkWorld(this::createTileEntity);
+	}
+
+	protected TileEntity createTileEntity(BlockState state)
+	{
+		Block block = state.getBlock();
+		if (block == this.bundledCable)
+			return this.bundledCableType.create();
+		if (block instanceof ColoredCableBlock)
+			return this.coloredCableType.create();
+		return null;
+	}
+
+	/**
+	 * @param block A wire block
+	 * @param faces The attachment directions of the wire's faces
+	 * @return The wire's state with the given faces attached
+	 */
+	public static BlockState withFaces(Block block, Direction... faces)
+	{
+		BlockState state = block.defaultBlockState();
+		for (Direction face : faces)
+		{
+			state = state.setValue(AbstractWireBlock.INTERIOR_FACES[face.ordinal()], true);
+		}
+		return state;
+	}
+
+	/**
+	 * Builds a straight line of wire along the x-axis, with the source position just before its start
+	 * @param world The world to build in
+	 * @param block The wire block to use
+	 * @param length The number of wire blocks in the line
+	 * @return The source position
+	 */
+	public static BlockPos buildLine(BenchmarkWorld world, Block block, int length)
+	{
+		BlockState wire = withFaces(block, Direction.DOWN);
+		for (int x=0; x<length; x++)
+		{
+			world.putBlock(new BlockPos(x,0,0), Blocks.STONE.defaultBlockState());
+			world.putBlock(new BlockPos(x,1,0), wire);
+		}
+		return new BlockPos(-1,1,0);
+	}
+
+	/**
+	 * Builds a square grid of wire covering the floor, with the source position next to a corner
+	 * @param world The world to build in
+	 * @param block The wire block to use
+	 * @param size The width of the grid
+	 * @return The source position
+	 */
+	public static BlockPos buildGrid(BenchmarkWorld world, Block block, int size)
+	{
+		BlockState wire = withFaces(block, Direction.DOWN);
+		for (int x=0; x<size; x++)
+		{
+			for (int z=0; z<size; z++)
+			{
+				world.putBlock(new BlockPos(x,0,z), Blocks.STONE.defaultBlockState());
+				world.putBlock(new BlockPos(x,1,z), wire);
+			}
+		}
+		return new BlockPos(-1,1,0);
+	}
+
+	/**
+	 * Builds a lattice of single stone blocks (at positions whose coordinates are all even) inside a cube,
+	 * and covers every face of every stone block with wire.
+	 * Every wire block touches several stone blocks, so the mesh is full of convex edges and multi-face wire blocks.
+	 * @param world The world to build in
+	 * @param block The wire block to use
+	 * @param size The width of the cube
+	 * @return The source position, above the lattice
+	 */
+	public static BlockPos buildMesh(BenchmarkWorld world, Block block, int size)
+	{
+		BlockPos.Mutable mutaPos = new BlockPos.Mutable();
+		for (int x=0; x<size; x++)
+		{
+			for (int y=0; y<size; y++)
+			{
+				for (int z=0; z<size; z++)
+				{
+					mutaPos.set(x, y+1, z);
+					if (((x|y|z) & 1) == 0)
+					{
+						world.putBlock(mutaPos, Blocks.STONE.defaultBlockState());
+						continue;
+					}
+					BlockState wire = block.defaultBlockState();
+					boolean anyFaces = false;
+					for (Direction dir : Direction.values())
+					{
+						int nx = x + dir.getStepX();
+						int ny = y + dir.getStepY();
+						int nz = z + dir.getStepZ();
+						boolean inside = nx >= 0 && ny >= 0 && nz >= 0 && nx < size && ny < size && nz < size;
+						if (inside && ((nx|ny|nz) & 1) == 0)
+						{
+							wire = wire.setValue(AbstractWireBlock.INTERIOR_FACES[dir.ordinal()], true);
+							anyFaces = true;
+						}
+					}
+					if (anyFaces)
+					{
+						world.putBlock(mutaPos, wire);
+					}
+				}
+			}
+		}
+		// a wire in the top layer is attached to the stone below it; put the source beside it
+		return new BlockPos(-1, size, 1);
+	}
+
+	/**
+	 * Builds a bundled cable bus along the x-axis with a colored cable tap every few blocks, cycling through the sixteen colors.
+	 * Each tap runs along the z-axis away from the bus and has its own source position at its far end.
+	 * @param world The world to build in
+	 * @param length The number of bundled cable blocks in the bus
+	 * @param tapSpacing The distance between taps
+	 * @param tapLength The number of colored cable blocks in each tap
+	 * @return The source positions of the taps
+	 */
+	public BlockPos[] buildBus(BenchmarkWorld world, int length, int tapSpacing, int tapLength)
+	{
+		BlockState bus = withFaces(this.bundledCable, Direction.DOWN);
+		int taps = (length + tapSpacing - 1) / tapSpacing;
+		BlockPos[] sources = new BlockPos[taps];
+		for (int x=0; x<length; x++)
+		{
+			world.putBlock(new BlockPos(x,0,0), Blocks.STONE.defaultBlockState());
+			world.putBlock(new BlockPos(x,1,0), bus);
+			if (x % tapSpacing == 0)
+			{
+				int tap = x / tapSpacing;
+				BlockState cable = withFaces(this.coloredCables[tap % 16], Direction.DOWN);
+				for (int z=1; z<=tapLength; z++)
+				{
+					world.putBlock(new BlockPos(x,0,z), Blocks.STONE.defaultBlockState());
+					world.putBlock(new BlockPos(x,1,z), cable);
+				}
+				sources[tap] = new BlockPos(x, 1, tapLength+1);
+			}
+		}
+		return sources;
+	}
+
+	/**
+	 * Places or removes a redstone block at a source position, updating its neighbors
+	 * @param world The world the source is in
+	 * @param sourcePos The source position
+	 * @param powered Whether to place (true) or remove (false) the redstone block
+	 */
+	public static void setSource(BenchmarkWorld world, BlockPos sourcePos, boolean powered)
+	{
+		world.setBlock(sourcePos, powered ? Blocks.REDSTONE_BLOCK.defaultBlockState() : Blocks.AIR.defaultBlockState(), 3);
+	}
+}
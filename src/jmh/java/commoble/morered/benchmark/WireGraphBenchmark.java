@@ -0,0 +1,135 @@
+package commoble.morered.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import commoble.morered.wires.WireGraph;
+import commoble.morered.wires.WireNetwork;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Measures collecting a red alloy wire network through the cached wire graph (as the server does)
+ * against computing every position's links from the world (as the client does),
+ * and re-collecting it after a chunk in the middle of the network unloads and loads again.
+ *
+ * Setup also checks that a network collected from cached links stops at the edge of loaded space
+ * after a chunk unloads, instead of following links into the unloaded chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WireGraphBenchmark
+{
+	// the chunk that gets unloaded, in the middle of both layouts
+	private static final int UNLOADED_CHUNK_X = 2;
+	private static final int UNLOADED_CHUNK_Z = 0;
+
+	public enum Layout
+	{
+		/** a straight line of 256 wires */
+		LINE,
+		/** a 64x64 grid of wires */
+		GRID
+	}
+
+	@Param
+	public Layout layout;
+
+	private WireFixture fixture;
+	private BenchmarkWorld world;
+	private BlockPos seedPos;
+	private WireGraph graph;
+
+	@Setup
+	public void setup()
+	{
+		this.fixture = WireFixture.get();
+		this.world = this.fixture.makeWorld();
+		switch(this.layout)
+		{
+			case LINE:
+				WireFixture.buildLine(this.world, this.fixture.redAlloyWire, 256);
+				break;
+			case GRID:
+			default:
+				WireFixture.buildGrid(this.world, this.fixture.redAlloyWire, 64);
+				break;
+		}
+		this.seedPos = new BlockPos(0,1,0);
+		this.graph = new WireGraph();
+
+		int fullSize = this.collect(this.graph).size();
+		int uncachedSize = this.collect(null).size();
+		if (fullSize != uncachedSize)
+			throw new IllegalStateException("Cached network has " + fullSize + " positions, uncached network has " + uncachedSize);
+
+		// the graph now has links from the neighboring chunks into the chunk we're about to unload
+		this.unloadChunk();
+		WireNetwork unloadedNetwork = this.collect(this.graph);
+		for (int i=0; i<unloadedNetwork.size(); i++)
+		{
+			BlockPos pos = BlockPos.of(unloadedNetwork.getPackedPos(i));
+			if (pos.getX() >> 4 == UNLOADED_CHUNK_X && pos.getZ() >> 4 == UNLOADED_CHUNK_Z)
+				throw new IllegalStateException("Network collected from cached links contains " + pos + " in an unloaded chunk");
+		}
+		if (unloadedNetwork.size() != this.collect(null).size())
+			throw new IllegalStateException("Cached and uncached networks differ after a chunk unloaded");
+		this.loadChunk();
+		if (this.collect(this.graph).size() != fullSize)
+			throw new IllegalStateException("Network didn't recover its full size after the chunk loaded again");
+	}
+
+	private WireNetwork collect(WireGraph graph)
+	{
+		return WireNetwork.collect(this.world, this.fixture.redAlloyWire, this.seedPos, graph);
+	}
+
+	private void unloadChunk()
+	{
+		this.world.setChunkLoaded(UNLOADED_CHUNK_X, UNLOADED_CHUNK_Z, false);
+		this.graph.onChunkUnloaded(new ChunkPos(UNLOADED_CHUNK_X, UNLOADED_CHUNK_Z));
+	}
+
+	private void loadChunk()
+	{
+		this.world.setChunkLoaded(UNLOADED_CHUNK_X, UNLOADED_CHUNK_Z, true);
+		this.graph.onChunkLoaded(new ChunkPos(UNLOADED_CHUNK_X, UNLOADED_CHUNK_Z));
+	}
+
+	@Benchmark
+	public WireNetwork collectCached()
+	{
+		return this.collect(this.graph);
+	}
+
+	@Benchmark
+	public WireNetwork collectUncached()
+	{
+		return this.collect(null);
+	}
+
+	// one unload and one load, recollecting after each; the links around the chunk are recomputed every time
+	@Benchmark
+	public WireNetwork collectAcrossChunkUnload()
+	{
+		this.unloadChunk();
+		this.collect(this.graph);
+		this.loadChunk();
+		return this.collect(this.graph);
+	}
+}
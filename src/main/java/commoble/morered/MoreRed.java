@@ -32,10 +32,24 @@ import commoble.morered.wire_post.SyncPostsInChunkPacket;
 import commoble.morered.wire_post.WireBreakPacket;
 import commoble.morered.wire_post.WirePostTileEntity;
 import commoble.morered.wires.AbstractWireBlock;
+import commoble.morered.wires.AsyncNetworkSolver;
 import commoble.morered.wires.BundledCableBlock;
 import commoble.morered.wires.ColoredCableBlock;
 import commoble.morered.wires.RedAlloyWireBlock;
+import commoble.morered.wires.VoxelCache;
+import commoble.morered.wires.WireBoundaryCache;
+import commoble.morered.wires.WireBulkEdit;
 import commoble.morered.wires.WireCountLootFunction;
+import commoble.morered.wires.WireDragPlacementPacket;
+import commoble.morered.wires.WireGraph;
+import commoble.morered.wires.WireNeighborSignatures;
+import commoble.morered.wires.WirePowerInChunk;
+import commoble.morered.wires.WirePowerInChunkCapability;
+import commoble.morered.wires.WirePowerSyncPacket;
+import commoble.morered.wires.WirePropagationScheduler;
+import commoble.morered.wires.WireShapesInChunk;
+import commoble.morered.wires.WireShapesInChunkCapability;
+import commoble.morered.wires.WireSignalCache;
 import commoble.morered.wires.WireUpdateBuffer;
 import commoble.morered.wires.WireUpdatePacket;
 import net.minecraft.block.Block;
@@ -59,6 +73,8 @@ import net.minecraft.util.registry.Registry;
 import net.minecraft.world.IWorld;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkPrimerWrapper;
+import net.minecraft.world.chunk.IChunk;
 import net.minecraft.world.server.ServerWorld;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.common.MinecraftForge;
@@ -66,11 +82,15 @@ import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.CapabilityManager;
 import net.minecraftforge.common.crafting.CraftingHelper;
 import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.RegistryEvent;
 import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.TickEvent.WorldTickEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent.LeftClickBlock;
 import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ChunkDataEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.ChunkWatchEvent;
 import net.minecraftforge.eventbus.api.Event;
 import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.IEventBus;
@@ -120,6 +140,7 @@ public class MoreRed
 		IEventBus forgeBus = MinecraftForge.EVENT_BUS;
 		
 		ServerConfig.initServerConfig(modContext, fmlContext);
+		APIRegistries.setBulkEditHandler(WireBulkEdit.HANDLER);
 		
 		MoreRed.addModListeners(modBus);
 		MoreRed.addForgeListeners(forgeBus);
@@ -214,9 +235,21 @@ public class MoreRed
 			SyncPostsInChunkPacket::read,
 			SyncPostsInChunkPacket::handle);
 		PacketTypeFactory.register(packetID++, MoreRed.CHANNEL, WireUpdatePacket.CODEC, new WireUpdatePacket(ImmutableSet.of()));
+		MoreRed.CHANNEL.registerMessage(packetID++,
+			WirePowerSyncPacket.class,
+			WirePowerSyncPacket::write,
+			WirePowerSyncPacket::read,
+			WirePowerSyncPacket::handle);
+		MoreRed.CHANNEL.registerMessage(packetID++,
+			WireDragPlacementPacket.class,
+			WireDragPlacementPacket::write,
+			WireDragPlacementPacket::read,
+			WireDragPlacementPacket::handle);
 		
 		// register capabilities
 		CapabilityManager.INSTANCE.register(IPostsInChunk.class, new PostsInChunkCapability.Storage(), () -> new PostsInChunk(null));
+		CapabilityManager.INSTANCE.register(WirePowerInChunk.class, new WirePowerInChunkCapability.Storage(), () -> new WirePowerInChunk(null));
+		CapabilityManager.INSTANCE.register(WireShapesInChunk.class, new WireShapesInChunkCapability.Storage(), WireShapesInChunk::new);
 		CapabilityManager.INSTANCE.register(ChanneledPowerSupplier.class, new Capability.IStorage<ChanneledPowerSupplier>()
 			{
 				@Override
@@ -264,6 +297,11 @@ public class MoreRed
 		forgeBus.addListener(EventPriority.LOW, MoreRed::onEntityPlaceBlock);
 		forgeBus.addListener(EventPriority.LOW, MoreRed::onLeftClickBlock);
 		forgeBus.addListener(MoreRed::onWorldTick);
+		forgeBus.addListener(MoreRed::onChunkLoad);
+		forgeBus.addListener(MoreRed::onChunkUnload);
+		forgeBus.addListener(MoreRed::onChunkDataLoad);
+		forgeBus.addListener(MoreRed::onChunkWatch);
+		forgeBus.addListener(MoreRed::onRegisterCommands);
 	}
 	
 	public static void onAttachChunkCapabilities(AttachCapabilitiesEvent<Chunk> event)
@@ -271,6 +309,12 @@ public class MoreRed
 		PostsInChunk cap = new PostsInChunk(event.getObject());
 		event.addCapability(getModRL(ObjectNames.POSTS_IN_CHUNK), cap);
 		event.addListener(cap::onCapabilityInvalidated);
+		WirePowerInChunk wirePower = new WirePowerInChunk(event.getObject());
+		event.addCapability(getModRL(ObjectNames.WIRE_POWER_IN_CHUNK), wirePower);
+		event.addListener(wirePower::onCapabilityInvalidated);
+		WireShapesInChunk wireShapes = new WireShapesInChunk();
+		event.addCapability(getModRL(ObjectNames.WIRE_SHAPES_IN_CHUNK), wireShapes);
+		event.addListener(wireShapes::onCapabilityInvalidated);
 	}
 	
 	// catch and deny block placements on the server if they weren't caught on the client
@@ -282,6 +326,7 @@ public class MoreRed
 		if (iworld instanceof World && !iworld.isClientSide())
 		{
 			World world = (World)iworld;
+			long startNanos = MoreRedProfiler.startTiming();
 			
 			Set<ChunkPos> chunkPositions = PostsInChunk.getRelevantChunkPositionsNearPos(pos);
 			
@@ -321,6 +366,7 @@ public class MoreRed
 					});
 				}
 			}
+			MoreRedProfiler.recordPlacementScan(startNanos);
 		}
 	}
 	
@@ -393,13 +439,64 @@ public class MoreRed
 		wireBlock.destroyClickedSegment(state, serverWorld, pos, serverPlayer, destroySide, dropItems);
 	}
 	
+	static void onChunkLoad(ChunkEvent.Load event)
+	{
+		WireGraph.onChunkLoaded(event.getWorld(), event.getChunk().getPos());
+		WireBoundaryCache.onChunkLoaded(event.getWorld(), event.getChunk().getPos());
+	}
+	
+	static void onRegisterCommands(RegisterCommandsEvent event)
+	{
+		MoreRedCommands.register(event.getDispatcher());
+	}
+	
+	static void onChunkUnload(ChunkEvent.Unload event)
+	{
+		WireBoundaryCache.onChunkUnloaded(event.getWorld(), event.getChunk());
+		WireGraph.onChunkUnloaded(event.getWorld(), event.getChunk().getPos());
+		WireNeighborSignatures.onChunkUnloaded(event.getWorld(), event.getChunk().getPos());
+		if (event.getWorld() instanceof World)
+		{
+			VoxelCache.get((World)event.getWorld()).onChunkUnloaded(event.getChunk());
+		}
+	}
+	
+	// called on the server when a chunk is read from disk, before its tile entities are loaded
+	static void onChunkDataLoad(ChunkDataEvent.Load event)
+	{
+		IChunk chunk = event.getChunk();
+		if (chunk instanceof ChunkPrimerWrapper)
+		{
+			chunk = ((ChunkPrimerWrapper)chunk).getWrapped();
+		}
+		if (chunk instanceof Chunk)
+		{
+			WirePowerInChunk.migrateLegacyPower((Chunk)chunk, event.getData().getCompound("Level"));
+		}
+	}
+	
+	static void onChunkWatch(ChunkWatchEvent.Watch event)
+	{
+		WireUpdateBuffer.get(event.getWorld()).enqueueFullPowerSync(event.getPlayer(), event.getPos());
+	}
+	
 	static void onWorldTick(WorldTickEvent event)
 	{
 		World world = event.world;
+		if (event.phase == TickEvent.Phase.START && world instanceof ServerWorld)
+		{
+			ServerWorld serverWorld = (ServerWorld)world;
+			WireBulkEdit.get(serverWorld).onTickStart(serverWorld);
+			AsyncNetworkSolver.get(serverWorld).onTickStart(serverWorld);
+			WireBoundaryCache.get(serverWorld).onTickStart(serverWorld);
+			WirePropagationScheduler.get(serverWorld).onTickStart(serverWorld);
+		}
 		if (event.phase == TickEvent.Phase.END && world instanceof ServerWorld)
 		{
 			ServerWorld serverWorld = (ServerWorld)world;
+			WireBulkEdit.get(serverWorld).onTickEnd(serverWorld);
 			WireUpdateBuffer.get(serverWorld).sendPackets(serverWorld);
+			WireSignalCache.get(serverWorld).onTickEnd();
 		}
 	}
 }
@@ -0,0 +1,60 @@
+package commoble.morered;
+
+import java.util.List;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.StringTextComponent;
+
+public class MoreRedCommands
+{
+	public static final int DEFAULT_REPORTED_CHUNKS = 10;
+
+	public static void register(CommandDispatcher<CommandSource> dispatcher)
+	{
+		dispatcher.register(Commands.literal(MoreRed.MODID)
+			.requires(source -> source.hasPermission(2))
+			.then(Commands.literal("profile")
+				.then(Commands.literal("start")
+					.executes(MoreRedCommands::startProfile))
+				.then(Commands.literal("stop")
+					.executes(context -> stopProfile(context, DEFAULT_REPORTED_CHUNKS))
+					.then(Commands.argument("chunks", IntegerArgumentType.integer(0))
+						.executes(context -> stopProfile(context, IntegerArgumentType.getInteger(context, "chunks")))))
+				.then(Commands.literal("dump")
+					.executes(context -> dumpProfile(context, DEFAULT_REPORTED_CHUNKS))
+					.then(Commands.argument("chunks", IntegerArgumentType.integer(0))
+						.executes(context -> dumpProfile(context, IntegerArgumentType.getInteger(context, "chunks")))))));
+	}
+
+	private static int startProfile(CommandContext<CommandSource> context)
+	{
+		MoreRedProfiler.start(context.getSource().getServer());
+		context.getSource().sendSuccess(new StringTextComponent("Started MoreRed profile"), true);
+		return 1;
+	}
+
+	private static int stopProfile(CommandContext<CommandSource> context, int maxChunks)
+	{
+		MoreRedProfiler.stop();
+		context.getSource().sendSuccess(new StringTextComponent("Stopped MoreRed profile"), true);
+		return dumpProfile(context, maxChunks);
+	}
+
+	private static int dumpProfile(CommandContext<CommandSource> context, int maxChunks)
+	{
+		CommandSource source = context.getSource();
+		List<String> lines = MoreRedProfiler.makeReport(source.getServer(), maxChunks);
+		for (String line : lines)
+		{
+			// the log gets the report too, so it can be copied out of dedicated servers
+			MoreRed.LOGGER.info(line);
+			source.sendSuccess(new StringTextComponent(line), false);
+		}
+		return lines.size();
+	}
+}
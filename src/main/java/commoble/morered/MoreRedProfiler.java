@@ -0,0 +1,311 @@
+package commoble.morered;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import commoble.morered.util.LongKeyedClockCache;
+import commoble.morered.wires.AsyncNetworkSolver;
+import commoble.morered.wires.BundledCableBlock;
+import commoble.morered.wires.BundledCableTileEntity;
+import commoble.morered.wires.ColoredCableBlock;
+import commoble.morered.wires.ColoredCableTileEntity;
+import commoble.morered.wires.NeighborUpdateQueue;
+import commoble.morered.wires.RedAlloyWireBlock;
+import commoble.morered.wires.VoxelCache;
+import commoble.morered.wires.WireBoundaryCache;
+import commoble.morered.wires.WireGraph;
+import commoble.morered.wires.WireNeighborSignatures;
+import commoble.morered.wires.WirePowerInChunk;
+import commoble.morered.wires.WirePropagationScheduler;
+import commoble.morered.wires.WireSignalCache;
+import commoble.morered.wire_post.WirePostTileEntity;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.RegistryKey;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ChunkHolder;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * Records what MoreRed's wires and caches cost on a running server, per dimension and per chunk.
+ * Controlled by the /morered profile command; recording methods do nothing unless a profile is running.
+ * Only used on the server thread.
+ */
+public class MoreRedProfiler
+{
+	// rough per-object heap costs used for the memory estimate, in bytes
+	private static final int COLORED_CABLE_TE_BYTES = 96;
+	private static final int BUNDLED_CABLE_TE_BYTES = 160;
+	private static final int POST_TE_BYTES = 128;
+	private static final int VOXEL_CACHE_ENTRY_BYTES = 8;
+	private static final int WIRE_POWER_ENTRY_BYTES = 8;
+	private static final int WIRE_GRAPH_ENTRY_BYTES = 24;
+	private static final int NEIGHBOR_SIGNATURES_ENTRY_BYTES = 64;
+
+	private static boolean running = false;
+	public static boolean isRunning() { return running; }
+
+	private static long startTime = 0;
+	private static long stopTime = 0;
+	private static final Map<RegistryKey<World>, Long2ObjectOpenHashMap<ChunkStats>> chunkStats = new HashMap<>();
+	// hits and misses of each world's voxel cache when the profile started
+	private static final Map<RegistryKey<World>, long[]> voxelCacheStatsAtStart = new HashMap<>();
+	private static long packetsSent = 0;
+	private static long packetBytesSent = 0;
+	private static long placementScans = 0;
+	private static long placementScanNanos = 0;
+
+	public static void start(MinecraftServer server)
+	{
+		chunkStats.clear();
+		voxelCacheStatsAtStart.clear();
+		packetsSent = 0;
+		packetBytesSent = 0;
+		placementScans = 0;
+		placementScanNanos = 0;
+		for (ServerWorld world : server.getAllLevels())
+		{
+			VoxelCache voxelCache = VoxelCache.get(world);
+			voxelCacheStatsAtStart.put(world.dimension(), new long[] {voxelCache.getHits(), voxelCache.getMisses()});
+		}
+		startTime = System.nanoTime();
+		running = true;
+	}
+
+	public static void stop()
+	{
+		if (running)
+		{
+			stopTime = System.nanoTime();
+			running = false;
+		}
+	}
+
+	/**
+	 * @return The current time in nanoseconds if a profile is running, 0 otherwise
+	 */
+	public static long startTiming()
+	{
+		return running ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Records a call to a wire block's power update
+	 * @param world The world the wire is in
+	 * @param pos The position of the wire
+	 * @param startNanos The time returned by startTiming before the update
+	 */
+	public static void recordPowerUpdate(World world, BlockPos pos, long startNanos)
+	{
+		if (!running || !(world instanceof ServerWorld))
+			return;
+		ChunkStats stats = getChunkStats(world, pos);
+		stats.powerUpdates++;
+		stats.powerUpdateNanos += System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Records iterations of a power update's face loop
+	 * @param world The world the wire is in
+	 * @param pos The position of the wire
+	 * @param iterations The number of faces visited
+	 */
+	public static void recordFaceIterations(World world, BlockPos pos, int iterations)
+	{
+		if (!running || !(world instanceof ServerWorld))
+			return;
+		getChunkStats(world, pos).faceIterations += iterations;
+	}
+
+	public static void recordNeighborNotification(World world, BlockPos targetPos)
+	{
+		if (!running || !(world instanceof ServerWorld))
+			return;
+		getChunkStats(world, targetPos).neighborNotifications++;
+	}
+
+	public static void recordPacket(int bytes)
+	{
+		if (!running)
+			return;
+		packetsSent++;
+		packetBytesSent += bytes;
+	}
+
+	public static void recordPlacementScan(long startNanos)
+	{
+		if (!running)
+			return;
+		placementScans++;
+		placementScanNanos += System.nanoTime() - startNanos;
+	}
+
+	private static ChunkStats getChunkStats(World world, BlockPos pos)
+	{
+		Long2ObjectOpenHashMap<ChunkStats> statsByChunk = chunkStats.computeIfAbsent(world.dimension(), $ -> new Long2ObjectOpenHashMap<>());
+		long chunkKey = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+		ChunkStats stats = statsByChunk.get(chunkKey);
+		if (stats == null)
+		{
+			stats = new ChunkStats();
+			statsByChunk.put(chunkKey, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Builds a report of everything recorded since the profile started
+	 * @param server The server to report on
+	 * @param maxChunks The maximum number of chunks to list
+	 * @return The lines of the report
+	 */
+	public static List<String> makeReport(MinecraftServer server, int maxChunks)
+	{
+		List<String> lines = new ArrayList<>();
+		double seconds = ((running ? System.nanoTime() : stopTime) - startTime) / 1_000_000_000D;
+		lines.add(String.format("MoreRed profile (%s, %.1f seconds)", running ? "running" : "stopped", seconds));
+
+		// worst chunks by total power update time, across all dimensions
+		List<ChunkReport> chunks = new ArrayList<>();
+		chunkStats.forEach((dimension, statsByChunk) ->
+		{
+			for (Long2ObjectMap.Entry<ChunkStats> entry : statsByChunk.long2ObjectEntrySet())
+			{
+				chunks.add(new ChunkReport(dimension, new ChunkPos(entry.getLongKey()), entry.getValue()));
+			}
+		});
+		chunks.sort((a,b) -> Long.compare(b.stats.powerUpdateNanos, a.stats.powerUpdateNanos));
+		lines.add(String.format("Worst chunks (%d recorded):", chunks.size()));
+		int chunkCount = Math.min(maxChunks, chunks.size());
+		for (int i=0; i<chunkCount; i++)
+		{
+			ChunkReport chunk = chunks.get(i);
+			ChunkStats stats = chunk.stats;
+			lines.add(String.format("  %s [%d, %d]: %d power updates, %.3f ms, %d face iterations, %d neighbor notifications",
+				chunk.dimension.location(), chunk.chunkPos.x, chunk.chunkPos.z,
+				stats.powerUpdates, stats.powerUpdateNanos / 1_000_000D, stats.faceIterations, stats.neighborNotifications));
+		}
+
+		lines.add(String.format("Sync packets: %d sent, ~%d bytes", packetsSent, packetBytesSent));
+		lines.add(String.format("Post placement scans: %d, %.3f ms", placementScans, placementScanNanos / 1_000_000D));
+		long shapeHits = 0;
+		long shapeMisses = 0;
+		long shapeEvictions = 0;
+		int shapeEntries = 0;
+		for (LongKeyedClockCache<VoxelShape> shapeCache : Arrays.asList(RedAlloyWireBlock.VOXEL_CACHE, ColoredCableBlock.VOXEL_CACHE, BundledCableBlock.VOXEL_CACHE))
+		{
+			shapeHits += shapeCache.getHits();
+			shapeMisses += shapeCache.getMisses();
+			shapeEvictions += shapeCache.getEvictions();
+			shapeEntries += shapeCache.size();
+		}
+		lines.add(String.format("Expanded wire shapes (lifetime): %d hits, %d misses, %d evictions, %d entries",
+			shapeHits, shapeMisses, shapeEvictions, shapeEntries));
+
+		for (ServerWorld world : server.getAllLevels())
+		{
+			RegistryKey<World> dimension = world.dimension();
+			VoxelCache voxelCache = VoxelCache.get(world);
+			long voxelHits = voxelCache.getHits();
+			long voxelMisses = voxelCache.getMisses();
+			long[] statsAtStart = voxelCacheStatsAtStart.get(dimension);
+			if (statsAtStart != null)
+			{
+				voxelHits -= statsAtStart[0];
+				voxelMisses -= statsAtStart[1];
+			}
+			NeighborUpdateQueue queue = NeighborUpdateQueue.get(world);
+			WirePropagationScheduler scheduler = WirePropagationScheduler.get(world);
+
+			int coloredCables = 0;
+			int bundledCables = 0;
+			int posts = 0;
+			for (TileEntity te : world.blockEntityList)
+			{
+				if (te instanceof ColoredCableTileEntity)
+					coloredCables++;
+				else if (te instanceof BundledCableTileEntity)
+					bundledCables++;
+				else if (te instanceof WirePostTileEntity)
+					posts++;
+			}
+			// wire power entries live in the chunks, count them in every loaded chunk
+			long wirePowerSize = 0;
+			for (ChunkHolder holder : world.getChunkSource().chunkMap.getChunks())
+			{
+				// null if the chunk isn't fully loaded
+				WirePowerInChunk wirePower = WirePowerInChunk.get(world, holder.getPos().getWorldPosition());
+				if (wirePower != null)
+				{
+					wirePowerSize += wirePower.size();
+				}
+			}
+			// the stored shape indices in each chunk's WireShapesInChunk
+			long voxelCacheSize = voxelCache.size();
+			long wireGraphSize = WireGraph.get(world).size();
+			WireNeighborSignatures signatures = WireNeighborSignatures.get(world);
+			WireSignalCache signalCache = WireSignalCache.get(world);
+			long estimatedBytes = (long)coloredCables * COLORED_CABLE_TE_BYTES
+				+ (long)bundledCables * BUNDLED_CABLE_TE_BYTES
+				+ (long)posts * POST_TE_BYTES
+				+ voxelCacheSize * VOXEL_CACHE_ENTRY_BYTES
+				+ wirePowerSize * WIRE_POWER_ENTRY_BYTES
+				+ wireGraphSize * WIRE_GRAPH_ENTRY_BYTES
+				+ signatures.size() * NEIGHBOR_SIGNATURES_ENTRY_BYTES;
+
+			lines.add(String.format("%s:", dimension.location()));
+			long voxelLookups = voxelHits + voxelMisses;
+			lines.add(String.format("  Wire shape indices: %d hits, %d misses (%.1f%% hit rate), %d stored in loaded chunks",
+				voxelHits, voxelMisses, voxelLookups == 0 ? 0D : voxelHits*100D/voxelLookups, voxelCacheSize));
+			lines.add(String.format("  Neighbor updates (lifetime): %d enqueued, %d collapsed, %d sent",
+				queue.getEnqueuedUpdates(), queue.getCollapsedUpdates(), queue.getSentUpdates()));
+			lines.add(String.format("  Wire neighbor changes (lifetime): %d handled, %d skipped as irrelevant",
+				signatures.getRelevantUpdates(), signatures.getSkippedUpdates()));
+			long signalLookups = signalCache.getHits() + signalCache.getMisses();
+			lines.add(String.format("  Wire signal cache (lifetime): %d hits, %d misses, %.1f%% hit rate",
+				signalCache.getHits(), signalCache.getMisses(), signalLookups == 0 ? 0D : signalCache.getHits()*100D/signalLookups));
+			lines.add(String.format("  Deferred power updates (lifetime): %d deferred, %d resumed, %d backlog now, %d largest backlog",
+				scheduler.getDeferredUpdates(), scheduler.getResumedUpdates(), scheduler.getBacklog(), scheduler.getLargestBacklog()));
+			WireBoundaryCache boundaries = WireBoundaryCache.get(world);
+			lines.add(String.format("  Wire chunk boundaries: %d unloaded chunks cached; on load (lifetime): %d wires checked, %d updated",
+				boundaries.size(), boundaries.getLoadChecks(), boundaries.getLoadUpdates()));
+			AsyncNetworkSolver asyncSolver = AsyncNetworkSolver.get(world);
+			lines.add(String.format("  Off-thread network solves (lifetime): %d started, %d discarded",
+				asyncSolver.getAsyncSolves(), asyncSolver.getDiscardedSolves()));
+			lines.add(String.format("  Loaded: %d colored cables, %d bundled cables, %d posts, %d powered wires, %d wire graph entries; ~%d KiB estimated heap",
+				coloredCables, bundledCables, posts, wirePowerSize, wireGraphSize, estimatedBytes / 1024));
+		}
+
+		return lines;
+	}
+
+	static class ChunkStats
+	{
+		long powerUpdates = 0;
+		long powerUpdateNanos = 0;
+		long faceIterations = 0;
+		long neighborNotifications = 0;
+	}
+
+	static class ChunkReport
+	{
+		final RegistryKey<World> dimension;
+		final ChunkPos chunkPos;
+		final ChunkStats stats;
+
+		ChunkReport(RegistryKey<World> dimension, ChunkPos chunkPos, ChunkStats stats)
+		{
+			this.dimension = dimension;
+			this.chunkPos = chunkPos;
+			this.stats = stats;
+		}
+	}
+}
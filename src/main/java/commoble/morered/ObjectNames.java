@@ -56,6 +56,8 @@ public class ObjectNames
 	
 	// capabilities
 	public static final String POSTS_IN_CHUNK = "posts_in_chunk";
+	public static final String WIRE_POWER_IN_CHUNK = "wire_power_in_chunk";
+	public static final String WIRE_SHAPES_IN_CHUNK = "wire_shapes_in_chunk";
 	
 	// recipe types
 	public static final String GATECRAFTING_RECIPE = "gatecrafting";
@@ -18,6 +18,16 @@ public class ServerConfig
 	}
 	
 	public ConfigValueListener<Double> max_wire_post_connection_range;
+	public ConfigValueListener<Boolean> throttle_power_sync;
+	public ConfigValueListener<Double> exact_power_sync_range;
+	public ConfigValueListener<Integer> min_power_sync_interval;
+	public ConfigValueListener<Double> power_sync_interval_per_block;
+	public ConfigValueListener<Integer> max_power_sync_interval;
+	public ConfigValueListener<Boolean> budget_power_updates;
+	public ConfigValueListener<Integer> power_update_budget;
+	public ConfigValueListener<Boolean> async_network_solves;
+	public ConfigValueListener<Integer> async_network_solve_threshold;
+	public ConfigValueListener<Integer> max_wires_per_drag;
 	
 	public ServerConfig(ForgeConfigSpec.Builder builder, ConfigHelper.Subscriber subscriber)
 	{
@@ -26,6 +36,58 @@ public class ServerConfig
 			.comment("Maximum Plinth Connection Range")
 			.translation("morered.config.max_wire_plinth_connection_range")
 			.defineInRange("max_wire_plinth_connection_range", 32D, 0D, Double.MAX_VALUE));
+		builder.pop();
+		
+		builder.push("Power Sync Settings");
+		this.throttle_power_sync = subscriber.subscribe(builder
+			.comment("Whether to limit how often distant players are sent the power of wires and cables.",
+				"Server-side power is always exact; this only affects what clients see.")
+			.translation("morered.config.throttle_power_sync")
+			.define("throttle_power_sync", true));
+		this.exact_power_sync_range = subscriber.subscribe(builder
+			.comment("Players within this many blocks of a chunk are sent every power change in that chunk")
+			.translation("morered.config.exact_power_sync_range")
+			.defineInRange("exact_power_sync_range", 32D, 0D, Double.MAX_VALUE));
+		this.min_power_sync_interval = subscriber.subscribe(builder
+			.comment("Minimum ticks between power syncs of a chunk for players beyond the exact sync range")
+			.translation("morered.config.min_power_sync_interval")
+			.defineInRange("min_power_sync_interval", 4, 1, Integer.MAX_VALUE));
+		this.power_sync_interval_per_block = subscriber.subscribe(builder
+			.comment("Additional ticks between power syncs of a chunk per block of distance beyond the exact sync range")
+			.translation("morered.config.power_sync_interval_per_block")
+			.defineInRange("power_sync_interval_per_block", 0.25D, 0D, Double.MAX_VALUE));
+		this.max_power_sync_interval = subscriber.subscribe(builder
+			.comment("Maximum ticks between power syncs of a chunk for any player")
+			.translation("morered.config.max_power_sync_interval")
+			.defineInRange("max_power_sync_interval", 40, 1, Integer.MAX_VALUE));
+		builder.pop();
+		
+		builder.push("Power Update Settings");
+		this.budget_power_updates = subscriber.subscribe(builder
+			.comment("Whether to limit how much wire and cable power updating can happen in one tick.",
+				"Updates beyond the budget are continued on later ticks, in the order they were deferred.")
+			.translation("morered.config.budget_power_updates")
+			.define("budget_power_updates", false));
+		this.power_update_budget = subscriber.subscribe(builder
+			.comment("Maximum wire and cable positions to update per tick per dimension when budget_power_updates is enabled")
+			.translation("morered.config.power_update_budget")
+			.defineInRange("power_update_budget", 4096, 1, Integer.MAX_VALUE));
+		this.async_network_solves = subscriber.subscribe(builder
+			.comment("Whether to solve the power of very large wire networks off of the server thread.",
+				"Their power is updated on the first tick after the solve finishes instead of immediately.")
+			.translation("morered.config.async_network_solves")
+			.define("async_network_solves", false));
+		this.async_network_solve_threshold = subscriber.subscribe(builder
+			.comment("Minimum number of wire positions in a network for it to be solved off of the server thread when async_network_solves is enabled")
+			.translation("morered.config.async_network_solve_threshold")
+			.defineInRange("async_network_solve_threshold", 16384, 1, Integer.MAX_VALUE));
+		builder.pop();
+		
+		builder.push("Placement Settings");
+		this.max_wires_per_drag = subscriber.subscribe(builder
+			.comment("Maximum number of blocks a wire or cable can be placed on in one drag (sneak and hold use while holding a wire)")
+			.translation("morered.config.max_wires_per_drag")
+			.defineInRange("max_wires_per_drag", 256, 1, Integer.MAX_VALUE));
+		builder.pop();
 	}
 }
-
@@ -29,6 +29,8 @@ public class TileEntityRegistrar
 			BlockRegistrar.REDWIRE_POST_RELAY_PLATE.get())
 		.build(null));
 	
+	// red alloy wires don't have tile entities anymore (see WirePowerInChunk)
+	// but the type stays registered so worlds saved with them still load cleanly
 	public static final RegistryObject<TileEntityType<WireTileEntity>> WIRE = TILES.register(ObjectNames.WIRE,
 		() -> TileEntityType.Builder.of(WireTileEntity::new,
 			BlockRegistrar.RED_ALLOY_WIRE.get())
@@ -38,6 +38,7 @@ import net.minecraft.util.math.BlockRayTraceResult;
 import net.minecraft.util.math.RayTraceResult;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraft.world.GameType;
+import net.minecraft.world.IWorld;
 import net.minecraft.world.World;
 import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
 import net.minecraftforge.client.event.ColorHandlerEvent;
@@ -46,6 +47,8 @@ import net.minecraftforge.client.event.InputEvent.ClickInputEvent;
 import net.minecraftforge.client.event.ModelRegistryEvent;
 import net.minecraftforge.client.model.ModelLoaderRegistry;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.eventbus.api.Event;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.fml.ModLoadingContext;
@@ -68,6 +71,9 @@ public class ClientEvents
 		forgeBus.addListener(ClientEvents::onClientLogOut);
 		forgeBus.addListener(ClientEvents::onHighlightBlock);
 		forgeBus.addListener(ClientEvents::onClickInput);
+		forgeBus.addListener(WireDragPlacementHandler::onClientTick);
+		forgeBus.addListener(ClientEvents::onChunkLoad);
+		forgeBus.addListener(ClientEvents::onWorldUnload);
 	}
 	
 	public static void onClientSetup(FMLClientSetupEvent event)
@@ -132,6 +138,8 @@ public class ClientEvents
 		// clean up static data on the client
 		MoreRed.CLIENT_PROXY = ClientProxy.makeClientProxy();
 		VoxelCache.clearClientCache();
+		WireDragPlacementHandler.cancelDrag();
+		ClientPacketHandlers.clearPendingPowerSyncs();
 	}
 	
 	public static void onClientLogOut(ClientPlayerNetworkEvent.LoggedOutEvent event)
@@ -139,10 +147,34 @@ public class ClientEvents
 		// clean up static data on the client
 		MoreRed.CLIENT_PROXY = ClientProxy.makeClientProxy();
 		VoxelCache.clearClientCache();
+		WireDragPlacementHandler.cancelDrag();
+		ClientPacketHandlers.clearPendingPowerSyncs();
 	}
 	
+	public static void onChunkLoad(ChunkEvent.Load event)
+	{
+		// also fired for the integrated server's chunks
+		IWorld world = event.getWorld();
+		if (world instanceof ClientWorld)
+		{
+			ClientPacketHandlers.applyPendingPowerSync((ClientWorld)world, event.getChunk().getPos());
+		}
+	}
+
+	public static void onWorldUnload(WorldEvent.Unload event)
+	{
+		// also fired for the integrated server's worlds
+		IWorld world = event.getWorld();
+		if (world instanceof ClientWorld)
+		{
+			VoxelCache.onClientWorldUnloaded((ClientWorld)world);
+		}
+	}
+
 	public static void onHighlightBlock(DrawHighlightEvent.HighlightBlock event)
 	{
+		if (WireDragPlacementHandler.onHighlightBlock(event))
+			return;
 		if (ClientConfig.INSTANCE.showPlacementPreview.get())
 		{
 			@SuppressWarnings("resource")
@@ -185,6 +217,14 @@ public class ClientEvents
 	
 	public static void onClickInput(ClickInputEvent event)
 	{
+		// sneak-using a wire item on a block starts a drag placement instead of placing a single wire
+		if (WireDragPlacementHandler.onClickInput(event))
+		{
+			event.setCanceled(true);
+			event.setSwingHand(false);
+			return;
+		}
+		
 		// when the player clicks a wire block,
 		// we want to handle the block in a manner that causes the digging packet to be sent
 		// with the interior side of the wire block as the face value
@@ -1,21 +1,30 @@
 package commoble.morered.client;
 
+import javax.annotation.Nullable;
+
 import commoble.morered.wire_post.SlackInterpolator;
 import commoble.morered.wire_post.WireBreakPacket;
 import commoble.morered.wires.VoxelCache;
+import commoble.morered.wires.WirePowerInChunk;
+import commoble.morered.wires.WirePowerSyncPacket;
 import commoble.morered.wires.WireUpdatePacket;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.particle.DiggingParticle;
 import net.minecraft.client.particle.ParticleManager;
 import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.vector.Vector3d;
 import net.minecraftforge.fml.network.NetworkEvent;
 
 public class ClientPacketHandlers
 {
+	// full chunk power syncs that arrived before their chunks did
+	private static final Long2ObjectOpenHashMap<WirePowerSyncPacket> PENDING_FULL_POWER_SYNCS = new Long2ObjectOpenHashMap<>();
 	
 	public static void onWireBreakPacket(NetworkEvent.Context context, WireBreakPacket packet)
 	{
@@ -38,13 +47,104 @@ public class ClientPacketHandlers
 		}
 	}
 	
+	public static void onWirePowerSyncPacket(WirePowerSyncPacket packet)
+	{
+		@SuppressWarnings("resource")
+		ClientWorld world = Minecraft.getInstance().level;
+		if (world == null)
+			return;
+		
+		ChunkPos chunkPos = packet.getChunkPos();
+		if (!world.hasChunk(chunkPos.x, chunkPos.z))
+		{
+			// the server can send a chunk's power before the chunk itself, apply it when the chunk arrives
+			if (packet.isFullChunk())
+			{
+				PENDING_FULL_POWER_SYNCS.put(chunkPos.toLong(), packet);
+			}
+			return;
+		}
+		
+		applyPowerSync(world, packet);
+	}
+	
+	public static void applyPendingPowerSync(ClientWorld world, ChunkPos chunkPos)
+	{
+		WirePowerSyncPacket packet = PENDING_FULL_POWER_SYNCS.remove(chunkPos.toLong());
+		if (packet != null)
+		{
+			applyPowerSync(world, packet);
+		}
+	}
+	
+	public static void clearPendingPowerSyncs()
+	{
+		PENDING_FULL_POWER_SYNCS.clear();
+	}
+	
+	private static void applyPowerSync(ClientWorld world, WirePowerSyncPacket packet)
+	{
+		ChunkPos chunkPos = packet.getChunkPos();
+		@Nullable WirePowerInChunk storage = WirePowerInChunk.get(world, chunkPos.getWorldPosition());
+		if (storage == null)
+			return;
+		
+		if (packet.isFullChunk())
+		{
+			// rerender the wires that had power, they may not be in the packet
+			BlockPos.Mutable mutaPos = new BlockPos.Mutable();
+			for (int sectionY=0; sectionY<WirePowerInChunk.SECTIONS; sectionY++)
+			{
+				for (long entry : storage.getSection(sectionY))
+				{
+					int localIndex = (int)(entry >>> 32);
+					mutaPos.set(chunkPos.getMinBlockX() + (localIndex & 15), (sectionY << 4) | (localIndex >> 8), chunkPos.getMinBlockZ() + ((localIndex >> 4) & 15));
+					BlockState state = world.getBlockState(mutaPos);
+					world.sendBlockUpdated(mutaPos, state, state, 0);
+				}
+			}
+			storage.clear();
+		}
+		
+		int[] power = new int[6];
+		int count = packet.getCount();
+		for (int i=0; i<count; i++)
+		{
+			packet.getPower(i, power);
+			storage.applySyncedPower(world, packet.getPos(i), packet.getFaceFlags(i), power);
+		}
+	}
+	
 	public static void onWireUpdatePacket(WireUpdatePacket packet)
 	{
 		@SuppressWarnings("resource")
 		ClientWorld world = Minecraft.getInstance().level;
 		if (world != null)
 		{
-			VoxelCache.get(world).shapesByPos.invalidateAll(packet.getPositions());
+			// chunks may have been meshed with the old indices in the meantime, rerender the wires whose indices changed
+			VoxelCache cache = VoxelCache.get(world);
+			BlockPos.Mutable neighborPos = new BlockPos.Mutable();
+			for (BlockPos pos : packet.getPositions())
+			{
+				if (cache.updateShapeIndex(pos, null))
+				{
+					rerenderWire(world, pos);
+				}
+				for (Direction direction : Direction.values())
+				{
+					neighborPos.setWithOffset(pos, direction);
+					if (cache.updateShapeIndex(neighborPos, direction.getOpposite()))
+					{
+						rerenderWire(world, neighborPos);
+					}
+				}
+			}
 		}
 	}
+	
+	private static void rerenderWire(ClientWorld world, BlockPos pos)
+	{
+		BlockState state = world.getBlockState(pos);
+		world.sendBlockUpdated(pos, state, state, 0);
+	}
 }
@@ -1,23 +1,31 @@
 
 package commoble.morered.client;
 
+import javax.annotation.Nullable;
+
 import commoble.morered.BlockRegistrar;
 import commoble.morered.plate_blocks.InputState;
 import commoble.morered.plate_blocks.LatchBlock;
 import commoble.morered.plate_blocks.LogicFunction;
 import commoble.morered.plate_blocks.LogicFunctions;
 import commoble.morered.wire_post.AbstractPoweredWirePostBlock;
+import commoble.morered.wires.AbstractWireBlock;
 import commoble.morered.wires.Edge;
-import commoble.morered.wires.WireTileEntity;
+import commoble.morered.wires.PoweredWireBlock;
+import commoble.morered.wires.VoxelCache;
+import commoble.morered.wires.WirePowerInChunk;
+import commoble.morered.wires.WireShapesInChunk;
 import net.minecraft.block.BlockState;
+import net.minecraft.client.Minecraft;
 import net.minecraft.item.BlockItem;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.IBlockDisplayReader;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
 
 public class ColorHandlers
 {
@@ -128,14 +136,14 @@ public class ColorHandlers
 			return NO_TINT;
 		if (tintIndex == 0) // reserved for particle, particle tint is hardcoded to 0
 			return UNLIT;
-		TileEntity te = world.getBlockEntity(pos);
-		if (te instanceof WireTileEntity)
+		// chunk rendering gives us a snapshot of the world without chunks, so get power from the client world
+		@Nullable IBlockReader powerWorld = world instanceof World ? world : Minecraft.getInstance().level;
+		if (powerWorld != null)
 		{
-			WireTileEntity wire = (WireTileEntity)te;
 			if (tintIndex < 7) // range is [1,6], indicating a face tint
 			{
 				int side = tintIndex-1;
-				int power = wire.getPower(side);
+				int power = WirePowerInChunk.getPower(powerWorld, pos, side);
 				double lerpFactor = power/32D;
 				return ((int)MathHelper.lerp(lerpFactor, UNLIT_RED, LIT_RED)) << 16;
 			}
@@ -143,31 +151,38 @@ public class ColorHandlers
 			{
 				// average litness from neighbor wires
 				int edgeIndex = tintIndex - 7;
-				Edge edge = Edge.values()[edgeIndex];
+				Edge edge = Edge.VALUES[edgeIndex];
 				Direction directionA = edge.sideA;
+				Direction directionB = edge.sideB;
 				BlockPos neighborPosA = pos.relative(directionA);
-				TileEntity neighborTileA = world.getBlockEntity(neighborPosA);
-				if (neighborTileA instanceof WireTileEntity)
+				BlockPos neighborPosB = pos.relative(directionB);
+				if (hasStoredEdge(powerWorld, state, pos, edgeIndex)
+					|| (world.getBlockState(neighborPosA).getBlock() instanceof PoweredWireBlock
+						&& world.getBlockState(neighborPosB).getBlock() instanceof PoweredWireBlock))
 				{
-					WireTileEntity neighborWireA = (WireTileEntity)neighborTileA;
-					Direction directionB = edge.sideB;
-					BlockPos neighborPosB = pos.relative(directionB);
-					TileEntity neighborTileB = world.getBlockEntity(neighborPosB);
-					if (neighborTileB instanceof WireTileEntity)
-					{
-						WireTileEntity neighborWireB = (WireTileEntity)neighborTileB;
-						double powerA = neighborWireA.getPower(directionB);
-						double powerB = neighborWireB.getPower(directionA);
-						double averagePower = (powerA + powerB)/2D;
-						double lerpFactor = averagePower/32D;
-						return ((int)MathHelper.lerp(lerpFactor, UNLIT_RED, LIT_RED)) << 16;
-					}
+					double powerA = WirePowerInChunk.getPower(powerWorld, neighborPosA, directionB.ordinal());
+					double powerB = WirePowerInChunk.getPower(powerWorld, neighborPosB, directionA.ordinal());
+					double averagePower = (powerA + powerB)/2D;
+					double lerpFactor = averagePower/32D;
+					return ((int)MathHelper.lerp(lerpFactor, UNLIT_RED, LIT_RED)) << 16;
 				}
 			}
 		}
 		return NO_TINT;
 	}
 	
+	// a set edge flag in the client world's stored shape index means both wires across the edge are there,
+	// which saves reading their states from the chunk snapshot
+	private static boolean hasStoredEdge(IBlockReader powerWorld, BlockState state, BlockPos pos, int edgeIndex)
+	{
+		if (!(powerWorld instanceof World))
+			return false;
+		long index = VoxelCache.get((World)powerWorld).getStoredShapeIndex(pos);
+		return index != WireShapesInChunk.NO_SHAPE_INDEX
+			&& (index & 63) == AbstractWireBlock.getShapeIndex(state)
+			&& (index & (1L << (AbstractWireBlock.EDGE_FLAGS_SHIFT + edgeIndex))) != 0;
+	}
+	
 	public static int getRedAlloyWireItemTint(ItemStack stack, int tintIndex)
 	{
 		return tintIndex >= 0 ? UNLIT : NO_TINT;
@@ -0,0 +1,155 @@
+package commoble.morered.client;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import commoble.morered.MoreRed;
+import commoble.morered.ServerConfig;
+import commoble.morered.wires.AbstractWireBlock;
+import commoble.morered.wires.WireBlockItem;
+import commoble.morered.wires.WireDragPlacement;
+import commoble.morered.wires.WireDragPlacementPacket;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.entity.player.ClientPlayerEntity;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.item.Item;
+import net.minecraft.util.Direction;
+import net.minecraft.util.Hand;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockRayTraceResult;
+import net.minecraft.util.math.RayTraceResult;
+import net.minecraftforge.client.event.DrawHighlightEvent;
+import net.minecraftforge.client.event.InputEvent.ClickInputEvent;
+import net.minecraftforge.event.TickEvent;
+
+/**
+ * Client side of drag placement: sneaking and holding use with a wire item on the face of a block starts a drag,
+ * moving the crosshair across other blocks in the same plane stretches it, and releasing use sends the drag to the server.
+ * The server places the whole drag as one bulk edit (see {@link WireDragPlacement}).
+ */
+public class WireDragPlacementHandler
+{
+	private static @Nullable BlockPos dragStart = null;
+	private static @Nullable BlockPos dragEnd = null;
+	private static Direction dragFace = Direction.UP;
+	private static Hand dragHand = Hand.MAIN_HAND;
+
+	public static boolean isDragging()
+	{
+		return dragStart != null;
+	}
+
+	/**
+	 * Called when the use key is clicked; starts a drag if the player is sneaking with a wire item and looking at a sturdy face
+	 * @param event The click event
+	 * @return True if the click was used by drag placement, in which case normal item use shouldn't happen
+	 */
+	@SuppressWarnings("resource")
+	public static boolean onClickInput(ClickInputEvent event)
+	{
+		if (!event.isUseItem())
+			return false;
+		// keep the held use key from placing single wires while dragging
+		if (isDragging())
+			return true;
+		Minecraft mc = Minecraft.getInstance();
+		ClientPlayerEntity player = mc.player;
+		ClientWorld world = mc.level;
+		RayTraceResult rayTraceResult = mc.hitResult;
+		if (player == null || world == null || rayTraceResult == null || rayTraceResult.getType() != RayTraceResult.Type.BLOCK || !player.isShiftKeyDown())
+			return false;
+		Hand hand = event.getHand();
+		if (getWireBlock(player.getItemInHand(hand).getItem()) == null)
+			return false;
+		BlockRayTraceResult blockResult = (BlockRayTraceResult)rayTraceResult;
+		BlockPos pos = blockResult.getBlockPos();
+		Direction face = blockResult.getDirection();
+		// clicking something that can't hold a wire (including other wires) keeps its normal behaviour
+		if (!world.getBlockState(pos).isFaceSturdy(world, pos, face))
+			return false;
+		dragStart = pos.immutable();
+		dragEnd = dragStart;
+		dragFace = face;
+		dragHand = hand;
+		return true;
+	}
+
+	@SuppressWarnings("resource")
+	public static void onClientTick(TickEvent.ClientTickEvent event)
+	{
+		if (event.phase != TickEvent.Phase.END || !isDragging())
+			return;
+		Minecraft mc = Minecraft.getInstance();
+		ClientPlayerEntity player = mc.player;
+		if (player == null || mc.level == null || getWireBlock(player.getItemInHand(dragHand).getItem()) == null)
+		{
+			cancelDrag();
+			return;
+		}
+		RayTraceResult rayTraceResult = mc.hitResult;
+		if (rayTraceResult != null && rayTraceResult.getType() == RayTraceResult.Type.BLOCK)
+		{
+			BlockRayTraceResult blockResult = (BlockRayTraceResult)rayTraceResult;
+			BlockPos pos = blockResult.getBlockPos();
+			// a drag that would be too big keeps its last end until the crosshair comes back
+			if (blockResult.getDirection() == dragFace && WireDragPlacement.isValidDrag(dragStart, pos, dragFace, ServerConfig.INSTANCE.max_wires_per_drag.get()))
+			{
+				dragEnd = pos.immutable();
+			}
+		}
+		if (!mc.options.keyUse.isDown())
+		{
+			MoreRed.CHANNEL.sendToServer(new WireDragPlacementPacket(dragHand, dragStart, dragEnd, dragFace));
+			player.swing(dragHand);
+			cancelDrag();
+		}
+	}
+
+	/**
+	 * Renders the wires the current drag would place
+	 * @param event The highlight event
+	 * @return True if a drag is in progress, in which case other placement previews shouldn't render
+	 */
+	@SuppressWarnings("resource")
+	public static boolean onHighlightBlock(DrawHighlightEvent.HighlightBlock event)
+	{
+		if (!isDragging())
+			return false;
+		ClientPlayerEntity player = Minecraft.getInstance().player;
+		if (player != null && player.level != null)
+		{
+			@Nullable AbstractWireBlock block = getWireBlock(player.getItemInHand(dragHand).getItem());
+			if (block != null)
+			{
+				for (Map.Entry<BlockPos, BlockState> entry : WireDragPlacement.getPlacements(player.level, block, dragStart, dragEnd, dragFace).entrySet())
+				{
+					BlockPreviewRenderer.renderBlockPreview(entry.getKey(), entry.getValue(), player.level, event.getInfo().getPosition(), event.getMatrix(), event.getBuffers());
+				}
+			}
+		}
+		return true;
+	}
+
+	public static void cancelDrag()
+	{
+		dragStart = null;
+		dragEnd = null;
+	}
+
+	@Nullable
+	private static AbstractWireBlock getWireBlock(Item item)
+	{
+		if (item instanceof WireBlockItem)
+		{
+			Block block = ((WireBlockItem)item).getBlock();
+			if (block instanceof AbstractWireBlock)
+			{
+				return (AbstractWireBlock)block;
+			}
+		}
+		return null;
+	}
+}
@@ -16,8 +16,10 @@ import com.mojang.datafixers.util.Pair;
 
 import commoble.morered.client.WirePartModelLoader.WirePartGeometry;
 import commoble.morered.wires.AbstractWireBlock;
+import commoble.morered.wires.VoxelCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.model.BakedQuad;
 import net.minecraft.client.renderer.model.BlockModel;
 import net.minecraft.client.renderer.model.IBakedModel;
@@ -33,6 +35,7 @@ import net.minecraft.util.JSONUtils;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.IBlockDisplayReader;
+import net.minecraft.world.World;
 import net.minecraftforge.client.model.IModelConfiguration;
 import net.minecraftforge.client.model.IModelLoader;
 import net.minecraftforge.client.model.data.IDynamicBakedModel;
@@ -203,7 +206,14 @@ public class WirePartModelLoader implements IModelLoader<WirePartGeometry>
 			Block block = state.getBlock();
 			if (block instanceof AbstractWireBlock)
 			{
-				return new WirePartModelLoader.WireModelData(((AbstractWireBlock)block).getExpandedShapeIndex(state, world, pos));
+				// chunk meshing gives us a snapshot of the world, the stored indices are in the client world
+				@SuppressWarnings("resource")
+				World clientWorld = world instanceof World ? (World)world : Minecraft.getInstance().level;
+				AbstractWireBlock wireBlock = (AbstractWireBlock)block;
+				long index = clientWorld == null
+					? wireBlock.getExpandedShapeIndex(state, world, pos)
+					: VoxelCache.get(clientWorld).getShapeIndexForRendering(wireBlock, state, world, pos);
+				return new WirePartModelLoader.WireModelData(index);
 			}
 			else
 			{
@@ -0,0 +1,109 @@
+package commoble.morered.util;
+
+/**
+ * Helpers for packing per-channel power values into longs and doing math on all of the channels in a long at once.
+ *
+ * Each long holds eight channels in eight-bit lanes (channel 0 of the long in the least-significant byte),
+ * so the sixteen channels of a cable face take two longs (channels 0-7, then channels 8-15).
+ * Power values only need five bits, but the operations here need the top bit of each lane to be clear,
+ * which keeps borrows from crossing into the next lane;
+ * all of the operations here assume every lane is in the range [0,127].
+ */
+public class ChannelLanes
+{
+	public static final int LANES_PER_WORD = 8;
+	public static final int LANE_BITS = 8;
+	public static final int LANE_MASK = 0xFF;
+
+	// the lowest bit of every lane
+	private static final long LOW_BITS = 0x0101010101010101L;
+	// the highest bit of every lane
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	public static int getLane(long word, int lane)
+	{
+		return (int)(word >>> (lane * LANE_BITS)) & LANE_MASK;
+	}
+
+	public static long setLane(long word, int lane, int value)
+	{
+		int shift = lane * LANE_BITS;
+		return (word & ~((long)LANE_MASK << shift)) | ((long)(value & LANE_MASK) << shift);
+	}
+
+	/**
+	 * @param value A value in the range [0,127]
+	 * @return A word with the given value in every lane
+	 */
+	public static long fill(int value)
+	{
+		return LOW_BITS * value;
+	}
+
+	/**
+	 * @param word A word with every lane in the range [0,127]
+	 * @return A word with every lane decremented by one, with lanes already at 0 staying at 0
+	 */
+	public static long decrementSaturating(long word)
+	{
+		// setting the high bit of every lane before subtracting one from every lane keeps borrows inside their lanes;
+		// the high bit survives the subtraction only in lanes that were nonzero
+		long nonzeroLanes = (((word | HIGH_BITS) - LOW_BITS) & HIGH_BITS) >>> 7;
+		return word - nonzeroLanes;
+	}
+
+	/**
+	 * @param a A word with every lane in the range [0,127]
+	 * @param b A word with every lane in the range [0,127]
+	 * @return A word whose lanes each have the larger of the corresponding lanes of a and b
+	 */
+	public static long max(long a, long b)
+	{
+		// the high bit of a lane survives (a|high) - b only if a's lane is at least b's lane
+		long aAtLeastB = ((a | HIGH_BITS) - b) & HIGH_BITS;
+		// spread each surviving high bit to the whole lane
+		long mask = (aAtLeastB - (aAtLeastB >>> 7)) | aAtLeastB;
+		return (a & mask) | (b & ~mask);
+	}
+
+	/**
+	 * @param word A packed word
+	 * @return A bit mask of the lanes in the word that are nonzero (bit i is set if lane i is nonzero)
+	 */
+	public static int getNonzeroLanes(long word)
+	{
+		long nonzeroLanes = (((word | HIGH_BITS) - LOW_BITS) & HIGH_BITS) >>> 7;
+		// gather the low bit of each lane into the top byte, then shift it down
+		return (int)((nonzeroLanes * 0x0102040810204080L) >>> 56);
+	}
+
+	/**
+	 * Packs eight channels from an array of power values into a word
+	 * @param channels Array of power values, each in the range [0,127]
+	 * @param offset The index of the first channel to pack
+	 * @return A word containing channels offset through offset+7
+	 */
+	public static long pack(byte[] channels, int offset)
+	{
+		long word = 0L;
+		for (int lane=LANES_PER_WORD-1; lane>=0; lane--)
+		{
+			word = (word << LANE_BITS) | (channels[offset + lane] & LANE_MASK);
+		}
+		return word;
+	}
+
+	/**
+	 * Unpacks a word into eight entries of an array of power values
+	 * @param word A packed word
+	 * @param channels Array to unpack into
+	 * @param offset The index of the first channel to unpack into
+	 */
+	public static void unpack(long word, byte[] channels, int offset)
+	{
+		for (int lane=0; lane<LANES_PER_WORD; lane++)
+		{
+			channels[offset + lane] = (byte)getLane(word, lane);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package commoble.morered.util;
+
+/**
+ * Compact byte encoding for the power of all sixteen channels on all six faces of a cable.
+ *
+ * The encoding is laid out as:
+ * <ul>
+ * <li>one byte holding the format version</li>
+ * <li>one byte with the bit (1 << side) set for each face that has any nonzero channel</li>
+ * <li>for each such face in dunswe order, two bytes (big-endian) with the bit (1 << channel) set for each nonzero channel</li>
+ * <li>the five-bit power value of each nonzero channel, faces in dunswe order and channels in ascending order,
+ * packed least-significant bit first and padded to a whole byte</li>
+ * </ul>
+ * A cable with no power encodes to an empty array.
+ */
+public class ChannelPowerCodec
+{
+	public static final int VERSION = 1;
+	public static final byte[] NO_POWER = new byte[0];
+
+	private static final int SIDES = 6;
+	private static final int CHANNELS = 16;
+	private static final int VALUE_BITS = 5;
+	private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+	private static final int HEADER_BYTES = 2;
+
+	/**
+	 * @param lanes The packed power of each face (see {@link ChannelLanes}),
+	 * two words per face in dunswe order (channels 0-7, then channels 8-15); lanes must be in the range [0,31]
+	 * @return The encoded power
+	 */
+	public static byte[] encode(long[] lanes)
+	{
+		int faceMask = 0;
+		int channelCount = 0;
+		int[] channelMasks = new int[SIDES];
+		for (int side=0; side<SIDES; side++)
+		{
+			int channelMask = ChannelLanes.getNonzeroLanes(lanes[side*2]) | (ChannelLanes.getNonzeroLanes(lanes[side*2+1]) << ChannelLanes.LANES_PER_WORD);
+			if (channelMask != 0)
+			{
+				faceMask |= (1 << side);
+				channelMasks[side] = channelMask;
+				channelCount += Integer.bitCount(channelMask);
+			}
+		}
+		if (faceMask == 0)
+			return NO_POWER;
+
+		int faceCount = Integer.bitCount(faceMask);
+		byte[] data = new byte[HEADER_BYTES + faceCount*2 + (channelCount*VALUE_BITS + 7) / 8];
+		data[0] = (byte)VERSION;
+		data[1] = (byte)faceMask;
+		int index = HEADER_BYTES;
+		for (int side=0; side<SIDES; side++)
+		{
+			int channelMask = channelMasks[side];
+			if (channelMask != 0)
+			{
+				data[index++] = (byte)(channelMask >>> 8);
+				data[index++] = (byte)channelMask;
+			}
+		}
+		int bitIndex = index * 8;
+		for (int side=0; side<SIDES; side++)
+		{
+			int channelMask = channelMasks[side];
+			for (int channel=0; channel<CHANNELS; channel++)
+			{
+				if ((channelMask & (1 << channel)) != 0)
+				{
+					int value = ChannelLanes.getLane(lanes[side*2 + channel/ChannelLanes.LANES_PER_WORD], channel % ChannelLanes.LANES_PER_WORD) & VALUE_MASK;
+					writeBits(data, bitIndex, value);
+					bitIndex += VALUE_BITS;
+				}
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * @param data Power encoded by {@link #encode}
+	 * @param lanes An array of twelve words to write the packed power of each face into, as described in {@link #encode};
+	 * faces and channels without power are set to zero
+	 * @return False if the data was of an unknown version or too short (the lanes are left all zero), true otherwise
+	 */
+	public static boolean decode(byte[] data, long[] lanes)
+	{
+		for (int i=0; i<SIDES*2; i++)
+		{
+			lanes[i] = 0L;
+		}
+		if (data.length == 0)
+			return true;
+		if (data.length < HEADER_BYTES || data[0] != VERSION)
+			return false;
+
+		int faceMask = data[1] & 0x3F;
+		int index = HEADER_BYTES;
+		int channelCount = 0;
+		int[] channelMasks = new int[SIDES];
+		for (int side=0; side<SIDES; side++)
+		{
+			if ((faceMask & (1 << side)) != 0)
+			{
+				if (index + 2 > data.length)
+					return false;
+				int channelMask = ((data[index] & 0xFF) << 8) | (data[index+1] & 0xFF);
+				index += 2;
+				channelMasks[side] = channelMask;
+				channelCount += Integer.bitCount(channelMask);
+			}
+		}
+		if (index + (channelCount*VALUE_BITS + 7) / 8 > data.length)
+			return false;
+
+		int bitIndex = index * 8;
+		for (int side=0; side<SIDES; side++)
+		{
+			int channelMask = channelMasks[side];
+			for (int channel=0; channel<CHANNELS; channel++)
+			{
+				if ((channelMask & (1 << channel)) != 0)
+				{
+					int wordIndex = side*2 + channel/ChannelLanes.LANES_PER_WORD;
+					lanes[wordIndex] = ChannelLanes.setLane(lanes[wordIndex], channel % ChannelLanes.LANES_PER_WORD, readBits(data, bitIndex));
+					bitIndex += VALUE_BITS;
+				}
+			}
+		}
+		return true;
+	}
+
+	// values can straddle two bytes
+	private static void writeBits(byte[] data, int bitIndex, int value)
+	{
+		int byteIndex = bitIndex >>> 3;
+		int shift = bitIndex & 7;
+		int shifted = value << shift;
+		data[byteIndex] |= (byte)shifted;
+		if (shift + VALUE_BITS > 8)
+		{
+			data[byteIndex+1] |= (byte)(shifted >>> 8);
+		}
+	}
+
+	private static int readBits(byte[] data, int bitIndex)
+	{
+		int byteIndex = bitIndex >>> 3;
+		int shift = bitIndex & 7;
+		int bits = data[byteIndex] & 0xFF;
+		if (shift + VALUE_BITS > 8)
+		{
+			bits |= (data[byteIndex+1] & 0xFF) << 8;
+		}
+		return (bits >>> shift) & VALUE_MASK;
+	}
+}
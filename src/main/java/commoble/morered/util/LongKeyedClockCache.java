@@ -0,0 +1,166 @@
+package commoble.morered.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Lock-free cache from primitive long keys to values, holding at most a fixed number of entries.
+ *
+ * Entries live in an open-addressed table with one slot per allowed entry. A key can only be stored in the
+ * few slots following its hash; when those are all full, one of them is evicted clock-style:
+ * each slot has a referenced bit that's set whenever its entry is read, and the eviction sweep clears referenced bits
+ * until it finds a slot whose entry hasn't been read since the last sweep passed it.
+ *
+ * Slots are written with compare-and-set, so readers never block. Two threads missing the same key at once may both
+ * load it and store it twice; the loader should be a pure function of the key, so both values are equally good.
+ * @param <V> The type of the cached values
+ */
+public class LongKeyedClockCache<V>
+{
+	// how many slots after a key's home slot it can be stored in, must be a power of two
+	private static final int PROBE_LIMIT = 8;
+
+	private final AtomicReferenceArray<Entry<V>> slots;
+	private final AtomicIntegerArray referenced;
+	private final int mask;
+	private final LongFunction<V> loader;
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger clockHand = new AtomicInteger();
+
+	private final LongAdder hits = new LongAdder();
+	public long getHits() { return this.hits.sum(); }
+
+	private final LongAdder misses = new LongAdder();
+	public long getMisses() { return this.misses.sum(); }
+
+	private final LongAdder evictions = new LongAdder();
+	public long getEvictions() { return this.evictions.sum(); }
+
+	/**
+	 * @param maxEntries The most entries the cache can hold; rounded up to a power of two, and at least the probe limit
+	 * @param loader Function computing the value for a key that isn't cached
+	 */
+	public LongKeyedClockCache(int maxEntries, LongFunction<V> loader)
+	{
+		int capacity = Integer.highestOneBit(Math.max(PROBE_LIMIT, maxEntries) - 1) << 1;
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.referenced = new AtomicIntegerArray(capacity);
+		this.mask = capacity - 1;
+		this.loader = loader;
+	}
+
+	public int capacity()
+	{
+		return this.mask + 1;
+	}
+
+	public int size()
+	{
+		return this.size.get();
+	}
+
+	/**
+	 * Gets the value for a key, loading and caching it if it isn't cached
+	 * @param key The key
+	 * @return The cached or loaded value
+	 */
+	public V get(long key)
+	{
+		int home = hash(key) & this.mask;
+		for (int probe=0; probe<PROBE_LIMIT; probe++)
+		{
+			int slot = (home + probe) & this.mask;
+			Entry<V> entry = this.slots.get(slot);
+			if (entry == null)
+				break;
+			if (entry.key == key)
+			{
+				this.hits.increment();
+				// avoid writing the shared bit when it's already set
+				if (this.referenced.get(slot) == 0)
+				{
+					this.referenced.lazySet(slot, 1);
+				}
+				return entry.value;
+			}
+		}
+
+		this.misses.increment();
+		V value = this.loader.apply(key);
+		this.put(home, new Entry<>(key, value));
+		return value;
+	}
+
+	protected void put(int home, Entry<V> newEntry)
+	{
+		// take the first empty slot if there is one
+		for (int probe=0; probe<PROBE_LIMIT; probe++)
+		{
+			int slot = (home + probe) & this.mask;
+			if (this.slots.get(slot) == null && this.slots.compareAndSet(slot, null, newEntry))
+			{
+				this.referenced.set(slot, 0);
+				this.size.incrementAndGet();
+				return;
+			}
+		}
+
+		// otherwise sweep the key's slots from a shared starting point, clearing referenced bits, until one is unreferenced;
+		// after one full pass every bit has been cleared, so the second pass always finds one
+		int start = this.clockHand.getAndIncrement();
+		for (int step=0; step<PROBE_LIMIT*2; step++)
+		{
+			int slot = (home + ((start + step) & (PROBE_LIMIT - 1))) & this.mask;
+			if (this.referenced.get(slot) != 0)
+			{
+				this.referenced.set(slot, 0);
+				continue;
+			}
+			Entry<V> oldEntry = this.slots.get(slot);
+			if (oldEntry != null && this.slots.compareAndSet(slot, oldEntry, newEntry))
+			{
+				this.evictions.increment();
+				return;
+			}
+		}
+		// lost every race for the slots; the value was still returned, it just isn't cached this time
+	}
+
+	public void clear()
+	{
+		for (int slot=0; slot<=this.mask; slot++)
+		{
+			if (this.slots.getAndSet(slot, null) != null)
+			{
+				this.size.decrementAndGet();
+			}
+			this.referenced.set(slot, 0);
+		}
+	}
+
+	private static int hash(long key)
+	{
+		// murmur3 finalizer, spreads the low bits of index keys over the whole table
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+
+	protected static class Entry<V>
+	{
+		public final long key;
+		public final V value;
+
+		public Entry(long key, V value)
+		{
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package commoble.morered.util;
+
+import java.util.Arrays;
+
+import net.minecraft.util.math.shapes.BitSetVoxelShapePart;
+import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.util.math.shapes.VoxelShapeCube;
+import net.minecraft.util.math.shapes.VoxelShapes;
+
+/**
+ * The cells of a block-sized shape on a grid of sixteen pixels per axis, one bit per cell.
+ *
+ * Shapes made of whole-pixel boxes (such as wire shapes) can be converted to masks exactly, unioned with a bitwise or,
+ * and turned back into a single VoxelShape, without the repeated merging that successive {@link VoxelShapes#or} calls do.
+ * Masks of equal shapes are equal, so they can be used as keys for interning shapes.
+ */
+public class PixelShapeMask
+{
+	public static final int SIZE = 16;
+	private static final int WORDS = SIZE*SIZE*SIZE / 64;
+
+	// cell (x,y,z) is bit (x*16 + y)*16 + z, the same order VoxelShapeParts use
+	private final long[] cells;
+
+	public PixelShapeMask()
+	{
+		this.cells = new long[WORDS];
+	}
+
+	private PixelShapeMask(long[] cells)
+	{
+		this.cells = cells;
+	}
+
+	/**
+	 * @param shape A shape made of boxes whose corners lie on whole pixels
+	 * @return The shape's mask
+	 */
+	public static PixelShapeMask of(VoxelShape shape)
+	{
+		PixelShapeMask mask = new PixelShapeMask();
+		shape.forAllBoxes((x1,y1,z1,x2,y2,z2) -> mask.fill(toPixel(x1), toPixel(y1), toPixel(z1), toPixel(x2), toPixel(y2), toPixel(z2)));
+		return mask;
+	}
+
+	public static PixelShapeMask[] ofAll(VoxelShape[] shapes)
+	{
+		PixelShapeMask[] masks = new PixelShapeMask[shapes.length];
+		for (int i=0; i<shapes.length; i++)
+		{
+			masks[i] = of(shapes[i]);
+		}
+		return masks;
+	}
+
+	private static int toPixel(double coordinate)
+	{
+		return Math.max(0, Math.min(SIZE, (int)Math.round(coordinate * SIZE)));
+	}
+
+	/**
+	 * Sets every cell in a box
+	 * @param minX The lowest x cell of the box, inclusive
+	 * @param minY The lowest y cell of the box, inclusive
+	 * @param minZ The lowest z cell of the box, inclusive
+	 * @param maxX The highest x cell of the box, exclusive
+	 * @param maxY The highest y cell of the box, exclusive
+	 * @param maxZ The highest z cell of the box, exclusive
+	 */
+	public void fill(int minX, int minY, int minZ, int maxX, int maxY, int maxZ)
+	{
+		if (minZ >= maxZ)
+			return;
+		// a row of z cells is sixteen bits inside one word
+		long row = ((1L << (maxZ - minZ)) - 1L) << minZ;
+		for (int x=minX; x<maxX; x++)
+		{
+			for (int y=minY; y<maxY; y++)
+			{
+				int rowIndex = x*SIZE + y;
+				this.cells[rowIndex >>> 2] |= row << ((rowIndex & 3) * SIZE);
+			}
+		}
+	}
+
+	/**
+	 * Sets every cell that's set in another mask
+	 * @param other The other mask
+	 */
+	public void or(PixelShapeMask other)
+	{
+		for (int i=0; i<WORDS; i++)
+		{
+			this.cells[i] |= other.cells[i];
+		}
+	}
+
+	public PixelShapeMask copy()
+	{
+		return new PixelShapeMask(this.cells.clone());
+	}
+
+	public boolean isEmpty()
+	{
+		for (long word : this.cells)
+		{
+			if (word != 0L)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return A new VoxelShape with exactly the cells that are set in this mask
+	 */
+	public VoxelShape toShape()
+	{
+		if (this.isEmpty())
+			return VoxelShapes.empty();
+		BitSetVoxelShapePart part = new BitSetVoxelShapePart(SIZE, SIZE, SIZE);
+		for (int i=0; i<WORDS; i++)
+		{
+			long word = this.cells[i];
+			while (word != 0L)
+			{
+				int bit = i*64 + Long.numberOfTrailingZeros(word);
+				part.setFull(bit >>> 8, (bit >>> 4) & 15, bit & 15, true, true);
+				word &= word - 1L;
+			}
+		}
+		return new VoxelShapeCube(part);
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		return obj instanceof PixelShapeMask && Arrays.equals(this.cells, ((PixelShapeMask)obj).cells);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Arrays.hashCode(this.cells);
+	}
+}
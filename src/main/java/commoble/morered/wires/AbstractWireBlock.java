@@ -1,15 +1,15 @@
 package commoble.morered.wires;
 
 import java.util.EnumSet;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-
+import commoble.morered.api.MoreRedAPI;
 import commoble.morered.util.DirectionHelper;
+import commoble.morered.util.LongKeyedClockCache;
+import commoble.morered.util.PixelShapeMask;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.SixWayBlock;
@@ -50,6 +50,15 @@ public abstract class AbstractWireBlock extends Block
 	public static final BooleanProperty WEST = SixWayBlock.WEST;
 	public static final BooleanProperty EAST = SixWayBlock.EAST;
 	public static final BooleanProperty[] INTERIOR_FACES = {DOWN,UP,NORTH,SOUTH,WEST,EAST};
+	// most builds only ever use a few hundred distinct expanded shapes per wire block
+	public static final int MAX_CACHED_EXPANDED_SHAPES = 4096;
+	// the node and line bits of an expanded shape index; the edge flags above them don't change the shape
+	public static final int EDGE_FLAGS_SHIFT = 30;
+	public static final long EXPANDED_SHAPE_MASK = (1L << EDGE_FLAGS_SHIFT) - 1L;
+	public static final long EDGE_FLAGS_MASK = (1L << Edge.VALUES.length) - 1L;
+	
+	/** neighbor signature for neighbors whose updates can't be skipped **/
+	public static final int ALWAYS_RELEVANT = -1;
 	
 	/**
 	 * 
@@ -116,41 +125,50 @@ public abstract class AbstractWireBlock extends Block
 		return index;
 	}
 	
-	public static VoxelShape makeExpandedShapeForIndex(VoxelShape[] shapesByStateIndex, VoxelShape[] lineShapes, long index)
+	/**
+	 * Builds the expanded shape for an expanded shape index in one pass, by or-ing together the pixel masks of its parts
+	 * @param stateMasks Masks of the 64 shapes by state index
+	 * @param lineMasks Masks of the 24 line shapes
+	 * @param internedShapes Shapes already built, by mask; equal shapes for different indices are shared
+	 * @param index An expanded shape index (see {@link #getExpandedShapeIndex})
+	 * @return The expanded shape
+	 */
+	public static VoxelShape makeExpandedShapeForIndex(PixelShapeMask[] stateMasks, PixelShapeMask[] lineMasks, Map<PixelShapeMask, VoxelShape> internedShapes, long index)
 	{
 		int primaryShapeIndex = (int) (index & 63);
-		long expandedShapeIndex = index >> 6;
-		VoxelShape shape = shapesByStateIndex[primaryShapeIndex];
+		int expandedShapeIndex = (int) ((index & EXPANDED_SHAPE_MASK) >> 6);
+		if (expandedShapeIndex == 0)
+			return internedShapes.computeIfAbsent(stateMasks[primaryShapeIndex], PixelShapeMask::toShape);
+		
+		PixelShapeMask mask = stateMasks[primaryShapeIndex].copy();
 		// we want to use the index to combine secondary line shapes with the actual voxelshape for a given state
-		int flag = 1;
-		for (int side = 0; side < 6; side++)
+		while (expandedShapeIndex != 0)
 		{
-			for (int subSide = 0; subSide < 4; subSide++)
+			mask.or(lineMasks[Integer.numberOfTrailingZeros(expandedShapeIndex)]);
+			expandedShapeIndex &= expandedShapeIndex - 1;
+		}
+		VoxelShape shape = internedShapes.get(mask);
+		if (shape == null)
+		{
+			shape = mask.toShape();
+			if (internedShapes.size() < MAX_CACHED_EXPANDED_SHAPES)
 			{
-				if ((expandedShapeIndex & flag) != 0)
+				VoxelShape existingShape = internedShapes.putIfAbsent(mask, shape);
+				if (existingShape != null)
 				{
-					shape = VoxelShapes.or(shape, AbstractWireBlock.getLineShape(lineShapes, side, subSide));
+					shape = existingShape;
 				}
-				flag = flag << 1;
 			}
 		}
 		return shape;
 	}
 	
-	public static LoadingCache<Long, VoxelShape> makeVoxelCache(VoxelShape[] shapesByStateIndex, VoxelShape[] lineShapes)
+	public static LongKeyedClockCache<VoxelShape> makeVoxelCache(VoxelShape[] shapesByStateIndex, VoxelShape[] lineShapes)
 	{
-		return CacheBuilder.newBuilder()
-			.expireAfterAccess(5, TimeUnit.MINUTES)
-			.build(new CacheLoader<Long, VoxelShape>()
-			{
-	
-				@Override
-				public VoxelShape load(Long key) throws Exception
-				{
-					return AbstractWireBlock.makeExpandedShapeForIndex(shapesByStateIndex, lineShapes, key);
-				}
-			
-			});
+		PixelShapeMask[] stateMasks = PixelShapeMask.ofAll(shapesByStateIndex);
+		PixelShapeMask[] lineMasks = PixelShapeMask.ofAll(lineShapes);
+		Map<PixelShapeMask, VoxelShape> internedShapes = new ConcurrentHashMap<>();
+		return new LongKeyedClockCache<>(MAX_CACHED_EXPANDED_SHAPES, key -> AbstractWireBlock.makeExpandedShapeForIndex(stateMasks, lineMasks, internedShapes, key));
 	}
 
 	public static boolean canWireConnectToAdjacentWireOrCable(IBlockReader world, BlockPos thisPos,
@@ -182,8 +200,9 @@ public abstract class AbstractWireBlock extends Block
 
 	protected final VoxelShape[] shapesByStateIndex;
 	protected final VoxelShape[] raytraceBackboards;
-	protected final LoadingCache<Long, VoxelShape> voxelCache;
+	protected final LongKeyedClockCache<VoxelShape> voxelCache;
 	protected final boolean useIndirectPower;
+	protected final boolean readsChanneledPower;
 
 	/**
 	 * 
@@ -192,8 +211,9 @@ public abstract class AbstractWireBlock extends Block
 	 * @param raytraceBackboards Array of 6 voxelshapes (by attachment face direction) used for subwire raytrace checking
 	 * @param voxelCache The cache to use for this block's voxels given world context
 	 * @param useIndirectPower Whether this block is allowed to send or receive power conducted indirectly through solid cubes
+	 * @param readsChanneledPower Whether this block reads power from its neighbors' channeled power capabilities
 	 */
-	public AbstractWireBlock(Properties properties, VoxelShape[] shapesByStateIndex, VoxelShape[] raytraceBackboards, LoadingCache<Long, VoxelShape> voxelCache, boolean useIndirectPower)
+	public AbstractWireBlock(Properties properties, VoxelShape[] shapesByStateIndex, VoxelShape[] raytraceBackboards, LongKeyedClockCache<VoxelShape> voxelCache, boolean useIndirectPower, boolean readsChanneledPower)
 	{
 		super(properties);
 		// the "default" state has to be the empty state so we can build it up one face at a time
@@ -209,9 +229,101 @@ public abstract class AbstractWireBlock extends Block
 		this.raytraceBackboards = raytraceBackboards;
 		this.voxelCache = voxelCache;
 		this.useIndirectPower = useIndirectPower;
+		this.readsChanneledPower = readsChanneledPower;
 	}
 
 	
+	/**
+	 * Summarizes everything about a neighboring block that this wire's shape, connections, and power can depend on,
+	 * so that neighbor updates that don't change the summary can be skipped (see {@link WireNeighborSignatures}).
+	 * Neighbors whose effect on wires can't be summarized (other wires, blocks with registered wire behaviour,
+	 * and channeled power providers next to blocks that read channeled power) are always relevant.
+	 * @param world The world the wire is in
+	 * @param wirePos The position of the wire block
+	 * @param wireState The wire's blockstate
+	 * @param neighborPos The position of the neighbor
+	 * @param neighborState The neighbor's blockstate
+	 * @param directionToNeighbor The direction from the wire to the neighbor
+	 * @return The neighbor's signature, or ALWAYS_RELEVANT if every update from the neighbor must be handled
+	 */
+	protected int getNeighborSignature(World world, BlockPos wirePos, BlockState wireState, BlockPos neighborPos, BlockState neighborState, Direction directionToNeighbor)
+	{
+		Block neighborBlock = neighborState.getBlock();
+		if (neighborBlock instanceof AbstractWireBlock
+			|| MoreRedAPI.getWireConnectabilityRegistry().containsKey(neighborBlock)
+			|| MoreRedAPI.getExpandedPowerRegistry().containsKey(neighborBlock)
+			|| MoreRedAPI.getCableConnectabilityRegistry().containsKey(neighborBlock))
+		{
+			return ALWAYS_RELEVANT;
+		}
+		if (this.readsChanneledPower)
+		{
+			// cables read power from their neighbors' capabilities, which the signature can't summarize
+			TileEntity neighborTE = world.getBlockEntity(neighborPos);
+			if (neighborTE != null && neighborTE.getCapability(MoreRedAPI.CHANNELED_POWER_CAPABILITY, directionToNeighbor.getOpposite()).isPresent())
+				return ALWAYS_RELEVANT;
+		}
+		if (neighborState.isAir())
+			return 0; // air has nothing else worth summarizing, and no other signature is 0
+		
+		Direction directionToWire = directionToNeighbor.getOpposite();
+		int signature = 1;
+		if (neighborState.isFaceSturdy(world, neighborPos, directionToWire))
+			signature |= 1 << 1;
+		// world.getSignal would include power conducted through the neighbor from this wire itself,
+		// which would hide the neighbor's other sources turning off
+		int signal;
+		if (neighborState.shouldCheckWeakPower(world, neighborPos, directionToNeighbor))
+		{
+			signal = getConductedSignalExcept(world, neighborPos, directionToWire);
+			if (signal == ALWAYS_RELEVANT)
+				return ALWAYS_RELEVANT;
+		}
+		else
+		{
+			signal = world.getSignal(neighborPos, directionToNeighbor);
+		}
+		signature |= signal << 2;
+		signature |= world.getDirectSignal(neighborPos, directionToNeighbor) << 6;
+		for (int side=0; side<6; side++)
+		{
+			Direction attachmentDirection = Direction.from3DDataValue(side);
+			if (attachmentDirection.getAxis() != directionToNeighbor.getAxis()
+				&& wireState.getValue(INTERIOR_FACES[side])
+				&& this.canAdjacentBlockConnectToFace(world, wirePos, wireState, neighborBlock, attachmentDirection, directionToWire, neighborPos, neighborState))
+			{
+				signature |= 1 << (10 + side);
+			}
+		}
+		return signature;
+	}
+	
+	/**
+	 * Gets the strong power a conducting block receives from its neighbors other than a wire block next to it,
+	 * as World.getDirectSignalTo would without that side
+	 * @param world The world the blocks are in
+	 * @param conductorPos The position of the conducting block
+	 * @param directionToWire The direction from the conducting block to the wire block
+	 * @return The strongest power conducted into the block from its other five sides,
+	 * or ALWAYS_RELEVANT if another wire block is next to it (its power can depend on the wire's own power)
+	 */
+	public static int getConductedSignalExcept(World world, BlockPos conductorPos, Direction directionToWire)
+	{
+		int power = 0;
+		BlockPos.Mutable mutaPos = new BlockPos.Mutable();
+		for (Direction direction : Direction.values())
+		{
+			if (direction == directionToWire)
+				continue;
+			mutaPos.setWithOffset(conductorPos, direction);
+			BlockState state = WireGraph.getLoadedBlockState(world, mutaPos);
+			if (state.getBlock() instanceof AbstractWireBlock)
+				return ALWAYS_RELEVANT;
+			power = Math.max(power, state.getDirectSignal(world, mutaPos, direction));
+		}
+		return power;
+	}
+	
 	protected abstract boolean canAdjacentBlockConnectToFace(IBlockReader world, BlockPos thisPos, BlockState thisState, Block neighborBlock, Direction attachmentDirection, Direction directionToWire, BlockPos neighborPos, BlockState neighborState);
 	protected abstract void updatePowerAfterBlockUpdate(World world, BlockPos wirePos, BlockState wireState);
 	protected abstract void notifyNeighbors(World world, BlockPos wirePos, BlockState newState, EnumSet<Direction> updateDirections, boolean doConductedPowerUpdates);
@@ -227,7 +339,7 @@ public abstract class AbstractWireBlock extends Block
 	public VoxelShape getShape(BlockState state, IBlockReader worldIn, BlockPos pos, ISelectionContext context)
 	{
 		return worldIn instanceof World
-			? VoxelCache.get((World)worldIn).getWireShape(pos)
+			? VoxelCache.get((World)worldIn).getWireShape(this, state, pos)
 			: this.shapesByStateIndex[getShapeIndex(state)];
 	}
 
@@ -247,6 +359,8 @@ public abstract class AbstractWireBlock extends Block
 	@Override
 	public BlockState updateShape(BlockState thisState, Direction directionToNeighbor, BlockState neighborState, IWorld world, BlockPos thisPos, BlockPos neighborPos)
 	{
+		// our signal on non-attached sides depends on the neighbor's state
+		WireSignalCache.invalidate(world, thisPos);
 		BooleanProperty sideProperty = INTERIOR_FACES[directionToNeighbor.ordinal()];
 		if (thisState.getValue(sideProperty)) // if wire is attached on the relevant face, check if it should be disattached
 		{
@@ -339,6 +453,8 @@ public abstract class AbstractWireBlock extends Block
 	@Override
 	public void onPlace(BlockState state, World worldIn, BlockPos pos, BlockState oldState, boolean isMoving)
 	{
+		WireNeighborSignatures.forget(worldIn, pos);
+		WireSignalCache.invalidate(worldIn, pos);
 		this.updateShapeCache(worldIn, pos);
 		super.onPlace(state, worldIn, pos, oldState, isMoving);
 	}
@@ -361,7 +477,7 @@ public abstract class AbstractWireBlock extends Block
 			}
 		}
 		this.updateShapeCache(worldIn, pos);
-		this.updatePowerAfterBlockUpdate(worldIn, pos, state);
+		WirePropagationScheduler.updatePower(worldIn, this, pos, state);
 		super.setPlacedBy(worldIn, pos, state, placer, stack);
 	}
 
@@ -393,11 +509,13 @@ public abstract class AbstractWireBlock extends Block
 			}
 			doPowerUpdate = false;
 		}
+		WireNeighborSignatures.forget(worldIn, pos);
+		WireSignalCache.invalidate(worldIn, pos);
 		this.updateShapeCache(worldIn, pos);
 		super.onRemove(oldState, worldIn, pos, newState, isMoving);
 		// if the new state is still a wire block and has at least one wire in it, do a power update
 		if (doPowerUpdate)
-			this.updatePowerAfterBlockUpdate(worldIn, pos, newState);
+			WirePropagationScheduler.updatePower(worldIn, this, pos, newState);
 	}
 
 	// called when a neighboring blockstate changes, not called on the client
@@ -406,6 +524,14 @@ public abstract class AbstractWireBlock extends Block
 	{
 		BlockPos offset = fromPos.subtract(pos);
 		Direction directionToNeighbor = Direction.fromNormal(offset.getX(), offset.getY(), offset.getZ());
+		WireSignalCache.invalidate(worldIn, pos);
+		// skip all of the work below if nothing we care about changed
+		if (directionToNeighbor != null && worldIn instanceof ServerWorld
+			&& !WireNeighborSignatures.get((ServerWorld)worldIn).hasRelevantChange(worldIn, this, pos, state, fromPos, directionToNeighbor))
+		{
+			super.neighborChanged(state, worldIn, pos, neighborBlock, fromPos, isMoving);
+			return;
+		}
 		long edgeFlags = this.getEdgeFlags(worldIn,pos);
 		// if this is an empty wire block, remove it if no edges are valid anymore
 		if (this.isEmptyWireBlock(state))
@@ -425,33 +551,41 @@ public abstract class AbstractWireBlock extends Block
 		}
 
 		this.updateShapeCache(worldIn, pos);
-		this.updatePowerAfterBlockUpdate(worldIn, pos, state);
-		// if the changed neighbor has any convex edges through this block, propagate neighbor update along any edges
-		if (edgeFlags != 0)
+		// hold the neighbor updates from our power update and our edges so they only get sent once
+		NeighborUpdateQueue queue = NeighborUpdateQueue.get(worldIn);
+		queue.beginPropagation();
+		try
 		{
-			EnumSet<Direction> edgeUpdateDirs = EnumSet.noneOf(Direction.class);
-			Edge[] edges = Edge.values();
-			for (int edgeFlag = 0; edgeFlag < 12; edgeFlag++)
+			WirePropagationScheduler.updatePower(worldIn, this, pos, state);
+			// if the changed neighbor has any convex edges through this block, propagate neighbor update along any edges
+			if (edgeFlags != 0)
 			{
-				if ((edgeFlags & (1 << edgeFlag)) != 0)
+				EnumSet<Direction> edgeUpdateDirs = EnumSet.noneOf(Direction.class);
+				Edge[] edges = Edge.VALUES;
+				for (int edgeFlag = 0; edgeFlag < 12; edgeFlag++)
 				{
-					Edge edge = edges[edgeFlag];
-					if (edge.sideA == directionToNeighbor)
-						edgeUpdateDirs.add(edge.sideB);
-					else if (edge.sideB == directionToNeighbor)
-						edgeUpdateDirs.add(edge.sideA);
+					if ((edgeFlags & (1 << edgeFlag)) != 0)
+					{
+						Edge edge = edges[edgeFlag];
+						if (edge.sideA == directionToNeighbor)
+							edgeUpdateDirs.add(edge.sideB);
+						else if (edge.sideB == directionToNeighbor)
+							edgeUpdateDirs.add(edge.sideA);
+					}
 				}
-			}
-			if (!edgeUpdateDirs.isEmpty() && !net.minecraftforge.event.ForgeEventFactory.onNeighborNotify(worldIn, pos, state, edgeUpdateDirs, false).isCanceled())
-			{
-				BlockPos.Mutable mutaPos = pos.mutable();
-				for (Direction dir : edgeUpdateDirs)
+				if (!edgeUpdateDirs.isEmpty() && !net.minecraftforge.event.ForgeEventFactory.onNeighborNotify(worldIn, pos, state, edgeUpdateDirs, false).isCanceled())
 				{
-					BlockPos neighborPos = mutaPos.setWithOffset(pos, dir);
-					worldIn.neighborChanged(neighborPos, this, pos);
+					for (Direction dir : edgeUpdateDirs)
+					{
+						queue.enqueue(worldIn, pos.relative(dir), this, pos);
+					}
 				}
 			}
 		}
+		finally
+		{
+			queue.endPropagation(worldIn);
+		}
 		
 		super.neighborChanged(state, worldIn, pos, neighborBlock, fromPos, isMoving);
 	}
@@ -500,12 +634,35 @@ public abstract class AbstractWireBlock extends Block
 		return state == this.defaultBlockState();
 	}
 	
+	/**
+	 * Gets the edge flags of a wire block, reading them from its stored shape index if it has one
+	 * (stored indices are kept up to date as the wire's neighbors change, see {@link VoxelCache#updateShapeIndicesAround})
+	 * @param world The world for worldpos context
+	 * @param pos The position for worldpos context
+	 * @return Flags in edge-ordinal order (bit n set if edge n should render)
+	 */
 	protected long getEdgeFlags(IBlockReader world, BlockPos pos)
+	{
+		WireShapesInChunk shapes = WireShapesInChunk.get(world, pos);
+		long index = shapes == null ? WireShapesInChunk.NO_SHAPE_INDEX : shapes.getShapeIndex(pos);
+		return index == WireShapesInChunk.NO_SHAPE_INDEX
+			? this.computeEdgeFlags(world, pos)
+			: (index >>> EDGE_FLAGS_SHIFT) & EDGE_FLAGS_MASK;
+	}
+	
+	/**
+	 * Checks all twelve edges of a wire block
+	 * @param world The world for worldpos context
+	 * @param pos The position for worldpos context
+	 * @return Flags in edge-ordinal order (bit n set if edge n should render)
+	 */
+	protected long computeEdgeFlags(IBlockReader world, BlockPos pos)
 	{
 		long result = 0;
-		for (int edge=0; edge<12; edge++)
+		Edge[] edges = Edge.VALUES;
+		for (int edge=0; edge<edges.length; edge++)
 		{
-			if (Edge.values()[edge].shouldEdgeRender(world, pos, this))
+			if (edges[edge].shouldEdgeRender(world, pos, this))
 			{
 				result |= (1L << (edge));
 			}
@@ -514,15 +671,22 @@ public abstract class AbstractWireBlock extends Block
 	}
 	
 	/**
-	 * Returns a long containing the edge flags shifted for node-line-edge format
-	 * The first 30 bits will be 0, the next 12 bits contain edge flags in edge-ordinal order
+	 * Rechecks only the four edges of a wire block that a change to one of its face-adjacent neighbors can affect
 	 * @param world The world for worldpos context
 	 * @param pos The position for worldpos context
-	 * @return A set of edge flags where the 30 least-significant bits are 0 and the next 12 bits contain edge flags in edge-ordinal order
+	 * @param oldEdgeFlags The wire's edge flags from before the neighbor changed
+	 * @param changedSide The direction from the wire to the neighbor that changed
+	 * @return The updated edge flags
 	 */
-	protected long getEdgeFlagsForNodeLineEdgeFormat(IBlockReader world, BlockPos pos)
+	protected long updateEdgeFlags(IBlockReader world, BlockPos pos, long oldEdgeFlags, Direction changedSide)
 	{
-		return this.getEdgeFlags(world,pos) << 30;
+		long result = oldEdgeFlags;
+		for (Edge edge : Edge.EDGES_BY_RELEVANT_DIRECTION[changedSide.ordinal()])
+		{
+			long flag = 1L << edge.ordinal();
+			result = edge.shouldEdgeRender(world, pos, this) ? (result | flag) : (result & ~flag);
+		}
+		return result;
 	}
 	
 	@Nullable
@@ -564,14 +728,32 @@ public abstract class AbstractWireBlock extends Block
 	
 	protected void updateShapeCache(World world, BlockPos pos)
 	{
-		LoadingCache<BlockPos, VoxelShape> cache = VoxelCache.get(world).shapesByPos;
-		cache.invalidate(pos);
-		for (int i=0; i<6; i++)
+		if (world instanceof ServerWorld)
 		{
-			cache.invalidate(pos.relative(Direction.from3DDataValue(i)));
+			WireBulkEdit bulkEdit = WireBulkEdit.get((ServerWorld)world);
+			if (bulkEdit.isOpen())
+			{
+				// don't leave stale edge flags around for the rest of the edit
+				VoxelCache.get(world).forgetShapeIndicesAround(pos);
+				bulkEdit.deferShapeUpdate(pos);
+				return;
+			}
 		}
+		updateShapeCacheAround(world, pos);
+	}
+	
+	/**
+	 * Recomputes stored shape indices and discards links that may have changed because of a change at the given position,
+	 * and marks the position for syncing to clients
+	 * @param world The world the change happened in
+	 * @param pos The position that changed
+	 */
+	public static void updateShapeCacheAround(World world, BlockPos pos)
+	{
+		VoxelCache.get(world).updateShapeIndicesAround(pos);
 		if (world instanceof ServerWorld)
 		{
+			WireGraph.get((ServerWorld)world).invalidateAround(pos);
 			WireUpdateBuffer.get((ServerWorld)world).enqueue(pos);
 		}
 	}
@@ -649,6 +831,17 @@ public abstract class AbstractWireBlock extends Block
 	 * @return An index usable by the voxel cache
 	 */
 	public long getExpandedShapeIndex(BlockState state, IBlockReader world, BlockPos pos)
+	{
+		return this.getNodeAndLineShapeIndex(state, world, pos) | (this.computeEdgeFlags(world, pos) << EDGE_FLAGS_SHIFT);
+	}
+	
+	/**
+	 * @param state A blockstate belonging to a WireBlock
+	 * @param world world
+	 * @param pos position of the blockstate
+	 * @return The expanded shape index of the state without its edge flags (bits 0-29, see {@link #getExpandedShapeIndex})
+	 */
+	public long getNodeAndLineShapeIndex(BlockState state, IBlockReader world, BlockPos pos)
 	{
 		// for each of the six interior faces a wire block can have a wire attached to,
 		// that face can be connected to any of the four orthagonally adjacent blocks
@@ -682,14 +875,15 @@ public abstract class AbstractWireBlock extends Block
 				}
 			}
 		}
-		result = result | this.getEdgeFlagsForNodeLineEdgeFormat(world,pos);
 		return result;
 	}
 	
-	public VoxelShape getCachedExpandedShapeVoxel(BlockState wireState, World world, BlockPos pos)
+	/**
+	 * @param expandedShapeIndex An index from {@link #getExpandedShapeIndex}
+	 * @return The expanded shape for the index
+	 */
+	public VoxelShape getExpandedShape(long expandedShapeIndex)
 	{
-		long index = this.getExpandedShapeIndex(wireState, world, pos);
-		
-		return this.voxelCache.getUnchecked(index);
+		return this.voxelCache.get(expandedShapeIndex & EXPANDED_SHAPE_MASK);
 	}
 }
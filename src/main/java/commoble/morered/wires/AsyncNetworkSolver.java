@@ -0,0 +1,182 @@
+package commoble.morered.wires;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nonnull;
+
+import commoble.morered.MoreRed;
+import commoble.morered.ServerConfig;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+
+/**
+ * Solves the power of very large wire networks off of the server thread when async_network_solves is enabled in the server config.
+ *
+ * The network's topology and source power are captured on the server thread (the network and its gathered source power
+ * aren't touched again until the solve finishes), the solve runs on the common ForkJoin pool (see {@link NetworkPowerSolver#solveParallel}),
+ * and the solved power is applied on the server thread at the start of the first tick after the solve finishes.
+ *
+ * Until then, power updates for positions in the network are held back instead of running, as their inputs are already being solved.
+ * If any block in the network changed in the meantime, the solved power is thrown away;
+ * either way, the held back updates are run once the solve is done, so the network catches up with any edits.
+ */
+public class AsyncNetworkSolver extends WorldSavedData
+{
+	public static final String ID = "morered:asyncnetworksolver";
+
+	private final List<PendingSolve> pendingSolves = new ArrayList<>();
+
+	private long asyncSolves = 0;
+	public long getAsyncSolves() { return this.asyncSolves; }
+
+	private long discardedSolves = 0;
+	public long getDiscardedSolves() { return this.discardedSolves; }
+
+	public AsyncNetworkSolver()
+	{
+		super(ID);
+	}
+
+	public static AsyncNetworkSolver get(@Nonnull ServerWorld world)
+	{
+		return world.getDataStorage().computeIfAbsent(AsyncNetworkSolver::new, ID);
+	}
+
+	/**
+	 * @param networkSize The number of positions in a network
+	 * @return True if a network of that size should be solved off-thread
+	 */
+	public static boolean shouldSolveAsync(int networkSize)
+	{
+		return ServerConfig.INSTANCE.async_network_solves.get() && networkSize >= ServerConfig.INSTANCE.async_network_solve_threshold.get();
+	}
+
+	/**
+	 * Starts solving a network off-thread
+	 * @param network The network, which must not be modified afterward
+	 * @param sourcePower The source power of each of the network's nodes
+	 * @param linkStarts The network's link starts
+	 * @param links The network's links
+	 */
+	public void submit(WireNetwork network, int[] sourcePower, int[] linkStarts, int[] links)
+	{
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		CompletableFuture<int[]> result = CompletableFuture.supplyAsync(
+			() -> NetworkPowerSolver.solveParallel(sourcePower, linkStarts, links, pool, pool.getParallelism()),
+			pool);
+		this.pendingSolves.add(new PendingSolve(network, result));
+		this.asyncSolves++;
+	}
+
+	/**
+	 * Holds back a power update if its position belongs to a network that's currently being solved
+	 * @param pos The position of the wire block to update
+	 * @return True if the update was held back, false if it should run now
+	 */
+	public boolean holdPowerUpdate(BlockPos pos)
+	{
+		for (PendingSolve solve : this.pendingSolves)
+		{
+			if (solve.network.contains(pos))
+			{
+				solve.heldPositions.add(pos.asLong());
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Applies any finished solves and runs the power updates that were held back for them; called at the start of the world tick
+	 * @param world The world to apply solves in
+	 */
+	public void onTickStart(ServerWorld world)
+	{
+		if (this.pendingSolves.isEmpty())
+			return;
+
+		List<PendingSolve> finishedSolves = new ArrayList<>();
+		Iterator<PendingSolve> iterator = this.pendingSolves.iterator();
+		while (iterator.hasNext())
+		{
+			PendingSolve solve = iterator.next();
+			if (solve.result.isDone())
+			{
+				iterator.remove();
+				finishedSolves.add(solve);
+			}
+		}
+
+		for (PendingSolve solve : finishedSolves)
+		{
+			int[] power = null;
+			try
+			{
+				power = solve.result.join();
+			}
+			catch (CompletionException e)
+			{
+				MoreRed.LOGGER.error("Failed to solve wire network power in {}", world.dimension().location(), e);
+			}
+			if (power != null && solve.network.matchesWorld())
+			{
+				solve.network.applyPower(power);
+			}
+			else
+			{
+				this.discardedSolves++;
+				// make sure the network gets solved again even if nothing asked for an update while it was being solved
+				solve.heldPositions.add(solve.network.getPackedPos(0));
+			}
+			LongIterator positions = solve.heldPositions.iterator();
+			while (positions.hasNext())
+			{
+				BlockPos pos = BlockPos.of(positions.nextLong());
+				if (!world.hasChunkAt(pos))
+					continue;
+				BlockState state = world.getBlockState(pos);
+				Block block = state.getBlock();
+				if (block instanceof AbstractWireBlock)
+				{
+					WirePropagationScheduler.updatePower(world, (AbstractWireBlock)block, pos, state);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void load(CompoundNBT nbt)
+	{
+		//noop
+	}
+
+	@Override
+	public CompoundNBT save(CompoundNBT compound)
+	{
+		return compound; //noop
+	}
+
+	protected static class PendingSolve
+	{
+		public final WireNetwork network;
+		public final CompletableFuture<int[]> result;
+		public final LongLinkedOpenHashSet heldPositions = new LongLinkedOpenHashSet();
+
+		public PendingSolve(WireNetwork network, CompletableFuture<int[]> result)
+		{
+			this.network = network;
+			this.result = result;
+		}
+	}
+}
@@ -1,20 +1,19 @@
 package commoble.morered.wires;
 
-import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.function.Function;
 
-import com.google.common.cache.LoadingCache;
-
+import commoble.morered.MoreRedProfiler;
 import commoble.morered.TileEntityRegistrar;
 import commoble.morered.api.ChanneledPowerSupplier;
 import commoble.morered.api.MoreRedAPI;
 import commoble.morered.api.WireConnector;
 import commoble.morered.api.internal.DefaultWireProperties;
 import commoble.morered.api.internal.WireVoxelHelpers;
-import commoble.morered.util.BlockStateUtil;
+import commoble.morered.util.ChannelLanes;
 import commoble.morered.util.DirectionHelper;
+import commoble.morered.util.LongKeyedClockCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.tileentity.TileEntity;
@@ -33,18 +32,19 @@ public class BundledCableBlock extends AbstractWireBlock
 	public static final VoxelShape[] RAYTRACE_BACKBOARDS = WireVoxelHelpers.makeRaytraceBackboards(4);
 	public static final VoxelShape[] LINE_SHAPES = WireVoxelHelpers.makeLineShapes(3, 4);
 	public static final VoxelShape[] SHAPES_BY_STATE_INDEX = AbstractWireBlock.makeVoxelShapes(NODE_SHAPES_DUNSWE, LINE_SHAPES);
-	public static final LoadingCache<Long, VoxelShape> VOXEL_CACHE = AbstractWireBlock.makeVoxelCache(SHAPES_BY_STATE_INDEX, LINE_SHAPES);
+	public static final LongKeyedClockCache<VoxelShape> VOXEL_CACHE = AbstractWireBlock.makeVoxelCache(SHAPES_BY_STATE_INDEX, LINE_SHAPES);
 
 	public BundledCableBlock(Properties properties)
 	{
-		super(properties, SHAPES_BY_STATE_INDEX, RAYTRACE_BACKBOARDS, VOXEL_CACHE, false);
+		super(properties, SHAPES_BY_STATE_INDEX, RAYTRACE_BACKBOARDS, VOXEL_CACHE, false, true);
 	}
 
 
+	// empty wire blocks only render edges and never hold power, so they don't need a TE
 	@Override
 	public boolean hasTileEntity(BlockState state)
 	{
-		return true;
+		return !this.isEmptyWireBlock(state);
 	}
 
 	@Override
@@ -70,15 +70,16 @@ public class BundledCableBlock extends AbstractWireBlock
 		if (!(world instanceof World))
 			return;
 		
-		TileEntity neighborTE = world.getBlockEntity(pos);
-		if (neighborTE == null)
-			return;
-		
 		Direction directionFromNeighbor = DirectionHelper.getDirectionToNeighborPos(neighbor, pos);
 		if (directionFromNeighbor == null)
 			return;
 		
-		neighborTE.getCapability(MoreRedAPI.CHANNELED_POWER_CAPABILITY, directionFromNeighbor).ifPresent($ -> this.updatePowerAfterBlockUpdate((World)world, pos, state));
+		// empty wire blocks have no TE, but still need to pass the update along their edges
+		TileEntity neighborTE = world.getBlockEntity(pos);
+		if (neighborTE != null)
+		{
+			neighborTE.getCapability(MoreRedAPI.CHANNELED_POWER_CAPABILITY, directionFromNeighbor).ifPresent($ -> WirePropagationScheduler.updatePower((World)world, this, pos, state));
+		}
 
 		// if the changed neighbor has any convex edges through this block, propagate neighbor update along any edges
 		long edgeFlags = this.getEdgeFlags(world,pos);
@@ -86,7 +87,7 @@ public class BundledCableBlock extends AbstractWireBlock
 		{
 			EnumSet<Direction> edgeUpdateDirs = EnumSet.noneOf(Direction.class);
 			Direction directionToNeighbor = directionFromNeighbor.getOpposite();
-			Edge[] edges = Edge.values();
+			Edge[] edges = Edge.VALUES;
 			for (int edgeFlag = 0; edgeFlag < 12; edgeFlag++)
 			{
 				if ((edgeFlags & (1 << edgeFlag)) != 0)
@@ -125,7 +126,7 @@ public class BundledCableBlock extends AbstractWireBlock
 		
 		BlockPos.Mutable mutaPos = wirePos.mutable();
 		BlockState[] neighborStates = new BlockState[6];
-		Map<Direction,ChanneledPowerSupplier> neighborPowerSuppliers = new EnumMap<>(Direction.class);
+		ChanneledPowerSupplier[] neighborPowerSuppliers = new ChanneledPowerSupplier[6];
 		ChanneledPowerSupplier noPower = DefaultWireProperties.NO_POWER_SUPPLIER;
 		Function<BlockPos, Function<Direction, ChanneledPowerSupplier>> neighborPowerFinder = neighborPos -> directionToNeighbor ->
 		{
@@ -136,120 +137,148 @@ public class BundledCableBlock extends AbstractWireBlock
 			return neighborTE.getCapability(MoreRedAPI.CHANNELED_POWER_CAPABILITY, directionToNeighbor.getOpposite()).orElse(noPower);
 		};
 		
-		for (int channel=0; channel<16; channel++)
+		// all sixteen channels are handled at once, packed into two words per face (see ChannelLanes)
+		// power from outside this block can't change while we update, so we only need to read it once per face
+		long[] power = new long[12];
+		boolean attachedFaceStates[] = new boolean[6];
+		for (int attachmentSide=0; attachmentSide<6; attachmentSide++)
 		{
+			attachedFaceStates[attachmentSide] = wireState.getValue(INTERIOR_FACES[attachmentSide]);
+		}
+		for (int attachmentSide=0; attachmentSide<6; attachmentSide++)
+		{
+			if (!attachedFaceStates[attachmentSide])
+				continue; // unattached faces always have no power
 			
-			// set of faces needing updates
-			// ONLY faces of attached wires are to be added to this set (check the state before adding)
-			EnumSet<Direction> facesNeedingUpdates = EnumSet.noneOf(Direction.class);
-			boolean attachedFaceStates[] = new boolean[6];
-			for (int attachmentSide=0; attachmentSide<6; attachmentSide++)
+			Direction attachmentDirection = Direction.from3DDataValue(attachmentSide);
+			// always check the capability of attached faces
+			mutaPos.setWithOffset(wirePos, attachmentDirection);
+			
+			// get neighbor state and power supplier in this direction, cacheing them for the rest of the method if we haven't yet
+			ChanneledPowerSupplier attachedNeighborPowerSupplier = neighborPowerSuppliers[attachmentSide];
+			if (attachedNeighborPowerSupplier == null)
 			{
-				if (wireState.getValue(INTERIOR_FACES[attachmentSide]))
-				{
-					attachedFaceStates[attachmentSide] = true;
-					facesNeedingUpdates.add(Direction.from3DDataValue(attachmentSide));
-				}
-				else
-				{
-					wire.setPower(attachmentSide, channel, 0);
-				}
+				attachedNeighborPowerSupplier = neighborPowerFinder.apply(mutaPos).apply(attachmentDirection);
+				neighborPowerSuppliers[attachmentSide] = attachedNeighborPowerSupplier;
 			}
-			
-			int iteration = 0;
-			while (!facesNeedingUpdates.isEmpty())
+			long lowChannels = getPowerLanes(attachedNeighborPowerSupplier, world, wirePos, wireState, attachmentDirection, 0);
+			long highChannels = getPowerLanes(attachedNeighborPowerSupplier, world, wirePos, wireState, attachmentDirection, 1);
+			// for the four sides that are neither attachmentSide nor its opposite
+			for (int orthagonal = 0; orthagonal < 4; orthagonal++)
 			{
-				int attachmentSide = (iteration++) % 6;
-				Direction attachmentDirection = Direction.from3DDataValue(attachmentSide);
-				
-				// if the set of remaining faces doesn't contain the face, skip the rest of the iteration
-				if (!facesNeedingUpdates.remove(attachmentDirection)) 
-					continue;
-				
-				// we know there's a wire attached to the face because we checked the state before adding
-				// always check the capability of attached faces
-				mutaPos.setWithOffset(wirePos, attachmentDirection);
-				
-				// get neighbor state and power supplier in this direction, cacheing them for the rest of the method if we haven't yet
-				BlockState attachedNeighborState = neighborStates[attachmentSide];
-				if (attachedNeighborState == null)
-				{
-					attachedNeighborState = world.getBlockState(mutaPos);
-					neighborStates[attachmentSide] = attachedNeighborState;
-				}
-				ChanneledPowerSupplier attachedNeighborPowerSupplier;
-				attachedNeighborPowerSupplier = neighborPowerSuppliers.get(attachmentDirection);
-				if (attachedNeighborPowerSupplier == null)
+				int neighborSide = DirectionHelper.uncompressSecondSide(attachmentSide, orthagonal);
+				Direction directionToNeighbor = Direction.from3DDataValue(neighborSide);
+
+				Direction directionToWire = directionToNeighbor.getOpposite();
+				BlockState neighborState = neighborStates[neighborSide];
+				mutaPos.setWithOffset(wirePos, directionToNeighbor);
+				if (neighborState == null)
 				{
-					attachedNeighborPowerSupplier = neighborPowerFinder.apply(mutaPos).apply(attachmentDirection);
-					neighborPowerSuppliers.put(attachmentDirection, attachedNeighborPowerSupplier);
+					neighborState = world.getBlockState(mutaPos);
+					neighborStates[neighborSide] = neighborState;
 				}
-				int power = Math.max(0, attachedNeighborPowerSupplier.getPowerOnChannel(world, wirePos, wireState, attachmentDirection, channel)-1);
-				// for the four sides that are neither attachmentSide nor its opposite
-				for (int orthagonal = 0; orthagonal < 4; orthagonal++)
+				Block neighborBlock = neighborState.getBlock();
+				// only check orthagonal capabilities if the cable can connect to that block
+				WireConnector connector = connectors.getOrDefault(neighborBlock, defaultConnector);
+				if (connector.canConnectToAdjacentWire(world, mutaPos, neighborState, wirePos, wireState, attachmentDirection, directionToWire))
 				{
-					int neighborSide = DirectionHelper.uncompressSecondSide(attachmentSide, orthagonal);
-					Direction directionToNeighbor = Direction.from3DDataValue(neighborSide);
-
-					Direction directionToWire = directionToNeighbor.getOpposite();
-					BlockState neighborState = neighborStates[neighborSide];
-					mutaPos.setWithOffset(wirePos, directionToNeighbor);
-					if (neighborState == null)
-					{
-						neighborState = world.getBlockState(mutaPos);
-						neighborStates[neighborSide] = neighborState;
-					}
-					Block neighborBlock = neighborState.getBlock();
-					// only check orthagonal capabilities if the cable can connect to that block
-					WireConnector connector = connectors.getOrDefault(neighborBlock, defaultConnector);
-					if (connector.canConnectToAdjacentWire(world, mutaPos, neighborState, wirePos, wireState, attachmentDirection, directionToWire))
+					ChanneledPowerSupplier orthagonalPowerSupplier = neighborPowerSuppliers[neighborSide];
+					if (orthagonalPowerSupplier == null)
 					{
-						ChanneledPowerSupplier orthagonalPowerSupplier;
-						orthagonalPowerSupplier = neighborPowerSuppliers.get(directionToNeighbor);
-						if (orthagonalPowerSupplier == null)
-						{
-							orthagonalPowerSupplier = neighborPowerFinder.apply(mutaPos).apply(directionToNeighbor);
-							neighborPowerSuppliers.put(directionToNeighbor, orthagonalPowerSupplier);
-						}
-						// power will always be at least 0 because it started at 0 and we're maxing against that
-						power = Math.max(power, orthagonalPowerSupplier.getPowerOnChannel(world, wirePos, wireState, attachmentDirection, channel)-1);
+						orthagonalPowerSupplier = neighborPowerFinder.apply(mutaPos).apply(directionToNeighbor);
+						neighborPowerSuppliers[neighborSide] = orthagonalPowerSupplier;
 					}
-					if (directionToNeighbor != attachmentDirection)
-					{
-						power = Math.max(power, wire.getPower(neighborSide, channel) - 1);
-					}
-					// if we should check edge connections
-					if (!attachedFaceStates[neighborSide] && neighborBlock == this && !neighborState.getValue(INTERIOR_FACES[attachmentSide]))
+					lowChannels = ChannelLanes.max(lowChannels, getPowerLanes(orthagonalPowerSupplier, world, wirePos, wireState, attachmentDirection, 0));
+					highChannels = ChannelLanes.max(highChannels, getPowerLanes(orthagonalPowerSupplier, world, wirePos, wireState, attachmentDirection, 1));
+				}
+				// if we should check edge connections
+				if (!attachedFaceStates[neighborSide] && neighborBlock == this && !neighborState.getValue(INTERIOR_FACES[attachmentSide]))
+				{
+					BlockPos diagonalPos = mutaPos.move(attachmentDirection);
+					BlockState diagonalState = world.getBlockState(mutaPos);
+					int directionToWireSide = directionToWire.ordinal();
+					if (diagonalState.getBlock() == this && diagonalState.getValue(INTERIOR_FACES[directionToWireSide]))
 					{
-						BlockPos diagonalPos = mutaPos.move(attachmentDirection);
-						BlockState diagonalState = world.getBlockState(mutaPos);
-						int directionToWireSide = directionToWire.ordinal();
-						if (diagonalState.getBlock() == this && diagonalState.getValue(INTERIOR_FACES[directionToWireSide]))
+						TileEntity diagonalTe = world.getBlockEntity(diagonalPos);
+						if (diagonalTe instanceof BundledCableTileEntity)
 						{
-							TileEntity diagonalTe = world.getBlockEntity(diagonalPos);
-							if (diagonalTe instanceof BundledCableTileEntity)
-							{
-								power = Math.max(power, ((BundledCableTileEntity)diagonalTe).getPower(directionToWireSide, channel)-1);
-							}
+							BundledCableTileEntity diagonalCable = (BundledCableTileEntity)diagonalTe;
+							lowChannels = ChannelLanes.max(lowChannels, diagonalCable.getPowerLanes(directionToWireSide, 0));
+							highChannels = ChannelLanes.max(highChannels, diagonalCable.getPowerLanes(directionToWireSide, 1));
 						}
 					}
 				}
-				if (wire.setPower(attachmentSide, channel, power))
+			}
+			power[attachmentSide*2] = ChannelLanes.decrementSaturating(lowChannels);
+			power[attachmentSide*2 + 1] = ChannelLanes.decrementSaturating(highChannels);
+		}
+		
+		// spread power between the subwires of this block until it settles
+		// (subwires on orthagonal faces are connected, so this takes at most a few passes)
+		int faceIterations = 6;
+		boolean anyRaised = true;
+		while (anyRaised)
+		{
+			anyRaised = false;
+			faceIterations += 6;
+			for (int attachmentSide=0; attachmentSide<6; attachmentSide++)
+			{
+				if (!attachedFaceStates[attachmentSide])
+					continue;
+				long lowChannels = power[attachmentSide*2];
+				long highChannels = power[attachmentSide*2 + 1];
+				for (int orthagonal = 0; orthagonal < 4; orthagonal++)
 				{
-					// mark the face and the four orthagonal faces to it for updates
-					Direction[] nextUpdateDirs = BlockStateUtil.OUTPUT_TABLE[attachmentSide];
-					for (int i=0; i<4; i++)
+					int neighborSide = DirectionHelper.uncompressSecondSide(attachmentSide, orthagonal);
+					if (attachedFaceStates[neighborSide])
 					{
-						Direction nextUpdateDir = nextUpdateDirs[i];
-						if (attachedFaceStates[nextUpdateDir.ordinal()])
-						{
-							facesNeedingUpdates.add(nextUpdateDir);
-						}
+						lowChannels = ChannelLanes.max(lowChannels, ChannelLanes.decrementSaturating(power[neighborSide*2]));
+						highChannels = ChannelLanes.max(highChannels, ChannelLanes.decrementSaturating(power[neighborSide*2 + 1]));
 					}
 				}
-				
+				if (lowChannels != power[attachmentSide*2] || highChannels != power[attachmentSide*2 + 1])
+				{
+					power[attachmentSide*2] = lowChannels;
+					power[attachmentSide*2 + 1] = highChannels;
+					anyRaised = true;
+				}
 			}
 		}
+		MoreRedProfiler.recordFaceIterations(world, wirePos, faceIterations);
+		
+		for (int side=0; side<6; side++)
+		{
+			wire.setPowerLanes(side, power[side*2], power[side*2 + 1]);
+		}
+	}
+	
+	/**
+	 * Gets the power of eight channels from a power supplier
+	 * @param supplier The power supplier to query
+	 * @param world The world we're doing power queries in
+	 * @param wirePos The position of the cable querying power
+	 * @param wireState The blockstate of the cable querying power
+	 * @param wireFace The attachment face of the subwire querying power
+	 * @param word 0 for channels 0-7, 1 for channels 8-15
+	 * @return The packed power values, as defined in {@link ChannelLanes}
+	 */
+	protected static long getPowerLanes(ChanneledPowerSupplier supplier, World world, BlockPos wirePos, BlockState wireState, Direction wireFace, int word)
+	{
+		if (supplier == DefaultWireProperties.NO_POWER_SUPPLIER)
+			return 0L;
+		// other cables can give us all of their channels at once
+		if (supplier instanceof BundledCableTileEntity.SidedPowerSupplier)
+			return ((BundledCableTileEntity.SidedPowerSupplier)supplier).getPowerLanes(wireFace, word);
+		
+		long lanes = 0L;
+		int firstChannel = word * ChannelLanes.LANES_PER_WORD;
+		for (int lane=0; lane<ChannelLanes.LANES_PER_WORD; lane++)
+		{
+			// clamp to the supported range so a misbehaving supplier can't corrupt the other lanes
+			int channelPower = Math.max(0, Math.min(31, supplier.getPowerOnChannel(world, wirePos, wireState, wireFace, firstChannel + lane)));
+			lanes = ChannelLanes.setLane(lanes, lane, channelPower);
+		}
+		return lanes;
 	}
 	
 	@Override
@@ -8,31 +8,40 @@ import javax.annotation.Nullable;
 import commoble.morered.TileEntityRegistrar;
 import commoble.morered.api.ChanneledPowerSupplier;
 import commoble.morered.api.MoreRedAPI;
+import commoble.morered.util.ChannelLanes;
+import commoble.morered.util.ChannelPowerCodec;
 import commoble.morered.util.DirectionHelper;
-import it.unimi.dsi.fastutil.bytes.ByteArrayList;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.tileentity.TileEntityType;
 import net.minecraft.util.Direction;
 import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.common.util.LazyOptional;
 
 public class BundledCableTileEntity extends TileEntity
 {
+	public static final String POWER_DATA = "power_data";
+	// older versions wrote a compound per face with these keys, which we still read
 	public static final String POWER = "power";
 	public static final String CHANNEL_FLAGS = "channel_flags";
 	public static final String POWER_BYTES = "power_bytes";
 	
+	private static final long[] NO_POWER = new long[0];
+	
 	/**
-	 * Table of power values
-	 * The first index is the direction ordinal of the face of the wire where the power is stored (dunswe order)
-	 * The second index is the power channel ordinal (dye color order)
+	 * Packed power values (see {@link ChannelLanes}), two words per face (channels 0-7, then channels 8-15).
+	 * Most cables only ever carry power on one or two faces, so only faces that have had power get words;
+	 * the words for each such face are stored in dunswe order, and poweredFaces has the bit (1 << side) set for each of them.
+	 * Faces keep their words when their power drops back to zero so that toggling signals doesn't reallocate the array.
 	 */
-	protected byte[][] power = new byte[6][16];
+	protected long[] power = NO_POWER;
+	protected int poweredFaces = 0;
 	
 	protected Map<Direction, LazyOptional<ChanneledPowerSupplier>> sidedPowerSuppliers = Util.make(new EnumMap<>(Direction.class), map ->
 	{
@@ -45,7 +54,12 @@ public class BundledCableTileEntity extends TileEntity
 
 	public BundledCableTileEntity()
 	{
-		super(TileEntityRegistrar.BUNDLED_NETWORK_CABLE.get());
+		this(TileEntityRegistrar.BUNDLED_NETWORK_CABLE.get());
+	}
+	
+	public BundledCableTileEntity(TileEntityType<? extends BundledCableTileEntity> type)
+	{
+		super(type);
 	}
 	
 	@Override
@@ -57,17 +71,23 @@ public class BundledCableTileEntity extends TileEntity
 
 	public int getPower(int side, int channel)
 	{
-		return this.power[side][channel];
+		int index = this.getPowerIndex(side);
+		return index < 0
+			? 0
+			: ChannelLanes.getLane(this.power[index + channel/ChannelLanes.LANES_PER_WORD], channel % ChannelLanes.LANES_PER_WORD);
 	}
 	
 	/**
 	 * Returns the power for all channels on the given side
 	 * @param side Directional ordinal
-	 * @return The power array for all channels on the given side (be sure to clone before storing)
+	 * @return A new array containing the power of each channel on the given side
 	 */
 	public byte[] getPowerChannels(int side)
 	{
-		return this.power[side];
+		byte[] channels = new byte[16];
+		ChannelLanes.unpack(this.getPowerLanes(side, 0), channels, 0);
+		ChannelLanes.unpack(this.getPowerLanes(side, 1), channels, ChannelLanes.LANES_PER_WORD);
+		return channels;
 	}
 	
 	/**
@@ -79,10 +99,11 @@ public class BundledCableTileEntity extends TileEntity
 	 */
 	public boolean setPower(int side, int channel, int newPower)
 	{
-		int oldPower = this.power[side][channel];
-		this.power[side][channel] = (byte)newPower;
+		int oldPower = this.getPower(side, channel);
 		if (oldPower != newPower)
 		{
+			int wordIndex = this.getOrAddPowerIndex(side) + channel/ChannelLanes.LANES_PER_WORD;
+			this.power[wordIndex] = ChannelLanes.setLane(this.power[wordIndex], channel % ChannelLanes.LANES_PER_WORD, newPower);
 			if (!this.level.isClientSide)
 			{
 				this.setChanged();
@@ -92,9 +113,89 @@ public class BundledCableTileEntity extends TileEntity
 		return false;
 	}
 	
+	/**
+	 * Returns the power of eight channels on the given side, packed into a word as defined in {@link ChannelLanes}
+	 * @param side Directional ordinal
+	 * @param word 0 for channels 0-7, 1 for channels 8-15
+	 * @return The packed power values
+	 */
+	public long getPowerLanes(int side, int word)
+	{
+		int index = this.getPowerIndex(side);
+		return index < 0 ? 0L : this.power[index + word];
+	}
+	
+	/**
+	 * Sets the power of all sixteen channels on the given side and marks the TE updated if the power changed on the server
+	 * @param side The attachment side to set the power of, in the range [0,5]
+	 * @param lowChannels Packed power values of channels 0-7, each in the range [0,31]
+	 * @param highChannels Packed power values of channels 8-15, each in the range [0,31]
+	 * @return True if any channel's power changed, false otherwise
+	 */
+	public boolean setPowerLanes(int side, long lowChannels, long highChannels)
+	{
+		if (this.getPowerLanes(side, 0) == lowChannels && this.getPowerLanes(side, 1) == highChannels)
+			return false;
+		
+		this.setPowerLanesRaw(side, lowChannels, highChannels);
+		if (!this.level.isClientSide)
+		{
+			this.setChanged();
+		}
+		return true;
+	}
+	
+	/**
+	 * Sets the power of all sixteen channels on the given side without marking anything as changed
+	 */
+	protected void setPowerLanesRaw(int side, long lowChannels, long highChannels)
+	{
+		int index = this.getPowerIndex(side);
+		if (index < 0)
+		{
+			// don't allocate anything for faces that don't have power
+			if (lowChannels == 0L && highChannels == 0L)
+				return;
+			index = this.getOrAddPowerIndex(side);
+		}
+		this.power[index] = lowChannels;
+		this.power[index+1] = highChannels;
+	}
+	
 	public void setPowerRaw(byte[][] newPower)
 	{
-		this.power= newPower;
+		this.power = NO_POWER;
+		this.poweredFaces = 0;
+		for (int side=0; side<6; side++)
+		{
+			this.setPowerLanesRaw(side, ChannelLanes.pack(newPower[side], 0), ChannelLanes.pack(newPower[side], ChannelLanes.LANES_PER_WORD));
+		}
+	}
+	
+	// returns the index of the first word of the given face's power, or -1 if the face has no words
+	protected int getPowerIndex(int side)
+	{
+		int faceBit = 1 << side;
+		return (this.poweredFaces & faceBit) == 0
+			? -1
+			: Integer.bitCount(this.poweredFaces & (faceBit-1)) * 2;
+	}
+	
+	protected int getOrAddPowerIndex(int side)
+	{
+		int index = this.getPowerIndex(side);
+		if (index >= 0)
+			return index;
+		
+		int faceBit = 1 << side;
+		index = Integer.bitCount(this.poweredFaces & (faceBit-1)) * 2;
+		long[] oldPower = this.power;
+		long[] newPower = new long[oldPower.length + 2];
+		System.arraycopy(oldPower, 0, newPower, 0, index);
+		System.arraycopy(oldPower, index, newPower, index+2, oldPower.length - index);
+		this.power = newPower;
+		this.poweredFaces |= faceBit;
+		return index;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -137,40 +238,40 @@ public class BundledCableTileEntity extends TileEntity
 	
 	public CompoundNBT writeAllPowerData(CompoundNBT compound)
 	{
-		CompoundNBT powerData = new CompoundNBT();
-		boolean wrotePower = false;
-		// writes all positive power values
-		for (byte side=0; side<6; side++)
+		// writes all positive power values, see ChannelPowerCodec for the format
+		long[] lanes = new long[12];
+		for (int side=0; side<6; side++)
 		{
-			ByteArrayList bytes = new ByteArrayList();
-			short channelFlags = 0;
-			for (byte channel = 0; channel < 16; channel++)
-			{
-				int powerValue = this.getPower(side, channel);
-				if (powerValue > 0)
-				{
-					bytes.add((byte)powerValue);
-					channelFlags += (1 << channel);
-				}
-			}
-			if (bytes.size() > 0)
-			{
-				CompoundNBT sidedPower = new CompoundNBT();
-				sidedPower.putShort(CHANNEL_FLAGS, channelFlags);
-				sidedPower.putByteArray(POWER_BYTES, bytes.toByteArray());
-				powerData.put(Direction.from3DDataValue(side).getName(), sidedPower);
-				wrotePower = true;
-			}
+			lanes[side*2] = this.getPowerLanes(side, 0);
+			lanes[side*2+1] = this.getPowerLanes(side, 1);
 		}
-		
-		if (wrotePower)
-			compound.put(POWER, powerData);
+		byte[] powerData = ChannelPowerCodec.encode(lanes);
+		if (powerData.length > 0)
+			compound.putByteArray(POWER_DATA, powerData);
 
 		return compound;
 		
 	}
 	
 	public void readUpdatedPowerData(CompoundNBT compound)
+	{
+		if (compound.contains(POWER_DATA, Constants.NBT.TAG_BYTE_ARRAY))
+		{
+			long[] lanes = new long[12];
+			// data from an unknown future version decodes as no power
+			ChannelPowerCodec.decode(compound.getByteArray(POWER_DATA), lanes);
+			for (int side=0; side<6; side++)
+			{
+				this.setPowerLanesRaw(side, lanes[side*2], lanes[side*2+1]);
+			}
+		}
+		else
+		{
+			this.readLegacyPowerData(compound);
+		}
+	}
+	
+	protected void readLegacyPowerData(CompoundNBT compound)
 	{
 		CompoundNBT powerData = compound.getCompound(POWER);
 		if (powerData == null)
@@ -188,6 +289,8 @@ public class BundledCableTileEntity extends TileEntity
 			int powerByteCount = powerValues.length;
 			int powerByteIndex = 0;
 			
+			long[] lanes = new long[2];
+			
 			channelLoop:
 			for (int channel = 0; channel < 16; channel++)
 			{
@@ -198,9 +301,11 @@ public class BundledCableTileEntity extends TileEntity
 				int channelFlag = (1 << channel);
 				if ((channels & channelFlag) != 0)
 				{
-					this.power[side][channel] = powerValues[powerByteIndex++];
+					int word = channel / ChannelLanes.LANES_PER_WORD;
+					lanes[word] = ChannelLanes.setLane(lanes[word], channel % ChannelLanes.LANES_PER_WORD, powerValues[powerByteIndex++]);
 				}
 			}
+			this.setPowerLanesRaw(side, lanes[0], lanes[1]);
 		}
 	}
 	
@@ -237,12 +342,43 @@ public class BundledCableTileEntity extends TileEntity
 			{
 				int actualSubSide = DirectionHelper.uncompressSecondSide(sideIndex, subSide);
 				if (state.getValue(AbstractWireBlock.INTERIOR_FACES[actualSubSide]))
-					output = Math.max(output, cable.power[actualSubSide][channel]);
+					output = Math.max(output, cable.getPower(actualSubSide, channel));
 			}
 			
 			return output;
 		}
 		
+		/**
+		 * Equivalent to getPowerOnChannel for eight channels at once
+		 * @param wireFace The attachment face of the subwire we're supplying power to, or null
+		 * @param word 0 for channels 0-7, 1 for channels 8-15
+		 * @return The packed power values, as defined in {@link ChannelLanes}
+		 */
+		public long getPowerLanes(@Nullable Direction wireFace, int word)
+		{
+			BundledCableTileEntity cable = BundledCableTileEntity.this;
+			BlockState state = cable.getBlockState();
+			Block block = state.getBlock();
+			if (!(block instanceof BundledCableBlock))
+				return 0L;
+
+			int sideIndex = this.side.ordinal();
+			if (state.getValue(AbstractWireBlock.INTERIOR_FACES[sideIndex]))
+				return cable.getPowerLanes(sideIndex, word);
+			
+			if (wireFace != null)
+				return cable.getPowerLanes(wireFace.ordinal(), word);
+			
+			long output = 0L;
+			for (int subSide = 0; subSide < 4; subSide++)
+			{
+				int actualSubSide = DirectionHelper.uncompressSecondSide(sideIndex, subSide);
+				if (state.getValue(AbstractWireBlock.INTERIOR_FACES[actualSubSide]))
+					output = ChannelLanes.max(output, cable.getPowerLanes(actualSubSide, word));
+			}
+			
+			return output;
+		}
 	}
 
 }
@@ -5,8 +5,7 @@ import java.util.EnumSet;
 import java.util.Map;
 import java.util.function.Function;
 
-import com.google.common.cache.LoadingCache;
-
+import commoble.morered.MoreRedProfiler;
 import commoble.morered.TileEntityRegistrar;
 import commoble.morered.api.ChanneledPowerSupplier;
 import commoble.morered.api.ExpandedPowerSupplier;
@@ -16,6 +15,7 @@ import commoble.morered.api.internal.DefaultWireProperties;
 import commoble.morered.api.internal.WireVoxelHelpers;
 import commoble.morered.util.BlockStateUtil;
 import commoble.morered.util.DirectionHelper;
+import commoble.morered.util.LongKeyedClockCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.item.DyeColor;
@@ -35,16 +35,23 @@ public class ColoredCableBlock extends PoweredWireBlock
 	public static final VoxelShape[] RAYTRACE_BACKBOARDS = WireVoxelHelpers.makeRaytraceBackboards(3);
 	public static final VoxelShape[] LINE_SHAPES = WireVoxelHelpers.makeLineShapes(2, 3);
 	public static final VoxelShape[] SHAPES_BY_STATE_INDEX = AbstractWireBlock.makeVoxelShapes(NODE_SHAPES_DUNSWE, LINE_SHAPES);
-	public static final LoadingCache<Long, VoxelShape> VOXEL_CACHE = AbstractWireBlock.makeVoxelCache(SHAPES_BY_STATE_INDEX, LINE_SHAPES);
+	public static final LongKeyedClockCache<VoxelShape> VOXEL_CACHE = AbstractWireBlock.makeVoxelCache(SHAPES_BY_STATE_INDEX, LINE_SHAPES);
 	
 	private final DyeColor color; public DyeColor getDyeColor() { return this.color; }
 
 	public ColoredCableBlock(Properties properties, DyeColor color)
 	{
-		super(properties, SHAPES_BY_STATE_INDEX, RAYTRACE_BACKBOARDS, VOXEL_CACHE, false);
+		super(properties, SHAPES_BY_STATE_INDEX, RAYTRACE_BACKBOARDS, VOXEL_CACHE, false, true);
 		this.color = color;
 	}
 
+	// the TE provides the cable's capability; empty wire blocks only render edges and never hold power, so they don't need one
+	@Override
+	public boolean hasTileEntity(BlockState state)
+	{
+		return !this.isEmptyWireBlock(state);
+	}
+	
 	@Override
 	public TileEntity createTileEntity(BlockState state, IBlockReader world)
 	{
@@ -97,7 +104,7 @@ public class ColoredCableBlock extends PoweredWireBlock
 		if (directionFromNeighbor == null)
 			return;
 		
-		neighborTE.getCapability(MoreRedAPI.CHANNELED_POWER_CAPABILITY, directionFromNeighbor).ifPresent($ -> this.updatePowerAfterBlockUpdate((World)world, pos, state));
+		neighborTE.getCapability(MoreRedAPI.CHANNELED_POWER_CAPABILITY, directionFromNeighbor).ifPresent($ -> WirePropagationScheduler.updatePower((World)world, this, pos, state));
 	}
 	
 	@Override
@@ -263,6 +270,7 @@ public class ColoredCableBlock extends PoweredWireBlock
 			}
 			
 		}
+		MoreRedProfiler.recordFaceIterations(world, wirePos, iteration);
 		if (anyPowerUpdated && !world.isClientSide)
 		{
 			// we need to notify neighbors because changes to redstone output should count as block updates
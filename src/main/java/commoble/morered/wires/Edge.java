@@ -31,6 +31,9 @@ public enum Edge
 	SOUTH_WEST(Direction.SOUTH, Direction.WEST),
 	SOUTH_EAST(Direction.SOUTH, Direction.EAST);
 	
+	/** Shared copy of values(), don't modify **/
+	public static final Edge[] VALUES = values();
+	
 	public static final Edge[][] EDGES_BY_RELEVANT_DIRECTION =
 	{
 		{DOWN_NORTH,DOWN_SOUTH,DOWN_WEST,DOWN_EAST}, // edges with down
@@ -0,0 +1,183 @@
+package commoble.morered.wires;
+
+import java.util.EnumSet;
+
+import javax.annotation.Nonnull;
+
+import commoble.morered.MoreRedProfiler;
+import commoble.morered.util.DirectionHelper;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+
+/**
+ * Collects the neighbor updates that wires and cables want to send while a power change is propagating,
+ * and sends them once the outermost propagation finishes.
+ * If the same block would be notified from the same neighbor more than once during a propagation,
+ * it only gets notified once.
+ *
+ * Updates to different blocks are sent in the order they were first enqueued;
+ * updates to the same block are sent in the order vanilla's updateNeighborsAt would send them.
+ * Neighbor updates enqueued while the queue is being flushed (by blocks reacting to their neighbor updates)
+ * are added to the end of the queue and sent in the same flush.
+ */
+public class NeighborUpdateQueue extends WorldSavedData
+{
+	public static final String ID = "morered:neighborupdatequeue";
+
+	/** The order vanilla's updateNeighborsAt notifies neighbors in **/
+	public static final Direction[] NEIGHBOR_UPDATE_ORDER = {Direction.WEST, Direction.EAST, Direction.DOWN, Direction.UP, Direction.NORTH, Direction.SOUTH};
+
+	// map of target positions to the blocks notifying them, indexed by the direction from the target to the notifying neighbor
+	private final Long2ObjectLinkedOpenHashMap<Block[]> pendingUpdates = new Long2ObjectLinkedOpenHashMap<>();
+	private int propagationDepth = 0;
+	private boolean flushing = false;
+
+	private long enqueuedUpdates = 0;
+	public long getEnqueuedUpdates() { return this.enqueuedUpdates; }
+
+	private long collapsedUpdates = 0;
+	public long getCollapsedUpdates() { return this.collapsedUpdates; }
+
+	private long sentUpdates = 0;
+	public long getSentUpdates() { return this.sentUpdates; }
+
+	public NeighborUpdateQueue()
+	{
+		super(ID);
+	}
+
+	/**
+	 * Gets the neighbor update queue for a world.
+	 * Client worlds don't share a queue, each caller gets a new queue.
+	 * @param world The world to get the queue for
+	 * @return The world's queue
+	 */
+	public static NeighborUpdateQueue get(@Nonnull World world)
+	{
+		return world instanceof ServerWorld
+			? ((ServerWorld)world).getDataStorage().computeIfAbsent(NeighborUpdateQueue::new, ID)
+			: new NeighborUpdateQueue();
+	}
+
+	/**
+	 * Starts holding neighbor updates. Every call to this should be followed by a call to endPropagation,
+	 * the held updates are sent once every propagation has ended.
+	 */
+	public void beginPropagation()
+	{
+		this.propagationDepth++;
+	}
+
+	/**
+	 * Ends a propagation started by beginPropagation, sending all held neighbor updates if this was the outermost propagation
+	 * @param world The world to send neighbor updates in
+	 */
+	public void endPropagation(World world)
+	{
+		this.propagationDepth--;
+		if (this.propagationDepth <= 0)
+		{
+			this.propagationDepth = 0;
+			if (!this.flushing)
+			{
+				this.flush(world);
+			}
+		}
+	}
+
+	/**
+	 * Notifies a block that one of its neighbors changed, or holds the update until the current propagation ends
+	 * @param world The world the blocks are in
+	 * @param targetPos The position of the block to notify
+	 * @param sourceBlock The block that changed
+	 * @param sourcePos The position of the block that changed
+	 */
+	public void enqueue(World world, BlockPos targetPos, Block sourceBlock, BlockPos sourcePos)
+	{
+		this.enqueuedUpdates++;
+		MoreRedProfiler.recordNeighborNotification(world, targetPos);
+		Direction directionToSource = DirectionHelper.getDirectionToNeighborPos(targetPos, sourcePos);
+		if (this.propagationDepth <= 0 || directionToSource == null)
+		{
+			// we're not holding updates, or the source isn't adjacent to the target
+			this.sentUpdates++;
+			world.neighborChanged(targetPos, sourceBlock, sourcePos);
+			return;
+		}
+		long targetKey = targetPos.asLong();
+		Block[] sources = this.pendingUpdates.get(targetKey);
+		if (sources == null)
+		{
+			sources = new Block[6];
+			this.pendingUpdates.put(targetKey, sources);
+		}
+		int side = directionToSource.ordinal();
+		if (sources[side] != null)
+		{
+			this.collapsedUpdates++;
+		}
+		sources[side] = sourceBlock;
+	}
+
+	/**
+	 * Equivalent to world.updateNeighborsAt, but using this queue
+	 * @param world The world the blocks are in
+	 * @param sourcePos The position of the block that changed
+	 * @param sourceBlock The block that changed
+	 */
+	public void enqueueNeighbors(World world, BlockPos sourcePos, Block sourceBlock)
+	{
+		if (net.minecraftforge.event.ForgeEventFactory.onNeighborNotify(world, sourcePos, world.getBlockState(sourcePos), EnumSet.allOf(Direction.class), false).isCanceled())
+			return;
+		for (Direction dir : NEIGHBOR_UPDATE_ORDER)
+		{
+			this.enqueue(world, sourcePos.relative(dir), sourceBlock, sourcePos);
+		}
+	}
+
+	protected void flush(World world)
+	{
+		this.flushing = true;
+		try
+		{
+			while (!this.pendingUpdates.isEmpty())
+			{
+				BlockPos targetPos = BlockPos.of(this.pendingUpdates.firstLongKey());
+				Block[] sources = this.pendingUpdates.removeFirst();
+				for (Direction dir : NEIGHBOR_UPDATE_ORDER)
+				{
+					Block sourceBlock = sources[dir.ordinal()];
+					if (sourceBlock != null)
+					{
+						this.sentUpdates++;
+						world.neighborChanged(targetPos, sourceBlock, targetPos.relative(dir));
+					}
+				}
+			}
+		}
+		finally
+		{
+			this.flushing = false;
+			// don't hold onto anything if a neighbor update threw
+			this.pendingUpdates.clear();
+		}
+	}
+
+	@Override
+	public void load(CompoundNBT nbt)
+	{
+		//noop
+	}
+
+	@Override
+	public CompoundNBT save(CompoundNBT compound)
+	{
+		return compound; //noop
+	}
+}
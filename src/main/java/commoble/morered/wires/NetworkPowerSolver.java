@@ -0,0 +1,366 @@
+package commoble.morered.wires;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Solves the power of every node in a network of connected subwires at once.
+ * A node's power is the highest of its source power (the power it receives from outside the network)
+ * and the power of each node it's linked to, minus one.
+ *
+ * Because power only ever decreases by one per link, we can use a bucket queue over the [0,31] power range
+ * instead of a priority queue, visiting each node once per power level it's raised to.
+ */
+public class NetworkPowerSolver
+{
+	public static final int MAX_POWER = 31;
+
+	/**
+	 * @param sourcePower Array of the power each node receives from outside the network.
+	 * Values outside the range [0,31] are clamped to it.
+	 * @param linkStarts Array of nodeCount+1 indices into links; the nodes linked to node i are stored in
+	 * links[linkStarts[i]] (inclusive) through links[linkStarts[i+1]] (exclusive).
+	 * Links are assumed to be symmetric.
+	 * @param links Array of node indices
+	 * @return A new array containing the settled power value of each node, in the range [0,31]
+	 */
+	public static int[] solve(int[] sourcePower, int[] linkStarts, int[] links)
+	{
+		int nodeCount = sourcePower.length;
+		int[] power = new int[nodeCount];
+		int[][] buckets = new int[MAX_POWER+1][];
+		int[] bucketSizes = new int[MAX_POWER+1];
+
+		for (int node=0; node<nodeCount; node++)
+		{
+			int nodePower = Math.max(0, Math.min(MAX_POWER, sourcePower[node]));
+			power[node] = nodePower;
+			// nodes with a power of 1 or less can't raise the power of anything they're linked to
+			if (nodePower > 1)
+			{
+				push(buckets, bucketSizes, nodePower, node);
+			}
+		}
+
+		for (int level = MAX_POWER; level > 1; level--)
+		{
+			int nextLevel = level - 1;
+			// nodes can be added to the next bucket while we're processing this one, but never to this one
+			int[] bucket = buckets[level];
+			int bucketSize = bucketSizes[level];
+			for (int i=0; i<bucketSize; i++)
+			{
+				int node = bucket[i];
+				// if the node was raised to a higher level after being added to this bucket, we've already processed it
+				if (power[node] != level)
+					continue;
+
+				int end = linkStarts[node+1];
+				for (int link = linkStarts[node]; link < end; link++)
+				{
+					int neighbor = links[link];
+					if (power[neighbor] < nextLevel)
+					{
+						power[neighbor] = nextLevel;
+						if (nextLevel > 1)
+						{
+							push(buckets, bucketSizes, nextLevel, neighbor);
+						}
+					}
+				}
+			}
+			buckets[level] = null;
+		}
+
+		return power;
+	}
+
+	/**
+	 * Solves the same network as {@link #solve}, with the same results, treating each run of nodes
+	 * that have exactly two links and no source power as a single link.
+	 *
+	 * Most of a typical network is long runs of wire whose nodes can only pass power along, so their power is
+	 * (power at one end of the run - distance from that end), or the same from the other end if that's higher.
+	 * Nodes with any other number of links (ends of wires, taps, junctions) or with source power are anchors;
+	 * the solve only visits anchors, and each run's nodes are filled in from its two anchors afterward.
+	 * Nodes without links don't take part at all and keep their source power.
+	 * @param sourcePower Array of the power each node receives from outside the network (see {@link #solve})
+	 * @param linkStarts Array of nodeCount+1 indices into links (see {@link #solve})
+	 * @param links Array of node indices
+	 * @return A new array containing the settled power value of each node, in the range [0,31]
+	 */
+	public static int[] solveRuns(int[] sourcePower, int[] linkStarts, int[] links)
+	{
+		int nodeCount = sourcePower.length;
+		int[] power = new int[nodeCount];
+		// index of each anchor in the anchor arrays, or -1 for nodes that aren't anchors
+		int[] anchorIndex = new int[nodeCount];
+		int anchorCount = 0;
+		for (int node=0; node<nodeCount; node++)
+		{
+			int nodePower = Math.max(0, Math.min(MAX_POWER, sourcePower[node]));
+			power[node] = nodePower;
+			int linkCount = linkStarts[node+1] - linkStarts[node];
+			anchorIndex[node] = linkCount == 0 || (linkCount == 2 && nodePower == 0)
+				? -1
+				: anchorCount++;
+		}
+		if (anchorCount == 0)
+			return power;
+
+		// links between anchors, with the number of links each one stands for
+		int[] anchorNodes = new int[anchorCount];
+		int[] anchorLinkStarts = new int[anchorCount+1];
+		int[] anchorLinks = new int[links.length];
+		int[] anchorLinkLengths = new int[links.length];
+		int anchorLinkCount = 0;
+		// runs are stored as (first anchor, second anchor, start in runNodes, end in runNodes), nodes ordered from the first anchor
+		int[] runs = new int[16];
+		int runCount = 0;
+		int[] runNodes = new int[16];
+		int runNodeCount = 0;
+		boolean[] visited = new boolean[nodeCount];
+		for (int node=0; node<nodeCount; node++)
+		{
+			int anchor = anchorIndex[node];
+			if (anchor < 0)
+				continue;
+			anchorNodes[anchor] = node;
+			anchorLinkStarts[anchor] = anchorLinkCount;
+			int end = linkStarts[node+1];
+			for (int link = linkStarts[node]; link < end; link++)
+			{
+				int previous = node;
+				int current = links[link];
+				int length = 1;
+				// only record a run's nodes the first time we walk it
+				boolean recordRun = anchorIndex[current] < 0 && !visited[current];
+				int runStart = runNodeCount;
+				while (anchorIndex[current] < 0)
+				{
+					if (recordRun)
+					{
+						visited[current] = true;
+						if (runNodeCount == runNodes.length)
+							runNodes = Arrays.copyOf(runNodes, runNodeCount*2);
+						runNodes[runNodeCount++] = current;
+					}
+					int currentLinks = linkStarts[current];
+					int next = links[currentLinks] == previous ? links[currentLinks+1] : links[currentLinks];
+					previous = current;
+					current = next;
+					length++;
+				}
+				anchorLinks[anchorLinkCount] = current;
+				anchorLinkLengths[anchorLinkCount] = length;
+				anchorLinkCount++;
+				if (recordRun)
+				{
+					if (runCount*4 == runs.length)
+						runs = Arrays.copyOf(runs, runs.length*2);
+					runs[runCount*4] = node;
+					runs[runCount*4+1] = current;
+					runs[runCount*4+2] = runStart;
+					runs[runCount*4+3] = runNodeCount;
+					runCount++;
+				}
+			}
+		}
+		anchorLinkStarts[anchorCount] = anchorLinkCount;
+
+		// same as solve, but a link can lower power by more than one
+		int[][] buckets = new int[MAX_POWER+1][];
+		int[] bucketSizes = new int[MAX_POWER+1];
+		for (int anchor=0; anchor<anchorCount; anchor++)
+		{
+			int nodePower = power[anchorNodes[anchor]];
+			if (nodePower > 1)
+			{
+				push(buckets, bucketSizes, nodePower, anchor);
+			}
+		}
+		for (int level = MAX_POWER; level > 1; level--)
+		{
+			int[] bucket = buckets[level];
+			int bucketSize = bucketSizes[level];
+			for (int i=0; i<bucketSize; i++)
+			{
+				int anchor = bucket[i];
+				if (power[anchorNodes[anchor]] != level)
+					continue;
+
+				int end = anchorLinkStarts[anchor+1];
+				for (int link = anchorLinkStarts[anchor]; link < end; link++)
+				{
+					int neighbor = anchorLinks[link];
+					int nextLevel = level - anchorLinkLengths[link];
+					if (power[neighbor] < nextLevel)
+					{
+						power[neighbor] = nextLevel;
+						if (nextLevel > 1)
+						{
+							push(buckets, bucketSizes, nextLevel, anchorIndex[neighbor]);
+						}
+					}
+				}
+			}
+			buckets[level] = null;
+		}
+
+		// fill in each run from both of its ends
+		for (int run=0; run<runCount; run++)
+		{
+			int firstPower = power[runs[run*4]];
+			int secondPower = power[runs[run*4+1]];
+			int start = runs[run*4+2];
+			int end = runs[run*4+3];
+			int length = end - start + 1;
+			for (int i=start; i<end; i++)
+			{
+				int distance = i - start + 1;
+				power[runNodes[i]] = Math.max(0, Math.max(firstPower - distance, secondPower - (length - distance)));
+			}
+		}
+
+		return power;
+	}
+
+	/**
+	 * Solves the same network as {@link #solve}, with the same results, by splitting the nodes into contiguous ranges
+	 * and solving each range on the given pool.
+	 *
+	 * Each round, every range raises its nodes to the power their links from other ranges give them
+	 * and spreads that power within the range; rounds repeat until a round raises nothing.
+	 * Power only ever rises toward the settled value, and only spreads 31 links from its source,
+	 * so this takes at most a few more rounds than the number of range boundaries power can cross.
+	 * Ranges read each other's power while it's being written, which can only delay a raise to the next round.
+	 * @param sourcePower Array of the power each node receives from outside the network (see {@link #solve})
+	 * @param linkStarts Array of nodeCount+1 indices into links (see {@link #solve})
+	 * @param links Array of node indices
+	 * @param pool The pool to solve ranges on
+	 * @param partitionCount How many ranges to split the nodes into
+	 * @return A new array containing the settled power value of each node, in the range [0,31]
+	 */
+	public static int[] solveParallel(int[] sourcePower, int[] linkStarts, int[] links, ForkJoinPool pool, int partitionCount)
+	{
+		int nodeCount = sourcePower.length;
+		int[] power = new int[nodeCount];
+		for (int node=0; node<nodeCount; node++)
+		{
+			power[node] = Math.max(0, Math.min(MAX_POWER, sourcePower[node]));
+		}
+		int partitionSize = Math.max(1, (nodeCount + partitionCount - 1) / Math.max(1, partitionCount));
+
+		boolean firstRound = true;
+		boolean anyRaised = true;
+		List<ForkJoinTask<Boolean>> tasks = new ArrayList<>();
+		while (anyRaised)
+		{
+			for (int start=0; start<nodeCount; start += partitionSize)
+			{
+				int rangeStart = start;
+				int rangeEnd = Math.min(nodeCount, start + partitionSize);
+				boolean seedAll = firstRound;
+				tasks.add(pool.submit(() -> solveRange(power, linkStarts, links, rangeStart, rangeEnd, seedAll)));
+			}
+			anyRaised = false;
+			for (ForkJoinTask<Boolean> task : tasks)
+			{
+				// join every task before the next round, so each round sees everything the previous round wrote
+				anyRaised = task.join() || anyRaised;
+			}
+			tasks.clear();
+			firstRound = false;
+		}
+
+		return power;
+	}
+
+	/**
+	 * Raises the nodes in [rangeStart, rangeEnd) to the power their links from outside the range give them, then spreads power within the range
+	 * @param seedAll Whether to spread the power every node already has (for the first round), rather than only the power of raised nodes
+	 * @return True if any node was raised
+	 */
+	private static boolean solveRange(int[] power, int[] linkStarts, int[] links, int rangeStart, int rangeEnd, boolean seedAll)
+	{
+		int[][] buckets = new int[MAX_POWER+1][];
+		int[] bucketSizes = new int[MAX_POWER+1];
+		boolean anyRaised = false;
+
+		for (int node=rangeStart; node<rangeEnd; node++)
+		{
+			int nodePower = power[node];
+			int end = linkStarts[node+1];
+			for (int link = linkStarts[node]; link < end; link++)
+			{
+				int neighbor = links[link];
+				if (neighbor < rangeStart || neighbor >= rangeEnd)
+				{
+					nodePower = Math.max(nodePower, power[neighbor] - 1);
+				}
+			}
+			boolean raised = nodePower > power[node];
+			if (raised)
+			{
+				power[node] = nodePower;
+				anyRaised = true;
+			}
+			if ((raised || seedAll) && nodePower > 1)
+			{
+				push(buckets, bucketSizes, nodePower, node);
+			}
+		}
+
+		for (int level = MAX_POWER; level > 1; level--)
+		{
+			int nextLevel = level - 1;
+			int[] bucket = buckets[level];
+			int bucketSize = bucketSizes[level];
+			for (int i=0; i<bucketSize; i++)
+			{
+				int node = bucket[i];
+				if (power[node] != level)
+					continue;
+
+				int end = linkStarts[node+1];
+				for (int link = linkStarts[node]; link < end; link++)
+				{
+					int neighbor = links[link];
+					if (neighbor >= rangeStart && neighbor < rangeEnd && power[neighbor] < nextLevel)
+					{
+						power[neighbor] = nextLevel;
+						anyRaised = true;
+						if (nextLevel > 1)
+						{
+							push(buckets, bucketSizes, nextLevel, neighbor);
+						}
+					}
+				}
+			}
+			buckets[level] = null;
+		}
+
+		return anyRaised;
+	}
+
+	private static void push(int[][] buckets, int[] bucketSizes, int level, int node)
+	{
+		int[] bucket = buckets[level];
+		int size = bucketSizes[level];
+		if (bucket == null)
+		{
+			bucket = new int[16];
+			buckets[level] = bucket;
+		}
+		else if (size == bucket.length)
+		{
+			bucket = Arrays.copyOf(bucket, size*2);
+			buckets[level] = bucket;
+		}
+		bucket[size] = node;
+		bucketSizes[level] = size+1;
+	}
+}
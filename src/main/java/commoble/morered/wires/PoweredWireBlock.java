@@ -1,46 +1,49 @@
 package commoble.morered.wires;
 
 import java.util.EnumSet;
-import java.util.Map;
 
 import javax.annotation.Nullable;
 
-import com.google.common.cache.LoadingCache;
-
-import commoble.morered.TileEntityRegistrar;
-import commoble.morered.api.ExpandedPowerSupplier;
 import commoble.morered.api.MoreRedAPI;
 import commoble.morered.api.WireConnector;
-import commoble.morered.util.BlockStateUtil;
 import commoble.morered.util.DirectionHelper;
+import commoble.morered.util.LongKeyedClockCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.shapes.VoxelShape;
 import net.minecraft.world.IBlockReader;
 import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
 
 public abstract class PoweredWireBlock extends AbstractWireBlock
 {
 	
-	public PoweredWireBlock(Properties properties, VoxelShape[] shapesByStateIndex, VoxelShape[] raytraceBackboards, LoadingCache<Long, VoxelShape> voxelCache, boolean useIndirectPower)
+	public PoweredWireBlock(Properties properties, VoxelShape[] shapesByStateIndex, VoxelShape[] raytraceBackboards, LongKeyedClockCache<VoxelShape> voxelCache, boolean useIndirectPower, boolean readsChanneledPower)
 	{
-		super(properties, shapesByStateIndex, raytraceBackboards, voxelCache, useIndirectPower);
+		super(properties, shapesByStateIndex, raytraceBackboards, voxelCache, useIndirectPower, readsChanneledPower);
 	}
 
 
+	// power is stored in the chunk's WirePowerInChunk, so wires don't need tile entities (colored cables have one for their capability)
 	@Override
 	public boolean hasTileEntity(BlockState state)
 	{
-		return true;
+		return false;
 	}
-
+	
 	@Override
-	public TileEntity createTileEntity(BlockState state, IBlockReader world)
+	public void onRemove(BlockState oldState, World worldIn, BlockPos pos, BlockState newState, boolean isMoving)
 	{
-		return TileEntityRegistrar.WIRE.get().create();
+		// the chunk's power storage outlives the block, so clear it when the wire is destroyed
+		// or reduced to an empty wire block (empty wire blocks read their edges' power from the neighboring wires)
+		if (newState.getBlock() != this || this.isEmptyWireBlock(newState))
+		{
+			WirePowerInChunk.clearPower(worldIn, pos);
+			WireBoundaryCache.forget(worldIn, pos);
+		}
+		super.onRemove(oldState, worldIn, pos, newState, isMoving);
 	}
 	
 	@Override
@@ -108,12 +111,32 @@ public abstract class PoweredWireBlock extends AbstractWireBlock
 	protected int getPower(BlockState state, IBlockReader world, BlockPos pos, Direction directionFromNeighbor, boolean expand)
 	{
 //		return 0;
-		// power is stored in the TE (because storing it in 16 states per side is too many state combinations)
-		// if we don't have a TE, we have no power
-		TileEntity te = world.getBlockEntity(pos);
-		if (!(te instanceof WireTileEntity))
+		// if our network is asking its neighbors for power, don't give it back its own stale power
+		if (WireNetwork.isGatheringPowerAt(world, pos))
+			return 0;
+		// neighbors tend to ask for the same signal many times in one wave of updates, remember it for the rest of the tick
+		if (!expand && world instanceof ServerWorld)
+		{
+			WireSignalCache cache = WireSignalCache.get((ServerWorld)world);
+			int side = directionFromNeighbor.getOpposite().ordinal();
+			int signal = cache.getSignal(pos, side);
+			if (signal == WireSignalCache.UNKNOWN)
+			{
+				signal = this.getUncachedPower(state, world, pos, directionFromNeighbor, false);
+				cache.putSignal(pos, side, signal);
+			}
+			return signal;
+		}
+		return this.getUncachedPower(state, world, pos, directionFromNeighbor, expand);
+	}
+	
+	protected int getUncachedPower(BlockState state, IBlockReader world, BlockPos pos, Direction directionFromNeighbor, boolean expand)
+	{
+		// power is stored per chunk (because storing it in 16 states per side is too many state combinations)
+		// if the chunk isn't loaded, we have no power
+		@Nullable WirePowerInChunk storage = WirePowerInChunk.get(world, pos);
+		if (storage == null)
 			return 0;
-		WireTileEntity wire = (WireTileEntity)te;
 		
 		Direction directionToNeighbor = directionFromNeighbor.getOpposite();
 		int side = directionToNeighbor.ordinal();
@@ -121,7 +144,7 @@ public abstract class PoweredWireBlock extends AbstractWireBlock
 		// if we have a wire attached on the given side, always use the power value of that wire
 		if (state.getValue(INTERIOR_FACES[side]))
 		{
-			int power = wire.getPower(side);
+			int power = storage.getPower(pos, side);
 			return expand ? power : power/2;
 		}
 		
@@ -136,7 +159,7 @@ public abstract class PoweredWireBlock extends AbstractWireBlock
 			Direction attachmentDirection = Direction.from3DDataValue(attachmentSide);
 			if (state.getValue(INTERIOR_FACES[attachmentSide]) && connector.canConnectToAdjacentWire(world, neighborPos, neighborState, pos, state, attachmentDirection, directionFromNeighbor))
 			{
-				output = Math.max(output, wire.getPower(attachmentSide));
+				output = Math.max(output, storage.getPower(pos, attachmentSide));
 			}
 		}
 		return expand ? output : output/2;
@@ -145,12 +168,8 @@ public abstract class PoweredWireBlock extends AbstractWireBlock
 	public int getExpandedPower(World world, BlockPos thisPos, BlockState thisState, BlockPos wirePos, BlockState wireState,
 		Direction wireFace, Direction directionFromWire)
 	{
-		TileEntity te = world.getBlockEntity(thisPos);
-		if (!(te instanceof WireTileEntity))
-			return 0; // if there's no TE then we can't make power
-		WireTileEntity wire = (WireTileEntity)te;
 		return thisState.getValue(INTERIOR_FACES[wireFace.ordinal()])
-			? wire.getPower(wireFace)
+			? WirePowerInChunk.getPower(world, thisPos, wireFace.ordinal())
 			: 0;
 	}
 
@@ -158,147 +177,9 @@ public abstract class PoweredWireBlock extends AbstractWireBlock
 	@Override
 	protected void updatePowerAfterBlockUpdate(World world, BlockPos wirePos, BlockState wireState)
 	{
-		TileEntity te = world.getBlockEntity(wirePos);
-		if (!(te instanceof WireTileEntity))
-			return; // if there's no TE then we can't make any updates
-		WireTileEntity wire = (WireTileEntity)te;
-		
-//		EnumSet<Direction> updatedDirections = EnumSet.noneOf(Direction.class);
-		Map<Block,WireConnector> connectors = MoreRedAPI.getWireConnectabilityRegistry();
-		Map<Block,ExpandedPowerSupplier> expandedPowerSuppliers = MoreRedAPI.getExpandedPowerRegistry();
-		WireConnector defaultConnector = MoreRedAPI.getDefaultWireConnector();
-		ExpandedPowerSupplier defaultPowerSupplier = MoreRedAPI.getDefaultExpandedPowerSupplier();
-		
-		BlockPos.Mutable mutaPos = wirePos.mutable();
-		BlockState[] neighborStates = new BlockState[6];
-		
-		boolean anyPowerUpdated = false;
-		
-		// set of faces needing updates
-		// ONLY faces of attached wires are to be added to this set (check the state before adding)
-		EnumSet<Direction> facesNeedingUpdates = EnumSet.noneOf(Direction.class);
-//		Set<BlockPos> diagonalNeighborsToUpdate = new HashSet<>();
-		boolean attachedFaceStates[] = new boolean[6];
-		for (int attachmentSide=0; attachmentSide<6; attachmentSide++)
-		{
-			if (wireState.getValue(INTERIOR_FACES[attachmentSide]))
-			{
-				attachedFaceStates[attachmentSide] = true;
-				facesNeedingUpdates.add(Direction.from3DDataValue(attachmentSide));
-			}
-			else
-			{
-				// wire is not attached on this face, ensure power is 0
-				if (wire.setPower(attachmentSide, 0))
-				{	// if we lost power here, do neighbor updates later
-					anyPowerUpdated = true;
-				}
-			}
-		}
-		
-		int iteration = 0;
-		while (!facesNeedingUpdates.isEmpty())
-		{
-			int attachmentSide = (iteration++) % 6;
-			Direction attachmentDirection = Direction.from3DDataValue(attachmentSide);
-			
-			// if the set of remaining faces doesn't contain the face, skip the rest of the iteration
-			if (!facesNeedingUpdates.remove(attachmentDirection)) 
-				continue;
-			
-			// we know there's a wire attached to the face because we checked the state before adding
-			int power = 0;
-			// always get power from attached faces, those are full cubes and may supply conducted power
-			mutaPos.setWithOffset(wirePos, attachmentDirection);
-			BlockState attachedNeighborState;
-			BlockState attachedNeighborStateCheck = neighborStates[attachmentSide];
-			if (attachedNeighborStateCheck == null)
-			{
-				attachedNeighborState = world.getBlockState(mutaPos);
-				neighborStates[attachmentSide] = attachedNeighborState;
-			}
-			else
-			{
-				attachedNeighborState = attachedNeighborStateCheck;
-			}
-			int weakNeighborPower = attachedNeighborState.getSignal(world, mutaPos, attachmentDirection);
-			int neighborPower = this.useIndirectPower && attachedNeighborState.shouldCheckWeakPower(world, mutaPos, attachmentDirection)
-				? Math.max(weakNeighborPower, world.getDirectSignalTo(mutaPos))
-				: weakNeighborPower;
-			power = Math.max(power, neighborPower*2 - 1);
-			// for the four sides that are neither attachmentSide nor its opposite
-			for (int orthagonal = 0; orthagonal < 4; orthagonal++)
-			{
-				int neighborSide = DirectionHelper.uncompressSecondSide(attachmentSide, orthagonal);
-				Direction directionToNeighbor = Direction.from3DDataValue(neighborSide);
-
-				Direction directionToWire = directionToNeighbor.getOpposite();
-				BlockState neighborState;
-				BlockState neighborStateCheck = neighborStates[neighborSide];
-				mutaPos.setWithOffset(wirePos, directionToNeighbor);
-				if (neighborStateCheck == null)
-				{
-					neighborState = world.getBlockState(mutaPos);
-					neighborStates[neighborSide] = neighborState;
-				}
-				else
-				{
-					neighborState = neighborStateCheck;
-				}
-				Block neighborBlock = neighborState.getBlock();
-				WireConnector connector = connectors.getOrDefault(neighborBlock, defaultConnector);
-				if (connector.canConnectToAdjacentWire(world, mutaPos, neighborState, wirePos, wireState, attachmentDirection, directionToWire))
-				{
-					ExpandedPowerSupplier expandedPowerSupplier = expandedPowerSuppliers.getOrDefault(neighborBlock, defaultPowerSupplier);
-					// power will always be at least 0 because it started at 0 and we're maxing against that
-					int expandedWeakNeighborPower = expandedPowerSupplier.getExpandedPower(world, mutaPos, neighborState, wirePos, wireState, attachmentDirection, directionToNeighbor);
-					int expandedNeighborPower = this.useIndirectPower && neighborState.shouldCheckWeakPower(world, mutaPos, directionToNeighbor)
-						? Math.max(expandedWeakNeighborPower, world.getDirectSignalTo(mutaPos)*2)
-						: expandedWeakNeighborPower;
-					power = Math.max(power, expandedNeighborPower-1);
-				}
-				if (directionToNeighbor != attachmentDirection)
-				{
-					power = Math.max(power, wire.getPower(neighborSide) - 1);
-				}
-				// if we should check edge connections
-				if (!attachedFaceStates[neighborSide] && neighborBlock == this && !neighborState.getValue(INTERIOR_FACES[attachmentSide]))
-				{
-					BlockPos diagonalPos = mutaPos.move(attachmentDirection);
-					BlockState diagonalState = world.getBlockState(mutaPos);
-					int directionToWireSide = directionToWire.ordinal();
-					if (diagonalState.getBlock() == this && diagonalState.getValue(INTERIOR_FACES[directionToWireSide]))
-					{
-						TileEntity diagonalTe = world.getBlockEntity(diagonalPos);
-						if (diagonalTe instanceof WireTileEntity)
-						{
-							power = Math.max(power, ((WireTileEntity)diagonalTe).getPower(directionToWireSide)-1);
-						}
-					}
-				}
-			}
-			if (wire.setPower(attachmentSide, power))
-			{
-				anyPowerUpdated = true;
-				// mark the face and the four orthagonal faces to it for updates
-				Direction[] nextUpdateDirs = BlockStateUtil.OUTPUT_TABLE[attachmentSide];
-				for (int i=0; i<4; i++)
-				{
-					Direction nextUpdateDir = nextUpdateDirs[i];
-					if (attachedFaceStates[nextUpdateDir.ordinal()])
-					{
-						facesNeedingUpdates.add(nextUpdateDir);
-					}
-//					updatedDirections.add(nextUpdateDir);
-				}
-//				updatedDirections.add(attachmentDirection);
-			}
-			
-		}
-		if (anyPowerUpdated && !world.isClientSide)
-		{
-			this.notifyNeighbors(world, wirePos, wireState, EnumSet.allOf(Direction.class), true);
-		}
+		// solve the whole network of connected subwires at once instead of letting each block update its neighbors,
+		// which would re-update the same wires many times over as power spreads out and falls off
+		WireNetwork.collect(world, this, wirePos).updatePower();
 	}
 	
 	@Override
@@ -310,13 +191,22 @@ public abstract class PoweredWireBlock extends AbstractWireBlock
 			// if either the old block or new block emits strong power,
 			// and a given neighbor block conducts strong power,
 			// then we should notify second-degree neighbors as well
-			for (Direction dir : updateDirections)
+			NeighborUpdateQueue queue = NeighborUpdateQueue.get(world);
+			queue.beginPropagation();
+			try
+			{
+				for (Direction dir : updateDirections)
+				{
+					BlockPos neighborPos = wirePos.relative(dir);
+					boolean doSecondaryNeighborUpdates = doConductedPowerUpdates && world.getBlockState(neighborPos).shouldCheckWeakPower(world, neighborPos, dir);
+					queue.enqueue(world, neighborPos, newBlock, wirePos);
+					if (doSecondaryNeighborUpdates)
+						queue.enqueueNeighbors(world, neighborPos, newBlock);
+				}
+			}
+			finally
 			{
-				BlockPos neighborPos = wirePos.relative(dir);
-				boolean doSecondaryNeighborUpdates = doConductedPowerUpdates && world.getBlockState(neighborPos).shouldCheckWeakPower(world, neighborPos, dir);
-				world.neighborChanged(neighborPos, newBlock, wirePos);
-				if (doSecondaryNeighborUpdates)
-					world.updateNeighborsAt(neighborPos, newBlock);
+				queue.endPropagation(world);
 			}
 		}
 	}
@@ -1,9 +1,8 @@
 package commoble.morered.wires;
 
-import com.google.common.cache.LoadingCache;
-
 import commoble.morered.api.MoreRedAPI;
 import commoble.morered.api.internal.WireVoxelHelpers;
+import commoble.morered.util.LongKeyedClockCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.Direction;
@@ -19,11 +18,11 @@ public class RedAlloyWireBlock extends PoweredWireBlock
 	public static final VoxelShape[] RAYTRACE_BACKBOARDS = WireVoxelHelpers.makeRaytraceBackboards(2);
 	public static final VoxelShape[] LINE_SHAPES = WireVoxelHelpers.makeLineShapes(1,2);
 	public static final VoxelShape[] SHAPES_BY_STATE_INDEX = AbstractWireBlock.makeVoxelShapes(NODE_SHAPES_DUNSWE, LINE_SHAPES);
-	public static final LoadingCache<Long, VoxelShape> VOXEL_CACHE = AbstractWireBlock.makeVoxelCache(SHAPES_BY_STATE_INDEX, LINE_SHAPES);
+	public static final LongKeyedClockCache<VoxelShape> VOXEL_CACHE = AbstractWireBlock.makeVoxelCache(SHAPES_BY_STATE_INDEX, LINE_SHAPES);
 
 	public RedAlloyWireBlock(Properties properties)
 	{
-		super(properties, SHAPES_BY_STATE_INDEX, RAYTRACE_BACKBOARDS, VOXEL_CACHE, true);
+		super(properties, SHAPES_BY_STATE_INDEX, RAYTRACE_BACKBOARDS, VOXEL_CACHE, true, false);
 	}
 
 	@Override
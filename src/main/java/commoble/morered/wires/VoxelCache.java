@@ -1,40 +1,58 @@
 package commoble.morered.wires;
 
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nonnull;
-
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import javax.annotation.Nullable;
 
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.Direction;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.shapes.VoxelShape;
-import net.minecraft.util.math.shapes.VoxelShapes;
+import net.minecraft.world.IBlockReader;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.IChunk;
 import net.minecraft.world.server.ServerWorld;
 import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
 
+/**
+ * Looks up the expanded shapes of wires from the shape indices stored in their chunks (see {@link WireShapesInChunk}).
+ * Indices are computed the first time a wire's shape is looked up after its chunk loads,
+ * and recomputed whenever the wire or its neighbors change.
+ * The edge flags in the stored indices are also what {@link AbstractWireBlock#getEdgeFlags} reads.
+ *
+ * Each client world has its own instance as well, which chunk meshing threads read from while the main thread updates it
+ * (see {@link #getShapeIndexForRendering}); the stored indices themselves are safe to read and write from any thread.
+ */
 public class VoxelCache extends WorldSavedData
 {
 	public static final String ID = "morered:voxelcache";
-	private static VoxelCache clientCache = null;
-	
+	// one per client world, removed when the world unloads
+	private static final Map<World, VoxelCache> CLIENT_CACHES = new ConcurrentHashMap<>();
+
 	protected final World world;
-	public final LoadingCache<BlockPos, VoxelShape> shapesByPos;
-	
+
+	private final LongAdder hits = new LongAdder();
+	public long getHits() { return this.hits.sum(); }
+
+	private final LongAdder misses = new LongAdder();
+	public long getMisses() { return this.misses.sum(); }
+
+	// number of shape indices stored in this world's loaded chunks
+	private final LongAdder size = new LongAdder();
+	public long size() { return this.size.sum(); }
+
 	public VoxelCache(@Nonnull World world)
 	{
 		super(ID);
 		this.world = world;
-		this.shapesByPos = CacheBuilder.newBuilder()
-			.expireAfterAccess(2, TimeUnit.MINUTES)
-			.build(new VoxelLoader());
 	}
-	
+
 	public static VoxelCache get(@Nonnull World world)
 	{
 		if (world instanceof ServerWorld)
@@ -43,22 +61,171 @@ public class VoxelCache extends WorldSavedData
 		}
 		else
 		{
-			if (clientCache == null || clientCache.world != world)
+			return CLIENT_CACHES.computeIfAbsent(world, VoxelCache::new);
+		}
+	}
+
+	public static void clearClientCache()
+	{
+		CLIENT_CACHES.clear();
+	}
+
+	public static void onClientWorldUnloaded(World world)
+	{
+		CLIENT_CACHES.remove(world);
+	}
+
+	/**
+	 * Gets the expanded shape of a wire
+	 * @param block The wire's block
+	 * @param state The state the shape is wanted for
+	 * @param pos The position of the wire
+	 * @return The wire's expanded shape
+	 */
+	public VoxelShape getWireShape(AbstractWireBlock block, BlockState state, BlockPos pos)
+	{
+		WireShapesInChunk shapes = WireShapesInChunk.get(this.world, pos);
+		long index = shapes == null ? WireShapesInChunk.NO_SHAPE_INDEX : shapes.getShapeIndex(pos);
+		if (index != WireShapesInChunk.NO_SHAPE_INDEX)
+		{
+			this.hits.increment();
+			return block.getExpandedShape(index);
+		}
+
+		this.misses.increment();
+		index = block.getExpandedShapeIndex(state, this.world, pos);
+		// shapes are sometimes asked for with states that aren't in the world yet (e.g. placement checks), don't store those
+		if (shapes != null && this.world.getBlockState(pos) == state && shapes.setShapeIndex(pos, index))
+		{
+			this.size.increment();
+		}
+		return block.getExpandedShape(index);
+	}
+
+	/**
+	 * Gets the expanded shape index of a wire for rendering it, from this world's stored indices if there's one for the wire's state.
+	 * Safe to call from chunk meshing threads; indices computed from the reader aren't stored,
+	 * as the reader may be a snapshot that's older than this world's stored indices.
+	 * @param block The wire's block
+	 * @param state The wire's state in the reader
+	 * @param reader The world or chunk meshing snapshot the wire is being rendered from
+	 * @param pos The position of the wire
+	 * @return The wire's expanded shape index
+	 */
+	public long getShapeIndexForRendering(AbstractWireBlock block, BlockState state, IBlockReader reader, BlockPos pos)
+	{
+		long index = this.getStoredShapeIndex(pos);
+		if (index != WireShapesInChunk.NO_SHAPE_INDEX && (index & 63) == AbstractWireBlock.getShapeIndex(state))
+		{
+			this.hits.increment();
+			return index;
+		}
+		this.misses.increment();
+		return block.getExpandedShapeIndex(state, reader, pos);
+	}
+
+	/**
+	 * @param pos A position in this world
+	 * @return The stored shape index of the position, or {@link WireShapesInChunk#NO_SHAPE_INDEX} if it has none
+	 */
+	public long getStoredShapeIndex(BlockPos pos)
+	{
+		WireShapesInChunk shapes = WireShapesInChunk.get(this.world, pos);
+		return shapes == null ? WireShapesInChunk.NO_SHAPE_INDEX : shapes.getShapeIndex(pos);
+	}
+
+	/**
+	 * Recomputes the stored shape indices of a position that changed and of its six neighbors.
+	 * The neighbors' edge flags are updated incrementally, only their edges that touch the changed position are rechecked.
+	 * @param pos The position that changed
+	 */
+	public void updateShapeIndicesAround(BlockPos pos)
+	{
+		this.updateShapeIndex(pos, null);
+		BlockPos.Mutable neighborPos = new BlockPos.Mutable();
+		for (Direction direction : Direction.values())
+		{
+			this.updateShapeIndex(neighborPos.setWithOffset(pos, direction), direction.getOpposite());
+		}
+	}
+
+	/**
+	 * Recomputes the stored shape index of a position after something there or next to it changed
+	 * @param pos The position
+	 * @param changedSide The direction from the position to the neighbor that changed, or null if the position itself changed
+	 * @return True if the position had a stored index and it changed
+	 */
+	public boolean updateShapeIndex(BlockPos pos, @Nullable Direction changedSide)
+	{
+		WireShapesInChunk shapes = WireShapesInChunk.get(this.world, pos);
+		if (shapes == null)
+			return false;
+		BlockState state = this.world.getBlockState(pos);
+		Block block = state.getBlock();
+		if (block instanceof AbstractWireBlock)
+		{
+			AbstractWireBlock wireBlock = (AbstractWireBlock)block;
+			long oldIndex = shapes.getShapeIndex(pos);
+			long index;
+			if (changedSide != null && oldIndex != WireShapesInChunk.NO_SHAPE_INDEX)
 			{
-				clientCache = new VoxelCache(world);
+				long oldEdgeFlags = (oldIndex >>> AbstractWireBlock.EDGE_FLAGS_SHIFT) & AbstractWireBlock.EDGE_FLAGS_MASK;
+				long edgeFlags = wireBlock.updateEdgeFlags(this.world, pos, oldEdgeFlags, changedSide);
+				index = wireBlock.getNodeAndLineShapeIndex(state, this.world, pos) | (edgeFlags << AbstractWireBlock.EDGE_FLAGS_SHIFT);
 			}
-			return clientCache;
+			else
+			{
+				index = wireBlock.getExpandedShapeIndex(state, this.world, pos);
+			}
+			if (shapes.setShapeIndex(pos, index))
+			{
+				this.size.increment();
+			}
+			return oldIndex != WireShapesInChunk.NO_SHAPE_INDEX && oldIndex != index;
 		}
+		else if (shapes.removeShapeIndex(pos))
+		{
+			this.size.decrement();
+			return true;
+		}
+		return false;
 	}
-	
-	public static void clearClientCache()
+
+	/**
+	 * Removes the stored shape indices of a position and its six neighbors,
+	 * for changes whose shape updates are deferred; they're recomputed when next needed
+	 * @param pos The position that changed
+	 */
+	public void forgetShapeIndicesAround(BlockPos pos)
 	{
-		clientCache = null;
+		this.forgetShapeIndex(pos);
+		BlockPos.Mutable neighborPos = new BlockPos.Mutable();
+		for (Direction direction : Direction.values())
+		{
+			this.forgetShapeIndex(neighborPos.setWithOffset(pos, direction));
+		}
+	}
+
+	private void forgetShapeIndex(BlockPos pos)
+	{
+		WireShapesInChunk shapes = WireShapesInChunk.get(this.world, pos);
+		if (shapes != null && shapes.removeShapeIndex(pos))
+		{
+			this.size.decrement();
+		}
 	}
-	
-	public VoxelShape getWireShape(BlockPos pos)
+
+	/**
+	 * Called when a chunk unloads, its shape indices are dropped with it
+	 * @param chunk The chunk being unloaded
+	 */
+	public void onChunkUnloaded(IChunk chunk)
 	{
-		return this.shapesByPos.getUnchecked(pos.immutable());
+		if (chunk instanceof ICapabilityProvider && WireShapesInChunkCapability.INSTANCE != null)
+		{
+			((ICapabilityProvider)chunk).getCapability(WireShapesInChunkCapability.INSTANCE)
+				.ifPresent(shapes -> this.size.add(-shapes.size()));
+		}
 	}
 
 	@Override
@@ -72,23 +239,4 @@ public class VoxelCache extends WorldSavedData
 	{
 		return compound; //noop
 	}
-	
-	public class VoxelLoader extends CacheLoader<BlockPos, VoxelShape>
-	{
-
-		@Override
-		public VoxelShape load(BlockPos pos) throws Exception
-		{
-			World world = VoxelCache.this.world;
-			BlockState state = world.getBlockState(pos);
-			Block block = state.getBlock();
-			if (!(block instanceof AbstractWireBlock))
-				return VoxelShapes.empty();
-			
-			AbstractWireBlock wireBlock = (AbstractWireBlock)block;
-			
-			return wireBlock.getCachedExpandedShapeVoxel(state,world,pos);
-		}
-		
-	}
 }
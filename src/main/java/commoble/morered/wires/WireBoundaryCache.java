@@ -0,0 +1,366 @@
+package commoble.morered.wires;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import commoble.morered.util.DirectionHelper;
+import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.common.util.Constants;
+
+/**
+ * Remembers the power that wires in unloaded chunks were giving to wires across the chunk border when they unloaded,
+ * so that wire networks that cross into unloaded chunks keep being powered from that side instead of treating the border as the end of the wire.
+ *
+ * When a chunk unloads, each wire in a loaded chunk linked to one of its wires is given a boundary value:
+ * the power the unloaded wire was giving it, if that power wasn't coming from the loaded wire itself
+ * (a wire whose power is below its loaded neighbor's can't be a source for it), and the loaded wire's own power is recorded.
+ * Network solves treat boundary values as source power. When the chunk loads again, its boundary values are dropped,
+ * and only the loaded wires whose power changed while it was unloaded get a power update, so loading a chunk of a big build
+ * doesn't cascade through the rest of the network when nothing on the other side of the border changed.
+ *
+ * Boundary values are saved with the world, as the unloaded chunks they stand in for can stay unloaded across restarts.
+ */
+public class WireBoundaryCache extends WorldSavedData
+{
+	public static final String ID = "morered:wireboundarycache";
+	public static final String CHUNKS = "chunks";
+	public static final String CHUNK = "chunk";
+	public static final String INCOMING_POSITIONS = "incoming_positions";
+	public static final String INCOMING_POWER = "incoming_power";
+	public static final String OUTSIDE_POSITIONS = "outside_positions";
+	public static final String OUTSIDE_POWER = "outside_power";
+
+	// unloaded chunk position -> boundaries between that chunk's wires and wires in loaded chunks
+	private final Long2ObjectOpenHashMap<ChunkBoundary> boundariesByChunk = new Long2ObjectOpenHashMap<>();
+	// loaded wire position -> the wire's packed power when the chunk across the border unloaded
+	private final Long2IntLinkedOpenHashMap pendingLoadChecks = new Long2IntLinkedOpenHashMap();
+
+	private long loadChecks = 0;
+	public long getLoadChecks() { return this.loadChecks; }
+
+	private long loadUpdates = 0;
+	public long getLoadUpdates() { return this.loadUpdates; }
+
+	public int size() { return this.boundariesByChunk.size(); }
+
+	public WireBoundaryCache()
+	{
+		super(ID);
+	}
+
+	public static WireBoundaryCache get(@Nonnull ServerWorld world)
+	{
+		return world.getDataStorage().computeIfAbsent(WireBoundaryCache::new, ID);
+	}
+
+	/**
+	 * @param pos The position of a wire in a loaded chunk
+	 * @param side The attachment side of a subwire at that position
+	 * @return The power the subwire receives from wires across the border of unloaded chunks, already reduced by one for the link
+	 */
+	public int getIncomingPower(BlockPos pos, int side)
+	{
+		if (this.boundariesByChunk.isEmpty())
+			return 0;
+		int localX = pos.getX() & 15;
+		int localZ = pos.getZ() & 15;
+		int chunkX = pos.getX() >> 4;
+		int chunkZ = pos.getZ() >> 4;
+		long packedPos = pos.asLong();
+		// only wires on the edges of their chunk can link to wires in other chunks
+		int offsetX = localX == 0 ? -1 : localX == 15 ? 1 : 0;
+		int offsetZ = localZ == 0 ? -1 : localZ == 15 ? 1 : 0;
+		int power = 0;
+		if (offsetX != 0)
+			power = Math.max(power, this.getIncomingPower(chunkX+offsetX, chunkZ, packedPos, side));
+		if (offsetZ != 0)
+			power = Math.max(power, this.getIncomingPower(chunkX, chunkZ+offsetZ, packedPos, side));
+		// wires at a chunk corner can wrap around the edge of a wall into the diagonal chunk
+		if (offsetX != 0 && offsetZ != 0)
+			power = Math.max(power, this.getIncomingPower(chunkX+offsetX, chunkZ+offsetZ, packedPos, side));
+		return power;
+	}
+
+	private int getIncomingPower(int chunkX, int chunkZ, long packedPos, int side)
+	{
+		ChunkBoundary boundary = this.boundariesByChunk.get(ChunkPos.asLong(chunkX, chunkZ));
+		return boundary == null
+			? 0
+			: (boundary.incomingPower.get(packedPos) >>> (side * WirePowerInChunk.POWER_BITS)) & WirePowerInChunk.POWER_MASK;
+	}
+
+	/**
+	 * Forgets the boundary values of a position whose wire was removed
+	 * @param pos The position of the removed wire
+	 */
+	public void forget(BlockPos pos)
+	{
+		if (this.boundariesByChunk.isEmpty())
+			return;
+		long packedPos = pos.asLong();
+		for (ChunkBoundary boundary : this.boundariesByChunk.values())
+		{
+			if (boundary.incomingPower.remove(packedPos) != 0)
+			{
+				this.setDirty();
+			}
+		}
+	}
+
+	/**
+	 * Records the boundary values of an unloading chunk's wires
+	 * @param world The world the chunk is in
+	 * @param chunk The unloading chunk; the world no longer counts it as loaded
+	 */
+	public void onChunkUnloaded(World world, Chunk chunk)
+	{
+		WirePowerInChunk storage = chunk.getCapability(WirePowerInChunkCapability.INSTANCE).orElse(null);
+		if (storage == null || storage.size() == 0)
+			return;
+
+		ChunkPos chunkPos = chunk.getPos();
+		ChunkBoundary boundary = new ChunkBoundary();
+		BlockPos.Mutable pos = new BlockPos.Mutable();
+		for (int sectionY=0; sectionY<WirePowerInChunk.SECTIONS; sectionY++)
+		{
+			for (long entry : storage.getSection(sectionY))
+			{
+				int localIndex = (int)(entry >>> 32);
+				int localX = localIndex & 15;
+				int localZ = (localIndex >> 4) & 15;
+				if (localX != 0 && localX != 15 && localZ != 0 && localZ != 15)
+					continue;
+				pos.set(chunkPos.getMinBlockX() + localX, (sectionY << 4) + (localIndex >> 8), chunkPos.getMinBlockZ() + localZ);
+				BlockState state = chunk.getBlockState(pos);
+				if (state.getBlock() instanceof PoweredWireBlock)
+				{
+					this.recordBoundaries(world, chunk, boundary, pos.immutable(), state, (int)entry);
+				}
+			}
+		}
+
+		if (!boundary.outsidePower.isEmpty())
+		{
+			this.boundariesByChunk.put(chunkPos.toLong(), boundary);
+			this.setDirty();
+		}
+	}
+
+	protected void recordBoundaries(World world, Chunk chunk, ChunkBoundary boundary, BlockPos wirePos, BlockState wireState, int packedPower)
+	{
+		Block block = wireState.getBlock();
+		ChunkPos chunkPos = chunk.getPos();
+		for (int side=0; side<6; side++)
+		{
+			if (!wireState.getValue(AbstractWireBlock.INTERIOR_FACES[side]))
+				continue;
+			int wirePower = (packedPower >>> (side * WirePowerInChunk.POWER_BITS)) & WirePowerInChunk.POWER_MASK;
+			Direction attachmentDirection = Direction.from3DDataValue(side);
+			// same links as WireGraph.computeLinks, but only the ones that end outside the chunk
+			for (int orthagonal=0; orthagonal<4; orthagonal++)
+			{
+				int neighborSide = DirectionHelper.uncompressSecondSide(side, orthagonal);
+				if (wireState.getValue(AbstractWireBlock.INTERIOR_FACES[neighborSide]))
+					continue;
+				Direction directionToNeighbor = Direction.from3DDataValue(neighborSide);
+				int directionToWireSide = directionToNeighbor.getOpposite().ordinal();
+				BlockPos neighborPos = wirePos.relative(directionToNeighbor);
+				boolean neighborInChunk = isInChunk(neighborPos, chunkPos);
+				BlockState neighborState = neighborInChunk ? chunk.getBlockState(neighborPos) : getLoadedBlockState(world, neighborPos);
+				if (neighborState == null || neighborState.getBlock() != block)
+					continue;
+
+				if (neighborState.getValue(AbstractWireBlock.INTERIOR_FACES[side]))
+				{
+					if (!neighborInChunk && !neighborState.getValue(AbstractWireBlock.INTERIOR_FACES[directionToWireSide]))
+					{
+						this.recordBoundary(world, boundary, wirePower, neighborPos, side);
+					}
+				}
+				else if (!neighborState.getValue(AbstractWireBlock.INTERIOR_FACES[directionToWireSide]))
+				{
+					// wire wrapping around the edge of the block we're attached to
+					BlockPos diagonalPos = neighborPos.relative(attachmentDirection);
+					if (isInChunk(diagonalPos, chunkPos))
+						continue;
+					BlockState diagonalState = getLoadedBlockState(world, diagonalPos);
+					if (diagonalState != null && diagonalState.getBlock() == block
+						&& diagonalState.getValue(AbstractWireBlock.INTERIOR_FACES[directionToWireSide])
+						&& !diagonalState.getValue(AbstractWireBlock.INTERIOR_FACES[attachmentDirection.getOpposite().ordinal()]))
+					{
+						this.recordBoundary(world, boundary, wirePower, diagonalPos, directionToWireSide);
+					}
+				}
+			}
+		}
+	}
+
+	protected void recordBoundary(World world, ChunkBoundary boundary, int unloadedPower, BlockPos outsidePos, int outsideSide)
+	{
+		WirePowerInChunk outsideStorage = WirePowerInChunk.get(world, outsidePos);
+		int outsidePackedPower = outsideStorage == null ? 0 : outsideStorage.getPackedPower(outsidePos);
+		long packedPos = outsidePos.asLong();
+		boundary.outsidePower.put(packedPos, outsidePackedPower);
+		int outsidePower = (outsidePackedPower >>> (outsideSide * WirePowerInChunk.POWER_BITS)) & WirePowerInChunk.POWER_MASK;
+		// power below the outside wire's could have come from the outside wire, in which case it can't flow back
+		if (unloadedPower > 1 && unloadedPower >= outsidePower)
+		{
+			int shift = outsideSide * WirePowerInChunk.POWER_BITS;
+			int incoming = boundary.incomingPower.get(packedPos);
+			int oldPower = (incoming >>> shift) & WirePowerInChunk.POWER_MASK;
+			if (unloadedPower - 1 > oldPower)
+			{
+				boundary.incomingPower.put(packedPos, (incoming & ~(WirePowerInChunk.POWER_MASK << shift)) | ((unloadedPower - 1) << shift));
+			}
+		}
+	}
+
+	/**
+	 * Drops the boundary values of a loading chunk, and queues checks of the wires across its border
+	 * @param chunkPos The position of the loading chunk
+	 */
+	public void onChunkLoaded(ChunkPos chunkPos)
+	{
+		ChunkBoundary boundary = this.boundariesByChunk.remove(chunkPos.toLong());
+		if (boundary != null)
+		{
+			// compare on the next tick, the world isn't ready for power updates while the chunk is loading
+			for (Long2IntMap.Entry entry : boundary.outsidePower.long2IntEntrySet())
+			{
+				this.pendingLoadChecks.put(entry.getLongKey(), entry.getIntValue());
+			}
+			this.setDirty();
+		}
+	}
+
+	/**
+	 * Updates the power of loaded wires whose power changed while the chunk across the border from them was unloaded;
+	 * called at the start of the world tick
+	 * @param world The world to check wires in
+	 */
+	public void onTickStart(ServerWorld world)
+	{
+		while (!this.pendingLoadChecks.isEmpty())
+		{
+			long packedPos = this.pendingLoadChecks.firstLongKey();
+			int recordedPower = this.pendingLoadChecks.removeFirstInt();
+			BlockPos pos = BlockPos.of(packedPos);
+			if (!world.hasChunkAt(pos))
+				continue;
+			this.loadChecks++;
+			BlockState state = world.getBlockState(pos);
+			Block block = state.getBlock();
+			if (!(block instanceof AbstractWireBlock))
+				continue;
+			WirePowerInChunk storage = WirePowerInChunk.get(world, pos);
+			if (storage != null && storage.getPackedPower(pos) != recordedPower)
+			{
+				this.loadUpdates++;
+				WirePropagationScheduler.updatePower(world, (AbstractWireBlock)block, pos, state);
+			}
+		}
+	}
+
+	public static void onChunkLoaded(IWorld world, ChunkPos chunkPos)
+	{
+		if (world instanceof ServerWorld)
+		{
+			get((ServerWorld)world).onChunkLoaded(chunkPos);
+		}
+	}
+
+	public static void onChunkUnloaded(IWorld world, IChunk chunk)
+	{
+		if (world instanceof ServerWorld && chunk instanceof Chunk)
+		{
+			get((ServerWorld)world).onChunkUnloaded((ServerWorld)world, (Chunk)chunk);
+		}
+	}
+
+	public static void forget(IWorld world, BlockPos pos)
+	{
+		if (world instanceof ServerWorld)
+		{
+			get((ServerWorld)world).forget(pos);
+		}
+	}
+
+	private static boolean isInChunk(BlockPos pos, ChunkPos chunkPos)
+	{
+		return (pos.getX() >> 4) == chunkPos.x && (pos.getZ() >> 4) == chunkPos.z;
+	}
+
+	@Nullable
+	private static BlockState getLoadedBlockState(World world, BlockPos pos)
+	{
+		return world.hasChunkAt(pos) ? world.getBlockState(pos) : null;
+	}
+
+	@Override
+	public void load(CompoundNBT nbt)
+	{
+		this.boundariesByChunk.clear();
+		ListNBT chunks = nbt.getList(CHUNKS, Constants.NBT.TAG_COMPOUND);
+		for (int i=0; i<chunks.size(); i++)
+		{
+			CompoundNBT chunkNBT = chunks.getCompound(i);
+			ChunkBoundary boundary = new ChunkBoundary();
+			readMap(chunkNBT.getLongArray(INCOMING_POSITIONS), chunkNBT.getIntArray(INCOMING_POWER), boundary.incomingPower);
+			readMap(chunkNBT.getLongArray(OUTSIDE_POSITIONS), chunkNBT.getIntArray(OUTSIDE_POWER), boundary.outsidePower);
+			this.boundariesByChunk.put(chunkNBT.getLong(CHUNK), boundary);
+		}
+	}
+
+	@Override
+	public CompoundNBT save(CompoundNBT compound)
+	{
+		ListNBT chunks = new ListNBT();
+		for (Long2ObjectMap.Entry<ChunkBoundary> entry : this.boundariesByChunk.long2ObjectEntrySet())
+		{
+			ChunkBoundary boundary = entry.getValue();
+			CompoundNBT chunkNBT = new CompoundNBT();
+			chunkNBT.putLong(CHUNK, entry.getLongKey());
+			chunkNBT.putLongArray(INCOMING_POSITIONS, boundary.incomingPower.keySet().toLongArray());
+			chunkNBT.putIntArray(INCOMING_POWER, boundary.incomingPower.values().toIntArray());
+			chunkNBT.putLongArray(OUTSIDE_POSITIONS, boundary.outsidePower.keySet().toLongArray());
+			chunkNBT.putIntArray(OUTSIDE_POWER, boundary.outsidePower.values().toIntArray());
+			chunks.add(chunkNBT);
+		}
+		compound.put(CHUNKS, chunks);
+		return compound;
+	}
+
+	private static void readMap(long[] positions, int[] values, Long2IntOpenHashMap map)
+	{
+		int size = Math.min(positions.length, values.length);
+		for (int i=0; i<size; i++)
+		{
+			map.put(positions[i], values[i]);
+		}
+	}
+
+	protected static class ChunkBoundary
+	{
+		// loaded wire position -> packed power given to each of its subwires from across the border, already reduced by one
+		public final Long2IntOpenHashMap incomingPower = new Long2IntOpenHashMap();
+		// loaded wire position -> the wire's packed power when the chunk unloaded
+		public final Long2IntOpenHashMap outsidePower = new Long2IntOpenHashMap();
+	}
+}
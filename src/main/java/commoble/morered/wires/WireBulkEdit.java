@@ -0,0 +1,218 @@
+package commoble.morered.wires;
+
+import javax.annotation.Nonnull;
+
+import commoble.morered.MoreRed;
+import commoble.morered.api.internal.BulkEditHandler;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.concurrent.TickDelayedTask;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+
+/**
+ * Backs MoreRedAPI's bulk edit methods.
+ *
+ * While a bulk edit is open, shape cache updates and power updates of wire blocks are held back and their positions remembered.
+ * When the last bulk edit ends, the held-back shape updates run first (so that the wire graph sees the finished circuit),
+ * then each held-back power update runs once; a red alloy wire network is solved once no matter how many of its positions were touched.
+ * Neighbor updates sent by wires are held in the NeighborUpdateQueue for the whole edit, and the resulting power changes
+ * are synced to clients with the rest of the tick's wire changes.
+ */
+public class WireBulkEdit extends WorldSavedData
+{
+	public static final String ID = "morered:wirebulkedit";
+	
+	public static final BulkEditHandler HANDLER = new BulkEditHandler()
+	{
+		@Override
+		public void beginBulkEdit(World world)
+		{
+			if (world instanceof ServerWorld)
+			{
+				get((ServerWorld)world).begin(world);
+			}
+		}
+
+		@Override
+		public void endBulkEdit(World world)
+		{
+			if (world instanceof ServerWorld)
+			{
+				get((ServerWorld)world).end(world);
+			}
+		}
+	};
+	
+	private int depth = 0;
+	// whether one of the open edits was opened by us to last until the server's next queued task
+	private boolean held = false;
+	private final LongLinkedOpenHashSet pendingShapeUpdates = new LongLinkedOpenHashSet();
+	private final LongLinkedOpenHashSet pendingPowerUpdates = new LongLinkedOpenHashSet();
+	
+	public WireBulkEdit()
+	{
+		super(ID);
+	}
+	
+	public static WireBulkEdit get(@Nonnull ServerWorld world)
+	{
+		return world.getDataStorage().computeIfAbsent(WireBulkEdit::new, ID);
+	}
+	
+	public boolean isOpen()
+	{
+		return this.depth > 0;
+	}
+	
+	/**
+	 * Opens a bulk edit that ends as soon as whatever is placing blocks right now returns, unless one is already being held;
+	 * used where we don't get told when a batch of block placements ends.
+	 * The edit is ended by a task queued on the server thread, which runs after the current packet or tick work;
+	 * if the server is too busy to run it before the world's next tick, it's ended at the start of that tick instead,
+	 * so it never holds back updates of unrelated wires for a whole tick.
+	 * @param world The world blocks are being placed in
+	 */
+	public static void hold(World world)
+	{
+		if (world instanceof ServerWorld)
+		{
+			ServerWorld serverWorld = (ServerWorld)world;
+			WireBulkEdit bulkEdit = get(serverWorld);
+			if (!bulkEdit.held)
+			{
+				bulkEdit.held = true;
+				bulkEdit.begin(world);
+				// execute() would run the task right away on the server thread, queue it instead
+				MinecraftServer server = serverWorld.getServer();
+				server.tell(new TickDelayedTask(server.getTickCount(), () -> bulkEdit.release(serverWorld)));
+			}
+		}
+	}
+
+	/**
+	 * Ends the bulk edit opened by {@link #hold}, if it's still open
+	 * @param world The world the edit was opened in
+	 */
+	public void release(ServerWorld world)
+	{
+		if (!this.held)
+			return;
+		this.held = false;
+		this.end(world);
+	}
+	
+	public void deferShapeUpdate(BlockPos pos)
+	{
+		this.pendingShapeUpdates.add(pos.asLong());
+	}
+	
+	public void deferPowerUpdate(BlockPos pos)
+	{
+		this.pendingPowerUpdates.add(pos.asLong());
+	}
+	
+	protected void begin(World world)
+	{
+		if (this.depth == 0)
+		{
+			NeighborUpdateQueue.get(world).beginPropagation();
+		}
+		this.depth++;
+	}
+	
+	protected void end(World world)
+	{
+		if (this.depth <= 0)
+			return;
+		this.depth--;
+		if (this.depth > 0)
+			return;
+		
+		NeighborUpdateQueue queue = NeighborUpdateQueue.get(world);
+		try
+		{
+			this.runPendingUpdates(world);
+		}
+		finally
+		{
+			queue.endPropagation(world);
+		}
+	}
+	
+	protected void runPendingUpdates(World world)
+	{
+		while (!this.pendingShapeUpdates.isEmpty())
+		{
+			// update shapes even where the wire was removed during the edit, since the shapes around it still changed
+			AbstractWireBlock.updateShapeCacheAround(world, BlockPos.of(this.pendingShapeUpdates.removeFirstLong()));
+		}
+		while (!this.pendingPowerUpdates.isEmpty())
+		{
+			BlockPos pos = BlockPos.of(this.pendingPowerUpdates.removeFirstLong());
+			if (!world.hasChunkAt(pos))
+				continue;
+			BlockState state = world.getBlockState(pos);
+			Block block = state.getBlock();
+			if (block instanceof PoweredWireBlock)
+			{
+				// solve the whole network now, and don't solve it again for its other positions
+				WireNetwork network = WireNetwork.collect(world, (PoweredWireBlock)block, pos);
+				for (int i=0; i<network.size(); i++)
+				{
+					this.pendingPowerUpdates.remove(network.getPackedPos(i));
+				}
+				WirePropagationScheduler.addWork(world, 1);
+				network.updatePower();
+			}
+			else if (block instanceof AbstractWireBlock)
+			{
+				WirePropagationScheduler.updatePower(world, (AbstractWireBlock)block, pos, state);
+			}
+		}
+	}
+	
+	/**
+	 * Ends a held bulk edit whose release task hasn't run yet, before the tick's wire work starts
+	 * @param world The world being ticked
+	 */
+	public void onTickStart(ServerWorld world)
+	{
+		this.release(world);
+	}
+
+	/**
+	 * Ends a bulk edit held during this tick, and any bulk edits that were left open by mistake
+	 * @param world The world being ticked
+	 */
+	public void onTickEnd(ServerWorld world)
+	{
+		if (this.depth <= 0)
+			return;
+		int unclosedEdits = this.held ? this.depth - 1 : this.depth;
+		if (unclosedEdits > 0)
+		{
+			MoreRed.LOGGER.warn("{} wire bulk edit(s) in {} were not ended before the end of the tick, ending them now", unclosedEdits, world.dimension().location());
+		}
+		this.held = false;
+		this.depth = 1;
+		this.end(world);
+	}
+
+	@Override
+	public void load(CompoundNBT nbt)
+	{
+		//noop
+	}
+
+	@Override
+	public CompoundNBT save(CompoundNBT compound)
+	{
+		return compound; //noop
+	}
+}
@@ -0,0 +1,171 @@
+package commoble.morered.wires;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import commoble.morered.ServerConfig;
+import commoble.morered.api.MoreRedAPI;
+import net.minecraft.advancements.CriteriaTriggers;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.SoundType;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.state.BooleanProperty;
+import net.minecraft.util.Direction;
+import net.minecraft.util.Hand;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.util.BlockSnapshot;
+import net.minecraftforge.event.ForgeEventFactory;
+
+/**
+ * Placing a rectangle of wire faces at once by dragging across the faces of some blocks.
+ *
+ * A drag is described by the two blocks the drag started and ended on and the face of them that was clicked;
+ * both blocks must be in the same plane perpendicular to that face.
+ * Every block in the rectangle between them gets a wire attached to the clicked face,
+ * skipping blocks whose face isn't sturdy and positions that can't hold the wire.
+ * The client uses this to preview a drag, and the server recomputes it from the drag's ends rather than trusting a list of positions.
+ */
+public class WireDragPlacement
+{
+	// same as the server's limit on how far away players can use blocks
+	public static final double MAX_DRAG_END_DISTANCE_SQUARED = 64D;
+
+	/**
+	 * @param start The block the drag started on
+	 * @param end The block the drag ended on
+	 * @param face The face of the blocks that was clicked
+	 * @param maxWires The largest allowed number of positions in the rectangle
+	 * @return True if the ends are in the same plane and the rectangle between them isn't too big
+	 */
+	public static boolean isValidDrag(BlockPos start, BlockPos end, Direction face, int maxWires)
+	{
+		Direction.Axis axis = face.getAxis();
+		if (axis.choose(start.getX(), start.getY(), start.getZ()) != axis.choose(end.getX(), end.getY(), end.getZ()))
+			return false;
+		long width = Math.abs(start.getX() - end.getX()) + 1L;
+		long height = Math.abs(start.getY() - end.getY()) + 1L;
+		long depth = Math.abs(start.getZ() - end.getZ()) + 1L;
+		return width * height * depth <= maxWires;
+	}
+
+	/**
+	 * Figures out which wire faces a drag would place
+	 * @param world The world to place in
+	 * @param block The wire block being placed
+	 * @param start The block the drag started on
+	 * @param end The block the drag ended on
+	 * @param face The face of the blocks that was clicked
+	 * @return Map of the positions wires can be placed at to the states they would be set to, in rectangle order
+	 */
+	public static Map<BlockPos, BlockState> getPlacements(World world, AbstractWireBlock block, BlockPos start, BlockPos end, Direction face)
+	{
+		Map<BlockPos, BlockState> placements = new LinkedHashMap<>();
+		BooleanProperty attachmentFace = AbstractWireBlock.INTERIOR_FACES[face.getOpposite().ordinal()];
+		for (BlockPos supportPos : BlockPos.betweenClosed(start, end))
+		{
+			if (!world.getBlockState(supportPos).isFaceSturdy(world, supportPos, face))
+				continue;
+			BlockPos wirePos = supportPos.relative(face);
+			BlockState existingState = world.getBlockState(wirePos);
+			BlockState newState = null;
+			if (existingState.getBlock() == block)
+			{
+				if (!existingState.getValue(attachmentFace))
+				{
+					newState = existingState.setValue(attachmentFace, true);
+				}
+			}
+			else if (existingState.getMaterial().isReplaceable())
+			{
+				newState = block.defaultBlockState().setValue(attachmentFace, true);
+			}
+			if (newState != null)
+			{
+				placements.put(wirePos.immutable(), newState);
+			}
+		}
+		return placements;
+	}
+
+	/**
+	 * Places the wires of a drag on the server as one bulk edit, so the circuit is solved and synced once
+	 * @param player The player who dragged
+	 * @param hand The hand holding the wire item
+	 * @param start The block the drag started on
+	 * @param end The block the drag ended on
+	 * @param face The face of the blocks that was clicked
+	 */
+	public static void placeDrag(ServerPlayerEntity player, Hand hand, BlockPos start, BlockPos end, Direction face)
+	{
+		ServerWorld world = player.getLevel();
+		ItemStack stack = player.getItemInHand(hand);
+		Item item = stack.getItem();
+		if (!(item instanceof WireBlockItem))
+			return;
+		Block block = ((WireBlockItem)item).getBlock();
+		if (!(block instanceof AbstractWireBlock))
+			return;
+		if (!isValidDrag(start, end, face, ServerConfig.INSTANCE.max_wires_per_drag.get()))
+			return;
+		Vector3d eyePos = player.getEyePosition(1F);
+		if (eyePos.distanceToSqr(Vector3d.atCenterOf(start)) > MAX_DRAG_END_DISTANCE_SQUARED
+			|| eyePos.distanceToSqr(Vector3d.atCenterOf(end)) > MAX_DRAG_END_DISTANCE_SQUARED)
+			return;
+
+		boolean instabuild = player.abilities.instabuild;
+		int placed = 0;
+		@Nullable BlockPos lastPlacedPos = null;
+		@Nullable BlockState lastPlacedState = null;
+		MoreRedAPI.beginBulkEdit(world);
+		try
+		{
+			for (Map.Entry<BlockPos, BlockState> entry : getPlacements(world, (AbstractWireBlock)block, start, end, face).entrySet())
+			{
+				if (!instabuild && placed >= stack.getCount())
+					break;
+				BlockPos wirePos = entry.getKey();
+				BlockState newState = entry.getValue();
+				if (!world.mayInteract(player, wirePos) || !world.getWorldBorder().isWithinBounds(wirePos))
+					continue;
+				BlockSnapshot snapshot = BlockSnapshot.create(world.dimension(), world, wirePos);
+				if (!world.setBlock(wirePos, newState, 11))
+					continue;
+				// fires the same forge event single placements do
+				if (ForgeEventFactory.onBlockPlace(player, snapshot, face))
+				{
+					snapshot.restore(true, false);
+					continue;
+				}
+				block.setPlacedBy(world, wirePos, newState, player, stack);
+				placed++;
+				lastPlacedPos = wirePos;
+				lastPlacedState = newState;
+			}
+		}
+		finally
+		{
+			MoreRedAPI.endBulkEdit(world);
+		}
+
+		if (lastPlacedPos != null)
+		{
+			CriteriaTriggers.PLACED_BLOCK.trigger(player, lastPlacedPos, stack);
+			SoundType soundtype = lastPlacedState.getSoundType(world, lastPlacedPos, player);
+			world.playSound(null, lastPlacedPos, soundtype.getPlaceSound(), SoundCategory.BLOCKS,
+				(soundtype.getVolume() + 1.0F) / 2.0F, soundtype.getPitch() * 0.8F);
+			if (!instabuild)
+			{
+				stack.shrink(placed);
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package commoble.morered.wires;
+
+import java.util.function.Supplier;
+
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.Direction;
+import net.minecraft.util.Hand;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+/** Packet sent from client to server when client finishes dragging a wire item across some blocks **/
+public class WireDragPlacementPacket
+{
+	public final Hand hand;
+	public final BlockPos start;
+	public final BlockPos end;
+	public final Direction face;
+
+	public WireDragPlacementPacket(Hand hand, BlockPos start, BlockPos end, Direction face)
+	{
+		this.hand = hand;
+		this.start = start;
+		this.end = end;
+		this.face = face;
+	}
+
+	public void write(PacketBuffer packet)
+	{
+		packet.writeEnum(this.hand);
+		packet.writeBlockPos(this.start);
+		packet.writeBlockPos(this.end);
+		packet.writeEnum(this.face);
+	}
+
+	public static WireDragPlacementPacket read(PacketBuffer packet)
+	{
+		Hand hand = packet.readEnum(Hand.class);
+		BlockPos start = packet.readBlockPos();
+		BlockPos end = packet.readBlockPos();
+		Direction face = packet.readEnum(Direction.class);
+		return new WireDragPlacementPacket(hand, start, end, face);
+	}
+
+	public void handle(Supplier<NetworkEvent.Context> contextGetter)
+	{
+		contextGetter.get().enqueueWork(() -> this.handleThreadsafe(contextGetter.get()));
+		contextGetter.get().setPacketHandled(true);
+	}
+
+	public void handleThreadsafe(NetworkEvent.Context context)
+	{
+		ServerPlayerEntity player = context.getSender();
+		if (player != null)
+		{
+			// the server works out the positions itself from the ends of the drag
+			WireDragPlacement.placeDrag(player, this.hand, this.start, this.end, this.face);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package commoble.morered.wires;
+
+import javax.annotation.Nonnull;
+
+import commoble.morered.util.DirectionHelper;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+
+/**
+ * Per-world cache of which subwires connect to which other subwires of the same block,
+ * so that power updates can walk a wire network without re-reading the blockstates around every wire.
+ *
+ * Each wire position is stored as a long of link flags;
+ * the bits are defined as such starting from the least-significant bit:
+ * bits 0-5 -- the faces that wires are attached to at this position (same as the unexpanded shape index)
+ * bits 6-29 -- for each attached face, the four orthagonal neighbors whose wire is attached to the same face (face*4 + compressed side)
+ * bits 30-53 -- for each attached face, the four orthagonal neighbors whose wire wraps around the edge of the attached block,
+ * 	connecting to the wire attached to the opposite face of the diagonal position (neighbor position + attachment direction)
+ * Wires on two orthagonal faces of the same position are always connected, so those links aren't stored.
+ *
+ * Links are grouped by chunk, computed lazily when first requested, and discarded when the chunk unloads,
+ * so we only hold links for wires that power updates have actually needed recently.
+ * Links are only cached on the server (where the block change hooks run); clients compute them directly.
+ */
+public class WireGraph extends WorldSavedData
+{
+	public static final String ID = "morered:wiregraph";
+	public static final int LATERAL_LINK_OFFSET = 6;
+	public static final int DIAGONAL_LINK_OFFSET = 30;
+
+	// offsets of the positions whose links can depend on the blockstate at a given position
+	// (the position itself, its six neighbors, and the twelve positions diagonal to it)
+	private static final BlockPos[] AFFECTED_OFFSETS = makeAffectedOffsets();
+
+	private final Long2ObjectOpenHashMap<Long2LongOpenHashMap> linksByChunk = new Long2ObjectOpenHashMap<>();
+
+	public WireGraph()
+	{
+		super(ID);
+	}
+
+	public static WireGraph get(@Nonnull ServerWorld world)
+	{
+		return world.getDataStorage().computeIfAbsent(WireGraph::new, ID);
+	}
+
+	/**
+	 * @return The number of positions whose links are currently cached
+	 */
+	public long size()
+	{
+		long size = 0;
+		for (Long2LongOpenHashMap links : this.linksByChunk.values())
+		{
+			size += links.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the link flags for the wire block at the given position, using the cached links if we have any
+	 * @param world The world the wire is in
+	 * @param pos The position of the wire
+	 * @return The link flags as defined in {@link WireGraph}, or 0 if there's no wire block there
+	 */
+	public static long getLinks(World world, BlockPos pos)
+	{
+		return world instanceof ServerWorld
+			? get((ServerWorld)world).getCachedLinks(world, pos)
+			: computeLinks(world, pos);
+	}
+
+	public static boolean hasFace(long links, int side)
+	{
+		return (links & (1L << side)) != 0;
+	}
+
+	public static boolean hasLateralLink(long links, int side, int orthagonal)
+	{
+		return (links & (1L << (LATERAL_LINK_OFFSET + side*4 + orthagonal))) != 0;
+	}
+
+	public static boolean hasDiagonalLink(long links, int side, int orthagonal)
+	{
+		return (links & (1L << (DIAGONAL_LINK_OFFSET + side*4 + orthagonal))) != 0;
+	}
+
+	public long getCachedLinks(World world, BlockPos pos)
+	{
+		long packedPos = pos.asLong();
+		long chunkKey = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+		Long2LongOpenHashMap chunkLinks = this.linksByChunk.get(chunkKey);
+		if (chunkLinks != null && chunkLinks.containsKey(packedPos))
+		{
+			return chunkLinks.get(packedPos);
+		}
+		// don't cache anything for chunks that aren't loaded, we'd never be told to discard it
+		if (!world.hasChunkAt(pos))
+		{
+			return 0L;
+		}
+		long links = computeLinks(world, pos);
+		if (chunkLinks == null)
+		{
+			chunkLinks = new Long2LongOpenHashMap();
+			this.linksByChunk.put(chunkKey, chunkLinks);
+		}
+		chunkLinks.put(packedPos, links);
+		return links;
+	}
+
+	/**
+	 * Discards the cached links of every position whose links may have changed
+	 * because of a blockstate change at the given position
+	 * @param pos The position whose blockstate changed
+	 */
+	public void invalidateAround(BlockPos pos)
+	{
+		if (this.linksByChunk.isEmpty())
+			return;
+		BlockPos.Mutable mutaPos = new BlockPos.Mutable();
+		for (BlockPos offset : AFFECTED_OFFSETS)
+		{
+			mutaPos.setWithOffset(pos, offset.getX(), offset.getY(), offset.getZ());
+			Long2LongOpenHashMap chunkLinks = this.linksByChunk.get(ChunkPos.asLong(mutaPos.getX() >> 4, mutaPos.getZ() >> 4));
+			if (chunkLinks != null)
+			{
+				chunkLinks.remove(mutaPos.asLong());
+			}
+		}
+	}
+
+	public void onChunkLoaded(ChunkPos chunkPos)
+	{
+		// wires near the edges of the surrounding chunks may have been treating this chunk as empty
+		this.discardLinksAround(chunkPos);
+	}
+
+	public void onChunkUnloaded(ChunkPos chunkPos)
+	{
+		// wires near the edges of the surrounding chunks may have links into this chunk,
+		// following those would load it again (and the edges of loaded space are the edges of the network)
+		this.discardLinksAround(chunkPos);
+	}
+
+	private void discardLinksAround(ChunkPos chunkPos)
+	{
+		for (int x=-1; x<=1; x++)
+		{
+			for (int z=-1; z<=1; z++)
+			{
+				this.linksByChunk.remove(ChunkPos.asLong(chunkPos.x + x, chunkPos.z + z));
+			}
+		}
+	}
+
+	public static void onChunkLoaded(IWorld world, ChunkPos chunkPos)
+	{
+		if (world instanceof ServerWorld)
+		{
+			get((ServerWorld)world).onChunkLoaded(chunkPos);
+		}
+	}
+
+	public static void onChunkUnloaded(IWorld world, ChunkPos chunkPos)
+	{
+		if (world instanceof ServerWorld)
+		{
+			get((ServerWorld)world).onChunkUnloaded(chunkPos);
+		}
+	}
+
+	/**
+	 * Computes the link flags for the wire block at the given position from the world, treating unloaded positions as empty
+	 * @param world The world the wire is in
+	 * @param pos The position of the wire
+	 * @return The link flags as defined in {@link WireGraph}, or 0 if there's no wire block there
+	 */
+	public static long computeLinks(World world, BlockPos pos)
+	{
+		BlockState state = getLoadedBlockState(world, pos);
+		Block block = state.getBlock();
+		if (!(block instanceof AbstractWireBlock))
+			return 0L;
+
+		long links = 0L;
+		BlockPos.Mutable mutaPos = pos.mutable();
+		BlockState[] neighborStates = new BlockState[6];
+		for (int side=0; side<6; side++)
+		{
+			if (!state.getValue(AbstractWireBlock.INTERIOR_FACES[side]))
+				continue;
+			links |= 1L << side;
+
+			Direction attachmentDirection = Direction.from3DDataValue(side);
+			// for the four sides that are neither attachmentSide nor its opposite
+			for (int orthagonal=0; orthagonal<4; orthagonal++)
+			{
+				int neighborSide = DirectionHelper.uncompressSecondSide(side, orthagonal);
+				// elbows within the same block are implied by the attached faces
+				if (state.getValue(AbstractWireBlock.INTERIOR_FACES[neighborSide]))
+					continue;
+
+				Direction directionToNeighbor = Direction.from3DDataValue(neighborSide);
+				mutaPos.setWithOffset(pos, directionToNeighbor);
+				BlockState neighborState = neighborStates[neighborSide];
+				if (neighborState == null)
+				{
+					neighborState = getLoadedBlockState(world, mutaPos);
+					neighborStates[neighborSide] = neighborState;
+				}
+				if (neighborState.getBlock() != block)
+					continue;
+
+				if (neighborState.getValue(AbstractWireBlock.INTERIOR_FACES[side]))
+				{
+					links |= 1L << (LATERAL_LINK_OFFSET + side*4 + orthagonal);
+				}
+				else
+				{
+					// check for a wire wrapping around the edge of the block we're attached to
+					mutaPos.move(attachmentDirection);
+					BlockState diagonalState = getLoadedBlockState(world, mutaPos);
+					int directionToWireSide = directionToNeighbor.getOpposite().ordinal();
+					if (diagonalState.getBlock() == block && diagonalState.getValue(AbstractWireBlock.INTERIOR_FACES[directionToWireSide]))
+					{
+						links |= 1L << (DIAGONAL_LINK_OFFSET + side*4 + orthagonal);
+					}
+				}
+			}
+		}
+		return links;
+	}
+
+	public static BlockState getLoadedBlockState(World world, BlockPos pos)
+	{
+		// don't load chunks just to look for more wire, treat the edges of loaded space as the edges of the network
+		return world.hasChunkAt(pos)
+			? world.getBlockState(pos)
+			: Blocks.AIR.defaultBlockState();
+	}
+
+	private static BlockPos[] makeAffectedOffsets()
+	{
+		BlockPos[] offsets = new BlockPos[19];
+		int i = 0;
+		for (int x=-1; x<=1; x++)
+		{
+			for (int y=-1; y<=1; y++)
+			{
+				for (int z=-1; z<=1; z++)
+				{
+					// skip the eight corners, nothing links to those
+					if (Math.abs(x) + Math.abs(y) + Math.abs(z) < 3)
+					{
+						offsets[i++] = new BlockPos(x,y,z);
+					}
+				}
+			}
+		}
+		return offsets;
+	}
+
+	@Override
+	public void load(CompoundNBT nbt)
+	{
+		//noop
+	}
+
+	@Override
+	public CompoundNBT save(CompoundNBT compound)
+	{
+		return compound; //noop
+	}
+}
@@ -0,0 +1,153 @@
+package commoble.morered.wires;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+
+/**
+ * Remembers, for each side of each wire block, the signature of the neighbor on that side
+ * as of the last neighbor update the wire handled (see {@link AbstractWireBlock#getNeighborSignature}).
+ *
+ * A neighbor update whose signature matches the remembered one can't change the wire's shape, connections, or power,
+ * so the wire can skip the update; a hopper filling or a crop growing next to a wire doesn't change anything the wire looks at.
+ * Signatures are forgotten when a wire block is placed or removed and when its chunk unloads,
+ * and an unknown signature always counts as a change.
+ */
+public class WireNeighborSignatures extends WorldSavedData
+{
+	public static final String ID = "morered:wireneighborsignatures";
+	public static final int UNKNOWN_SIGNATURE = Integer.MIN_VALUE;
+
+	private final Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<int[]>> signaturesByChunk = new Long2ObjectOpenHashMap<>();
+
+	private long skippedUpdates = 0;
+	public long getSkippedUpdates() { return this.skippedUpdates; }
+
+	private long relevantUpdates = 0;
+	public long getRelevantUpdates() { return this.relevantUpdates; }
+
+	public WireNeighborSignatures()
+	{
+		super(ID);
+	}
+
+	public static WireNeighborSignatures get(@Nonnull ServerWorld world)
+	{
+		return world.getDataStorage().computeIfAbsent(WireNeighborSignatures::new, ID);
+	}
+
+	/**
+	 * Checks whether a neighbor update can matter to a wire block, and remembers the neighbor's current signature
+	 * @param world The world the wire is in
+	 * @param wireBlock The wire block being updated
+	 * @param wirePos The position of the wire block
+	 * @param wireState The wire's blockstate
+	 * @param neighborPos The position of the neighbor that changed
+	 * @param directionToNeighbor The direction from the wire to the neighbor
+	 * @return False if the neighbor's signature is the same as when the wire last handled an update from it, true otherwise
+	 */
+	public boolean hasRelevantChange(World world, AbstractWireBlock wireBlock, BlockPos wirePos, BlockState wireState, BlockPos neighborPos, Direction directionToNeighbor)
+	{
+		int signature = wireBlock.getNeighborSignature(world, wirePos, wireState, neighborPos, world.getBlockState(neighborPos), directionToNeighbor);
+		long chunkKey = ChunkPos.asLong(wirePos.getX() >> 4, wirePos.getZ() >> 4);
+		Long2ObjectOpenHashMap<int[]> chunkSignatures = this.signaturesByChunk.get(chunkKey);
+		int[] signatures = chunkSignatures == null ? null : chunkSignatures.get(wirePos.asLong());
+		int side = directionToNeighbor.ordinal();
+		if (signature == AbstractWireBlock.ALWAYS_RELEVANT)
+		{
+			if (signatures != null)
+			{
+				signatures[side] = UNKNOWN_SIGNATURE;
+			}
+			this.relevantUpdates++;
+			return true;
+		}
+		if (signatures == null)
+		{
+			if (chunkSignatures == null)
+			{
+				chunkSignatures = new Long2ObjectOpenHashMap<>();
+				this.signaturesByChunk.put(chunkKey, chunkSignatures);
+			}
+			signatures = new int[6];
+			Arrays.fill(signatures, UNKNOWN_SIGNATURE);
+			chunkSignatures.put(wirePos.asLong(), signatures);
+		}
+		int oldSignature = signatures[side];
+		signatures[side] = signature;
+		if (oldSignature == signature)
+		{
+			this.skippedUpdates++;
+			return false;
+		}
+		this.relevantUpdates++;
+		return true;
+	}
+
+	/**
+	 * Forgets the remembered signatures of a wire block, so that the next update from each neighbor is handled
+	 * @param pos The position of the wire block
+	 */
+	public void forget(BlockPos pos)
+	{
+		Long2ObjectOpenHashMap<int[]> chunkSignatures = this.signaturesByChunk.get(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+		if (chunkSignatures != null)
+		{
+			chunkSignatures.remove(pos.asLong());
+		}
+	}
+
+	public long size()
+	{
+		long size = 0;
+		for (Long2ObjectOpenHashMap<int[]> chunkSignatures : this.signaturesByChunk.values())
+		{
+			size += chunkSignatures.size();
+		}
+		return size;
+	}
+
+	public void onChunkUnloaded(ChunkPos chunkPos)
+	{
+		this.signaturesByChunk.remove(chunkPos.toLong());
+	}
+
+	public static void forget(World world, BlockPos pos)
+	{
+		if (world instanceof ServerWorld)
+		{
+			get((ServerWorld)world).forget(pos);
+		}
+	}
+
+	public static void onChunkUnloaded(IWorld world, ChunkPos chunkPos)
+	{
+		if (world instanceof ServerWorld)
+		{
+			get((ServerWorld)world).onChunkUnloaded(chunkPos);
+		}
+	}
+
+	@Override
+	public void load(CompoundNBT nbt)
+	{
+		//noop
+	}
+
+	@Override
+	public CompoundNBT save(CompoundNBT compound)
+	{
+		return compound; //noop
+	}
+}
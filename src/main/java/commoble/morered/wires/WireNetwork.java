@@ -0,0 +1,415 @@
+package commoble.morered.wires;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import commoble.morered.MoreRedProfiler;
+import commoble.morered.api.ExpandedPowerSupplier;
+import commoble.morered.api.MoreRedAPI;
+import commoble.morered.api.WireConnector;
+import commoble.morered.util.DirectionHelper;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * A connected network of subwires belonging to a single PoweredWireBlock,
+ * collected from the world so that the power of every subwire in it can be solved in one pass.
+ *
+ * Each position in the network has six nodes, one per interior face (in dunswe order);
+ * nodes for faces that don't have a wire attached have no links and no source power, and always solve to 0.
+ */
+public class WireNetwork
+{
+	// the network currently asking its neighbors for power on this thread, if any
+	private static final ThreadLocal<WireNetwork> GATHERING_NETWORK = new ThreadLocal<>();
+
+	protected final World world;
+	protected final PoweredWireBlock block;
+	protected final @Nullable WireGraph graph;
+	protected final Long2IntOpenHashMap indexByPos = new Long2IntOpenHashMap();
+	protected final LongArrayList positions = new LongArrayList();
+	protected final List<BlockState> states = new ArrayList<>();
+	protected final IntArrayList linkStarts = new IntArrayList();
+	protected final IntArrayList links = new IntArrayList();
+
+	protected WireNetwork(World world, PoweredWireBlock block, @Nullable WireGraph graph)
+	{
+		this.world = world;
+		this.block = block;
+		this.graph = graph;
+		this.indexByPos.defaultReturnValue(-1);
+	}
+
+	/**
+	 * Finds all of the subwires connected to the wire block at the given position
+	 * @param world The world to search in
+	 * @param block The wire block whose subwires we're collecting (other blocks are treated as external neighbors)
+	 * @param seedPos The position to start the search from
+	 * @return A network containing all of the positions connected to the seed position (will be empty if the seed position doesn't contain the block)
+	 */
+	public static WireNetwork collect(World world, PoweredWireBlock block, BlockPos seedPos)
+	{
+		// links are only cached on the server, where the block change hooks that invalidate them run
+		return collect(world, block, seedPos, world instanceof ServerWorld ? WireGraph.get((ServerWorld)world) : null);
+	}
+
+	/**
+	 * Finds all of the subwires connected to the wire block at the given position
+	 * @param world The world to search in
+	 * @param block The wire block whose subwires we're collecting (other blocks are treated as external neighbors)
+	 * @param seedPos The position to start the search from
+	 * @param graph The cached links to walk, or null to compute every position's links from the world
+	 * @return A network containing all of the loaded positions connected to the seed position (will be empty if the seed position doesn't contain the block)
+	 */
+	public static WireNetwork collect(World world, PoweredWireBlock block, BlockPos seedPos, @Nullable WireGraph graph)
+	{
+		WireNetwork network = new WireNetwork(world, block, graph);
+		BlockState seedState = world.getBlockState(seedPos);
+		if (seedState.getBlock() == block)
+		{
+			network.getOrAddPosition(seedPos);
+			// positions get added to the end of the list as we find them
+			for (int i=0; i<network.positions.size(); i++)
+			{
+				network.collectLinks(i);
+			}
+		}
+		network.linkStarts.add(network.links.size());
+		return network;
+	}
+
+	/**
+	 * @param world A world
+	 * @param pos A position in that world
+	 * @return True if the given position belongs to a network that is currently gathering power from its neighbors on this thread
+	 */
+	public static boolean isGatheringPowerAt(IBlockReader world, BlockPos pos)
+	{
+		WireNetwork network = GATHERING_NETWORK.get();
+		return network != null && network.world == world && network.contains(pos);
+	}
+
+	public int size()
+	{
+		return this.positions.size();
+	}
+
+	/**
+	 * @param index The index of a position in the network, in [0, size)
+	 * @return The position, as a packed long
+	 */
+	public long getPackedPos(int index)
+	{
+		return this.positions.getLong(index);
+	}
+
+	public boolean contains(BlockPos pos)
+	{
+		return this.indexByPos.containsKey(pos.asLong());
+	}
+
+	/**
+	 * Solves the power of every subwire in the network, stores any changed power values,
+	 * and notifies the blocks around the network if anything changed.
+	 * Very large networks may be solved off-thread and have their power stored on a later tick (see {@link AsyncNetworkSolver}).
+	 */
+	public void updatePower()
+	{
+		if (this.positions.isEmpty())
+			return;
+
+		// the scheduler already counted the position that asked for the update
+		WirePropagationScheduler.addWork(this.world, this.positions.size() - 1);
+		MoreRedProfiler.recordFaceIterations(this.world, BlockPos.of(this.positions.getLong(0)), this.positions.size() * 6);
+		int[] sourcePower = this.gatherSourcePower();
+		int[] linkStarts = this.linkStarts.toIntArray();
+		int[] links = this.links.toIntArray();
+		if (this.world instanceof ServerWorld && AsyncNetworkSolver.shouldSolveAsync(this.positions.size()))
+		{
+			AsyncNetworkSolver.get((ServerWorld)this.world).submit(this, sourcePower, linkStarts, links);
+		}
+		else
+		{
+			this.applyPower(NetworkPowerSolver.solveRuns(sourcePower, linkStarts, links));
+		}
+	}
+
+	/**
+	 * @return True if every position in the network is still loaded and has the same blockstate it had when the network was collected
+	 */
+	public boolean matchesWorld()
+	{
+		int positionCount = this.positions.size();
+		for (int i=0; i<positionCount; i++)
+		{
+			BlockPos pos = BlockPos.of(this.positions.getLong(i));
+			if (!this.world.hasChunkAt(pos) || this.world.getBlockState(pos) != this.states.get(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param pos A position linked to the network
+	 * @return The index of the position in the network, or -1 if the position isn't loaded
+	 */
+	protected int getOrAddPosition(BlockPos pos)
+	{
+		long packedPos = pos.asLong();
+		int index = this.indexByPos.get(packedPos);
+		if (index < 0)
+		{
+			// don't load chunks just to look for more wire, treat the edges of loaded space as the edges of the network
+			if (!this.world.hasChunkAt(pos))
+				return -1;
+			index = this.positions.size();
+			this.indexByPos.put(packedPos, index);
+			this.positions.add(packedPos);
+			this.states.add(this.world.getBlockState(pos));
+		}
+		return index;
+	}
+
+	protected void collectLinks(int index)
+	{
+		BlockPos pos = BlockPos.of(this.positions.getLong(index));
+		long wireLinks = this.graph != null
+			? this.graph.getCachedLinks(this.world, pos)
+			: WireGraph.computeLinks(this.world, pos);
+		BlockPos.Mutable mutaPos = pos.mutable();
+
+		for (int side=0; side<6; side++)
+		{
+			this.linkStarts.add(this.links.size());
+			if (!WireGraph.hasFace(wireLinks, side))
+				continue;
+
+			Direction attachmentDirection = Direction.from3DDataValue(side);
+			// for the four sides that are neither attachmentSide nor its opposite
+			for (int orthagonal=0; orthagonal<4; orthagonal++)
+			{
+				int neighborSide = DirectionHelper.uncompressSecondSide(side, orthagonal);
+				// subwires on orthagonal faces of the same block are always connected
+				if (WireGraph.hasFace(wireLinks, neighborSide))
+				{
+					this.links.add(index*6 + neighborSide);
+				}
+				else if (WireGraph.hasLateralLink(wireLinks, side, orthagonal))
+				{
+					// neighbor has a wire on the same face as us
+					mutaPos.setWithOffset(pos, Direction.from3DDataValue(neighborSide));
+					this.addLink(this.getOrAddPosition(mutaPos), side);
+				}
+				else if (WireGraph.hasDiagonalLink(wireLinks, side, orthagonal))
+				{
+					// neighbor has a wire wrapping around the edge of the block we're attached to
+					Direction directionToNeighbor = Direction.from3DDataValue(neighborSide);
+					mutaPos.setWithOffset(pos, directionToNeighbor).move(attachmentDirection);
+					this.addLink(this.getOrAddPosition(mutaPos), directionToNeighbor.getOpposite().ordinal());
+				}
+			}
+		}
+	}
+
+	private void addLink(int neighborIndex, int neighborSide)
+	{
+		// linked positions in chunks that aren't loaded aren't part of the network
+		if (neighborIndex >= 0)
+		{
+			this.links.add(neighborIndex*6 + neighborSide);
+		}
+	}
+
+	protected int[] gatherSourcePower()
+	{
+		int[] sourcePower = new int[this.positions.size()*6];
+		WireNetwork previousNetwork = GATHERING_NETWORK.get();
+		GATHERING_NETWORK.set(this);
+		try
+		{
+			Map<Block,WireConnector> connectors = MoreRedAPI.getWireConnectabilityRegistry();
+			Map<Block,ExpandedPowerSupplier> expandedPowerSuppliers = MoreRedAPI.getExpandedPowerRegistry();
+			// wires in unloaded chunks aren't part of the network, but keep giving the power they had when they unloaded
+			@Nullable WireBoundaryCache boundaries = this.world instanceof ServerWorld ? WireBoundaryCache.get((ServerWorld)this.world) : null;
+			int positionCount = this.positions.size();
+			for (int i=0; i<positionCount; i++)
+			{
+				BlockPos pos = BlockPos.of(this.positions.getLong(i));
+				BlockState state = this.states.get(i);
+				for (int side=0; side<6; side++)
+				{
+					if (state.getValue(AbstractWireBlock.INTERIOR_FACES[side]))
+					{
+						int power = this.getSourcePower(pos, state, side, connectors, expandedPowerSuppliers);
+						sourcePower[i*6 + side] = boundaries == null ? power : Math.max(power, boundaries.getIncomingPower(pos, side));
+					}
+				}
+			}
+		}
+		finally
+		{
+			GATHERING_NETWORK.set(previousNetwork);
+		}
+		return sourcePower;
+	}
+
+	/**
+	 * Gets the power a subwire receives from blocks that aren't part of this network
+	 */
+	protected int getSourcePower(BlockPos wirePos, BlockState wireState, int attachmentSide, Map<Block,WireConnector> connectors, Map<Block,ExpandedPowerSupplier> expandedPowerSuppliers)
+	{
+		World world = this.world;
+		boolean useIndirectPower = this.block.useIndirectPower;
+		WireConnector defaultConnector = MoreRedAPI.getDefaultWireConnector();
+		ExpandedPowerSupplier defaultPowerSupplier = MoreRedAPI.getDefaultExpandedPowerSupplier();
+		Direction attachmentDirection = Direction.from3DDataValue(attachmentSide);
+		BlockPos.Mutable mutaPos = wirePos.mutable();
+
+		int power = 0;
+		// always get power from attached faces, those are full cubes and may supply conducted power
+		mutaPos.setWithOffset(wirePos, attachmentDirection);
+		if (world.hasChunkAt(mutaPos))
+		{
+			BlockState attachedNeighborState = world.getBlockState(mutaPos);
+			int weakNeighborPower = attachedNeighborState.getSignal(world, mutaPos, attachmentDirection);
+			int neighborPower = useIndirectPower && attachedNeighborState.shouldCheckWeakPower(world, mutaPos, attachmentDirection)
+				? Math.max(weakNeighborPower, world.getDirectSignalTo(mutaPos))
+				: weakNeighborPower;
+			power = Math.max(power, neighborPower*2 - 1);
+		}
+		// for the four sides that are neither attachmentSide nor its opposite
+		for (int orthagonal = 0; orthagonal < 4; orthagonal++)
+		{
+			int neighborSide = DirectionHelper.uncompressSecondSide(attachmentSide, orthagonal);
+			Direction directionToNeighbor = Direction.from3DDataValue(neighborSide);
+			mutaPos.setWithOffset(wirePos, directionToNeighbor);
+			if (!world.hasChunkAt(mutaPos))
+				continue;
+			BlockState neighborState = world.getBlockState(mutaPos);
+			Block neighborBlock = neighborState.getBlock();
+			// wires of our own block are part of the network, their power is handled by the solver
+			if (neighborBlock == this.block)
+				continue;
+			WireConnector connector = connectors.getOrDefault(neighborBlock, defaultConnector);
+			if (connector.canConnectToAdjacentWire(world, mutaPos, neighborState, wirePos, wireState, attachmentDirection, directionToNeighbor.getOpposite()))
+			{
+				ExpandedPowerSupplier expandedPowerSupplier = expandedPowerSuppliers.getOrDefault(neighborBlock, defaultPowerSupplier);
+				int expandedWeakNeighborPower = expandedPowerSupplier.getExpandedPower(world, mutaPos, neighborState, wirePos, wireState, attachmentDirection, directionToNeighbor);
+				int expandedNeighborPower = useIndirectPower && neighborState.shouldCheckWeakPower(world, mutaPos, directionToNeighbor)
+					? Math.max(expandedWeakNeighborPower, world.getDirectSignalTo(mutaPos)*2)
+					: expandedWeakNeighborPower;
+				power = Math.max(power, expandedNeighborPower-1);
+			}
+		}
+		return power;
+	}
+
+	protected void applyPower(int[] power)
+	{
+		IntArrayList changedPositions = new IntArrayList();
+		int positionCount = this.positions.size();
+		for (int i=0; i<positionCount; i++)
+		{
+			BlockPos pos = BlockPos.of(this.positions.getLong(i));
+			WirePowerInChunk storage = WirePowerInChunk.get(this.world, pos);
+			if (storage != null)
+			{
+				boolean changed = false;
+				for (int side=0; side<6; side++)
+				{
+					// evaluate setPower first so every face gets set
+					changed = storage.setPower(this.world, pos, side, power[i*6 + side]) || changed;
+				}
+				if (changed)
+				{
+					changedPositions.add(i);
+				}
+			}
+		}
+
+		if (!changedPositions.isEmpty() && !this.world.isClientSide)
+		{
+			this.notifyExternalNeighbors(changedPositions);
+		}
+	}
+
+	/**
+	 * Notifies the blocks around the changed positions of the network (and the second-degree neighbors of any conducting blocks)
+	 * that our power changed. Each external block is only notified once,
+	 * and blocks within the network aren't notified at all, as the solver already accounted for them.
+	 * @param changedPositions indices of the positions whose power changed
+	 */
+	protected void notifyExternalNeighbors(IntArrayList changedPositions)
+	{
+		World world = this.world;
+		Block block = this.block;
+		NeighborUpdateQueue queue = NeighborUpdateQueue.get(world);
+		LongOpenHashSet notifiedPositions = new LongOpenHashSet();
+		LongOpenHashSet notifiedConductors = new LongOpenHashSet();
+		EnumSet<Direction> allDirections = EnumSet.allOf(Direction.class);
+
+		queue.beginPropagation();
+		try
+		{
+			int changedCount = changedPositions.size();
+			for (int changed=0; changed<changedCount; changed++)
+			{
+				int index = changedPositions.getInt(changed);
+				BlockPos wirePos = BlockPos.of(this.positions.getLong(index));
+				BlockState wireState = this.states.get(index);
+				if (net.minecraftforge.event.ForgeEventFactory.onNeighborNotify(world, wirePos, wireState, allDirections, false).isCanceled())
+					continue;
+
+				for (Direction dir : Direction.values())
+				{
+					BlockPos neighborPos = wirePos.relative(dir);
+					if (this.contains(neighborPos))
+						continue;
+					// if a given neighbor block conducts strong power,
+					// then we should notify second-degree neighbors as well
+					boolean doSecondaryNeighborUpdates = world.getBlockState(neighborPos).shouldCheckWeakPower(world, neighborPos, dir);
+					if (notifiedPositions.add(neighborPos.asLong()))
+					{
+						queue.enqueue(world, neighborPos, block, wirePos);
+					}
+					if (doSecondaryNeighborUpdates && notifiedConductors.add(neighborPos.asLong()))
+					{
+						this.notifyNeighborsOfConductor(queue, neighborPos, notifiedPositions);
+					}
+				}
+			}
+		}
+		finally
+		{
+			queue.endPropagation(world);
+		}
+	}
+
+	protected void notifyNeighborsOfConductor(NeighborUpdateQueue queue, BlockPos conductorPos, LongOpenHashSet notifiedPositions)
+	{
+		EnumSet<Direction> updateDirections = EnumSet.allOf(Direction.class);
+		if (net.minecraftforge.event.ForgeEventFactory.onNeighborNotify(this.world, conductorPos, this.world.getBlockState(conductorPos), updateDirections, false).isCanceled())
+			return;
+		for (Direction dir : NeighborUpdateQueue.NEIGHBOR_UPDATE_ORDER)
+		{
+			BlockPos secondaryPos = conductorPos.relative(dir);
+			if (!this.contains(secondaryPos) && notifiedPositions.add(secondaryPos.asLong()))
+			{
+				queue.enqueue(this.world, secondaryPos, this.block, conductorPos);
+			}
+		}
+	}
+}
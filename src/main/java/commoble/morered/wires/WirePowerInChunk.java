@@ -0,0 +1,498 @@
+package commoble.morered.wires;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.annotation.Nullable;
+
+import commoble.morered.TileEntityRegistrar;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.INBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.IWorldReader;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.common.util.INBTSerializable;
+import net.minecraftforge.common.util.LazyOptional;
+
+/**
+ * Chunk capability holding the power of the red alloy wires and colored cables in a chunk, so they don't need tile entities to store it.
+ *
+ * Each of the chunk's sixteen sections has a sorted array of longs, one per wire with any power,
+ * holding the wire's section-local index (y << 8 | z << 4 | x) in the high int and six five-bit power values in the low int.
+ * Wires without power have no entry, so unpowered wires cost nothing; this is also the format the sections are saved in.
+ *
+ * Changing the power of a wire that already has an entry writes the entry in place,
+ * adding or removing an entry replaces the section's array.
+ * On the client, chunk rendering threads read power for wire tinting while the main thread writes it.
+ * Writes hold a StampedLock's write lock; reads are optimistic and retry under the read lock if a write happened meanwhile.
+ */
+public class WirePowerInChunk implements ICapabilityProvider, INBTSerializable<CompoundNBT>
+{
+	public static final int SECTIONS = 16;
+	public static final int POWER_BITS = 5;
+	public static final int POWER_MASK = (1 << POWER_BITS) - 1;
+	public static final int MAX_POWER = POWER_MASK;
+	private static final long[] EMPTY_SECTION = new long[0];
+
+	private final LazyOptional<WirePowerInChunk> holder = LazyOptional.of(() -> this);
+
+	private final @Nullable Chunk chunk;
+	private final long[][] sections = new long[SECTIONS][];
+	private final StampedLock lock = new StampedLock();
+
+	public WirePowerInChunk(@Nullable Chunk chunk)
+	{
+		this.chunk = chunk;
+		Arrays.fill(this.sections, EMPTY_SECTION);
+	}
+
+	@Override
+	public <T> LazyOptional<T> getCapability(Capability<T> cap, Direction side)
+	{
+		if (cap == WirePowerInChunkCapability.INSTANCE)
+		{
+			return WirePowerInChunkCapability.INSTANCE.orEmpty(cap, this.holder);
+		}
+		else
+		{
+			return LazyOptional.empty();
+		}
+	}
+
+	/**
+	 * Gets the power storage of the chunk a position is in
+	 * @param world A world, or any other reader that can look up loaded chunks
+	 * @param pos A position in the world
+	 * @return The power storage of the loaded chunk containing the position, or null if the chunk isn't loaded
+	 */
+	@Nullable
+	public static WirePowerInChunk get(IBlockReader world, BlockPos pos)
+	{
+		if (!(world instanceof IWorldReader) || World.isOutsideBuildHeight(pos))
+			return null;
+		IChunk chunk = ((IWorldReader)world).getChunk(pos.getX() >> 4, pos.getZ() >> 4, ChunkStatus.FULL, false);
+		if (!(chunk instanceof ICapabilityProvider))
+			return null;
+		return ((ICapabilityProvider)chunk).getCapability(WirePowerInChunkCapability.INSTANCE).orElse(null);
+	}
+
+	/**
+	 * @param world The world the wire is in
+	 * @param pos The position of the wire
+	 * @param side The ordinal of the attachment direction of the subwire
+	 * @return The power of the subwire, or 0 if the wire's chunk isn't loaded
+	 */
+	public static int getPower(IBlockReader world, BlockPos pos, int side)
+	{
+		WirePowerInChunk storage = get(world, pos);
+		return storage == null ? 0 : storage.getPower(pos, side);
+	}
+
+	/**
+	 * Sets the power of a subwire, syncing it to clients if the world is a server world
+	 * @param world The world the wire is in
+	 * @param pos The position of the wire
+	 * @param side The ordinal of the attachment direction of the subwire
+	 * @param newPower The power value to set the subwire's power to
+	 * @return True if the power changed, false if it didn't (or the wire's chunk isn't loaded)
+	 */
+	public static boolean setPower(World world, BlockPos pos, int side, int newPower)
+	{
+		WirePowerInChunk storage = get(world, pos);
+		return storage != null && storage.setPower(world, pos, side, newPower);
+	}
+
+	/**
+	 * Sets all six power values of a wire without syncing or causing updates
+	 * @param world The world the wire is in
+	 * @param pos The position of the wire
+	 * @param power Array of six power values
+	 */
+	public static void setPowerRaw(IBlockReader world, BlockPos pos, int[] power)
+	{
+		WirePowerInChunk storage = get(world, pos);
+		if (storage != null)
+		{
+			storage.setPackedPower(pos, pack(power));
+			storage.markUnsaved();
+			WireSignalCache.invalidate(world, pos);
+		}
+	}
+
+	/**
+	 * Forgets the power of a wire that has been removed
+	 * @param world The world the wire was in
+	 * @param pos The position of the wire
+	 */
+	public static void clearPower(IBlockReader world, BlockPos pos)
+	{
+		WirePowerInChunk storage = get(world, pos);
+		if (storage != null && storage.setPackedPower(pos, 0))
+		{
+			storage.markUnsaved();
+			WireSignalCache.invalidate(world, pos);
+		}
+	}
+
+	/**
+	 * Moves the power of wires saved before power was stored per chunk out of their tile entities' data and into a chunk's storage.
+	 * Red alloy wires don't have tile entities anymore, so their tile entity data is removed entirely.
+	 * @param chunk The chunk being loaded
+	 * @param levelNBT The chunk's "Level" data, before its tile entities are loaded
+	 */
+	public static void migrateLegacyPower(Chunk chunk, CompoundNBT levelNBT)
+	{
+		ListNBT tileEntities = levelNBT.getList("TileEntities", Constants.NBT.TAG_COMPOUND);
+		if (tileEntities.isEmpty())
+			return;
+		String wireID = TileEntityRegistrar.WIRE.getId().toString();
+		String cableID = TileEntityRegistrar.COLORED_NETWORK_CABLE.getId().toString();
+		WirePowerInChunk storage = null;
+		Iterator<INBT> iterator = tileEntities.iterator();
+		while (iterator.hasNext())
+		{
+			INBT element = iterator.next();
+			if (!(element instanceof CompoundNBT))
+				continue;
+			CompoundNBT teNBT = (CompoundNBT)element;
+			String id = teNBT.getString("id");
+			boolean isWire = wireID.equals(id);
+			if (!isWire && !cableID.equals(id))
+				continue;
+			int[] power = teNBT.getIntArray(WireTileEntity.POWER);
+			if (power.length == 6)
+			{
+				if (storage == null)
+				{
+					storage = chunk.getCapability(WirePowerInChunkCapability.INSTANCE).orElse(null);
+					if (storage == null)
+						return;
+				}
+				BlockPos pos = new BlockPos(teNBT.getInt("x"), teNBT.getInt("y"), teNBT.getInt("z"));
+				if (!World.isOutsideBuildHeight(pos))
+				{
+					storage.setPackedPower(pos, pack(power));
+				}
+			}
+			if (isWire)
+			{
+				iterator.remove();
+			}
+			else
+			{
+				teNBT.remove(WireTileEntity.POWER);
+			}
+		}
+		if (storage != null)
+		{
+			storage.markUnsaved();
+		}
+	}
+
+	public static int pack(int[] power)
+	{
+		int packed = 0;
+		for (int side=0; side<6; side++)
+		{
+			packed |= (power[side] & POWER_MASK) << (side * POWER_BITS);
+		}
+		return packed;
+	}
+
+	public static int getLocalIndex(BlockPos pos)
+	{
+		return ((pos.getY() & 15) << 8) | ((pos.getZ() & 15) << 4) | (pos.getX() & 15);
+	}
+
+	public int getPackedPower(BlockPos pos)
+	{
+		int sectionY = pos.getY() >> 4;
+		int localIndex = getLocalIndex(pos);
+		long stamp = this.lock.tryOptimisticRead();
+		int packedPower = this.findPackedPower(sectionY, localIndex);
+		if (!this.lock.validate(stamp))
+		{
+			stamp = this.lock.readLock();
+			try
+			{
+				packedPower = this.findPackedPower(sectionY, localIndex);
+			}
+			finally
+			{
+				this.lock.unlockRead(stamp);
+			}
+		}
+		return packedPower;
+	}
+
+	private int findPackedPower(int sectionY, int localIndex)
+	{
+		long[] section = this.sections[sectionY];
+		int i = findEntry(section, localIndex);
+		return i < 0 ? 0 : (int)section[i];
+	}
+
+	public int getPower(BlockPos pos, int side)
+	{
+		return (this.getPackedPower(pos) >>> (side * POWER_BITS)) & POWER_MASK;
+	}
+
+	/**
+	 * Sets the power of a subwire, invalidating cached signals and queueing a sync on servers, or rerendering the wire on clients
+	 * @param world The world this storage's chunk is in
+	 * @param pos The position of the wire
+	 * @param side The ordinal of the attachment direction of the subwire
+	 * @param newPower The power value to set the subwire's power to
+	 * @return True if the power changed, false if it didn't
+	 */
+	public boolean setPower(World world, BlockPos pos, int side, int newPower)
+	{
+		int shift = side * POWER_BITS;
+		int oldPacked = this.getPackedPower(pos);
+		int newPacked = (oldPacked & ~(POWER_MASK << shift)) | ((Math.min(newPower, MAX_POWER) & POWER_MASK) << shift);
+		if (oldPacked == newPacked)
+			return false;
+		this.setPackedPower(pos, newPacked);
+		if (world instanceof ServerWorld)
+		{
+			ServerWorld serverWorld = (ServerWorld)world;
+			this.markUnsaved();
+			WireSignalCache.get(serverWorld).invalidate(pos);
+			// power changes are batched per chunk and synced to clients at the end of the tick
+			WireUpdateBuffer.get(serverWorld).enqueuePower(pos, side);
+		}
+		else
+		{
+			BlockState state = world.getBlockState(pos);
+			// client world: only flag 8 (bit 4) is checked (rerender on main thread)
+			world.sendBlockUpdated(pos, state, state, 0);
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the power of the faces included in a power sync packet and rerenders the wire if anything changed (called on the client)
+	 * @param world The client world
+	 * @param pos The position of the wire
+	 * @param faceFlags Flags of the faces to set the power of (bit n set if face n is included)
+	 * @param newPower Array of six power values, only the included faces are read
+	 * @return True if any power changed, false otherwise
+	 */
+	public boolean applySyncedPower(World world, BlockPos pos, int faceFlags, int[] newPower)
+	{
+		int packed = this.getPackedPower(pos);
+		for (int side=0; side<6; side++)
+		{
+			if ((faceFlags & (1 << side)) != 0)
+			{
+				int shift = side * POWER_BITS;
+				packed = (packed & ~(POWER_MASK << shift)) | ((newPower[side] & POWER_MASK) << shift);
+			}
+		}
+		if (this.setPackedPower(pos, packed))
+		{
+			BlockState state = world.getBlockState(pos);
+			world.sendBlockUpdated(pos, state, state, 0);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the packed power of a wire without any side effects, adding or removing its entry as needed
+	 * @param pos The position of the wire
+	 * @param packedPower Six five-bit power values, lowest face first
+	 * @return True if the packed power changed
+	 */
+	public boolean setPackedPower(BlockPos pos, int packedPower)
+	{
+		int sectionY = pos.getY() >> 4;
+		int localIndex = getLocalIndex(pos);
+		long stamp = this.lock.writeLock();
+		try
+		{
+			long[] section = this.sections[sectionY];
+			int i = findEntry(section, localIndex);
+			if (i >= 0)
+			{
+				if ((int)section[i] == packedPower)
+					return false;
+				if (packedPower != 0)
+				{
+					section[i] = makeEntry(localIndex, packedPower);
+				}
+				else
+				{
+					long[] newSection = section.length == 1 ? EMPTY_SECTION : new long[section.length - 1];
+					System.arraycopy(section, 0, newSection, 0, i);
+					System.arraycopy(section, i+1, newSection, i, section.length - i - 1);
+					this.sections[sectionY] = newSection;
+				}
+				return true;
+			}
+			else if (packedPower != 0)
+			{
+				int insertion = -i - 1;
+				long[] newSection = new long[section.length + 1];
+				System.arraycopy(section, 0, newSection, 0, insertion);
+				newSection[insertion] = makeEntry(localIndex, packedPower);
+				System.arraycopy(section, insertion, newSection, insertion+1, section.length - insertion);
+				this.sections[sectionY] = newSection;
+				return true;
+			}
+			return false;
+		}
+		finally
+		{
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param sectionY The section's index in the chunk, in [0,16)
+	 * @return A copy of the section's entries, sorted by local index
+	 */
+	public long[] getSection(int sectionY)
+	{
+		long stamp = this.lock.readLock();
+		try
+		{
+			long[] section = this.sections[sectionY];
+			return section.length == 0 ? EMPTY_SECTION : section.clone();
+		}
+		finally
+		{
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Replaces a section's entries, e.g. when loading
+	 * @param sectionY The section's index in the chunk, in [0,16)
+	 * @param entries The new entries; they are sorted, and entries for the same wire or with no power are dropped
+	 */
+	public void setSection(int sectionY, long[] entries)
+	{
+		long[] sorted = entries.clone();
+		Arrays.sort(sorted);
+		int count = 0;
+		for (long entry : sorted)
+		{
+			if ((int)entry == 0 || (entry >>> 32) >= 4096)
+				continue;
+			if (count > 0 && (sorted[count-1] >>> 32) == (entry >>> 32))
+				continue;
+			sorted[count++] = entry;
+		}
+		long[] newSection = count == 0 ? EMPTY_SECTION : Arrays.copyOf(sorted, count);
+		long stamp = this.lock.writeLock();
+		try
+		{
+			this.sections[sectionY] = newSection;
+		}
+		finally
+		{
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	public void clear()
+	{
+		long stamp = this.lock.writeLock();
+		try
+		{
+			Arrays.fill(this.sections, EMPTY_SECTION);
+		}
+		finally
+		{
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return The number of wires with any power in the chunk
+	 */
+	public int size()
+	{
+		long stamp = this.lock.readLock();
+		try
+		{
+			int size = 0;
+			for (long[] section : this.sections)
+			{
+				size += section.length;
+			}
+			return size;
+		}
+		finally
+		{
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	protected void markUnsaved()
+	{
+		if (this.chunk != null)
+		{
+			this.chunk.setUnsaved(true);
+		}
+	}
+
+	public static long makeEntry(int localIndex, int packedPower)
+	{
+		return ((long)localIndex << 32) | (packedPower & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Binary searches a section for a wire's entry
+	 * @param section A section's sorted entries
+	 * @param localIndex The section-local index of the wire
+	 * @return The index of the entry if present, otherwise (-(insertion point) - 1)
+	 */
+	public static int findEntry(long[] section, int localIndex)
+	{
+		int low = 0;
+		int high = section.length - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int midIndex = (int)(section[mid] >>> 32);
+			if (midIndex < localIndex)
+				low = mid + 1;
+			else if (midIndex > localIndex)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	@Override
+	public CompoundNBT serializeNBT()
+	{
+		return (CompoundNBT)WirePowerInChunkCapability.INSTANCE.getStorage().writeNBT(WirePowerInChunkCapability.INSTANCE, this, null);
+	}
+
+	@Override
+	public void deserializeNBT(CompoundNBT nbt)
+	{
+		WirePowerInChunkCapability.INSTANCE.getStorage().readNBT(WirePowerInChunkCapability.INSTANCE, this, null, nbt);
+	}
+
+	public void onCapabilityInvalidated()
+	{
+		this.holder.invalidate();
+	}
+}
@@ -0,0 +1,56 @@
+package commoble.morered.wires;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.INBT;
+import net.minecraft.util.Direction;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.util.Constants;
+
+public class WirePowerInChunkCapability
+{
+	/** Don't get the default WirePowerInChunk instance from this, it has no chunk and won't mark anything as needing saving **/
+	@CapabilityInject(WirePowerInChunk.class)
+	public static Capability<WirePowerInChunk> INSTANCE = null;
+
+	public static class Storage implements Capability.IStorage<WirePowerInChunk>
+	{
+		// one long array per section that has any powered wires, keyed by the section's index in the chunk
+		public static final String SECTIONS = "sections";
+
+		// this must return a CompoundNBT
+		@Override
+		public INBT writeNBT(Capability<WirePowerInChunk> capability, WirePowerInChunk instance, Direction side)
+		{
+			CompoundNBT nbt = new CompoundNBT();
+			CompoundNBT sections = new CompoundNBT();
+			for (int sectionY=0; sectionY<WirePowerInChunk.SECTIONS; sectionY++)
+			{
+				long[] section = instance.getSection(sectionY);
+				if (section.length > 0)
+				{
+					sections.putLongArray(String.valueOf(sectionY), section);
+				}
+			}
+			nbt.put(SECTIONS, sections);
+			return nbt;
+		}
+
+		@Override
+		public void readNBT(Capability<WirePowerInChunk> capability, WirePowerInChunk instance, Direction side, INBT nbt)
+		{
+			if (nbt instanceof CompoundNBT)
+			{
+				CompoundNBT sections = ((CompoundNBT)nbt).getCompound(SECTIONS);
+				for (int sectionY=0; sectionY<WirePowerInChunk.SECTIONS; sectionY++)
+				{
+					String key = String.valueOf(sectionY);
+					if (sections.contains(key, Constants.NBT.TAG_LONG_ARRAY))
+					{
+						instance.setSection(sectionY, sections.getLongArray(key));
+					}
+				}
+			}
+		}
+	}
+}
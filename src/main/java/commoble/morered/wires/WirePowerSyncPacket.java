@@ -0,0 +1,144 @@
+package commoble.morered.wires;
+
+import java.util.function.Supplier;
+
+import commoble.morered.client.ClientPacketHandlers;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraftforge.fml.network.NetworkEvent;
+
+/**
+ * Packet sent to clients to sync the power of the wires in a chunk that changed power since the last sync,
+ * or all of the powered wires in a chunk when a player starts watching it (in which case the client forgets the power of wires not in the packet).
+ *
+ * Wires are identified by their index within the chunk (y << 8 | z << 4 | x), sorted in ascending order
+ * so that each index can be written as a small varint delta from the previous one.
+ * Each wire then has a byte of face flags (bit n set if face n is included),
+ * followed by a varint containing the five-bit power values of the included faces, lowest face first.
+ */
+public class WirePowerSyncPacket
+{
+	public static final int POWER_BITS = 5;
+	public static final int POWER_MASK = (1 << POWER_BITS) - 1;
+	public static final byte ALL_FACES = 0b111111;
+
+	private final ChunkPos chunkPos;	public ChunkPos getChunkPos() { return this.chunkPos; }
+	private final boolean fullChunk;	public boolean isFullChunk() { return this.fullChunk; }
+	private final int count;	public int getCount() { return this.count; }
+	// sorted chunk-local indices
+	private final int[] localIndices;
+	private final byte[] faceFlags;
+	private final int[] packedPower;
+
+	/**
+	 * @param chunkPos The chunk the wires are in
+	 * @param fullChunk Whether the packet has every powered wire in the chunk
+	 * @param count The number of wires in the packet
+	 * @param localIndices Chunk-local indices of the wires (y << 8 | z << 4 | x), in ascending order
+	 * @param faceFlags Flags of the faces whose power is included for each wire
+	 * @param packedPower Five-bit power values of the included faces for each wire, lowest face first
+	 */
+	public WirePowerSyncPacket(ChunkPos chunkPos, boolean fullChunk, int count, int[] localIndices, byte[] faceFlags, int[] packedPower)
+	{
+		this.chunkPos = chunkPos;
+		this.fullChunk = fullChunk;
+		this.count = count;
+		this.localIndices = localIndices;
+		this.faceFlags = faceFlags;
+		this.packedPower = packedPower;
+	}
+
+	public static int getLocalIndex(BlockPos pos)
+	{
+		return ((pos.getY() & 0xFF) << 8) | ((pos.getZ() & 15) << 4) | (pos.getX() & 15);
+	}
+
+	public BlockPos getPos(int i)
+	{
+		int localIndex = this.localIndices[i];
+		return new BlockPos(this.chunkPos.getMinBlockX() + (localIndex & 15), localIndex >> 8, this.chunkPos.getMinBlockZ() + ((localIndex >> 4) & 15));
+	}
+
+	public int getFaceFlags(int i)
+	{
+		return this.faceFlags[i];
+	}
+
+	/**
+	 * Unpacks the power values of the i-th wire in the packet into an array
+	 * @param i The index of the wire in the packet
+	 * @param power Array of six power values to unpack into; only the included faces are written to
+	 */
+	public void getPower(int i, int[] power)
+	{
+		int flags = this.faceFlags[i];
+		int packed = this.packedPower[i];
+		for (int side=0; side<6; side++)
+		{
+			if ((flags & (1 << side)) != 0)
+			{
+				power[side] = packed & POWER_MASK;
+				packed >>>= POWER_BITS;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of bytes this packet's payload takes when written, not counting the channel's overhead
+	 */
+	public int getEncodedSize()
+	{
+		int size = PacketBuffer.getVarIntSize(this.chunkPos.x) + PacketBuffer.getVarIntSize(this.chunkPos.z) + 1 + PacketBuffer.getVarIntSize(this.count);
+		int previousIndex = 0;
+		for (int i=0; i<this.count; i++)
+		{
+			size += PacketBuffer.getVarIntSize(this.localIndices[i] - previousIndex) + 1 + PacketBuffer.getVarIntSize(this.packedPower[i]);
+			previousIndex = this.localIndices[i];
+		}
+		return size;
+	}
+
+	public void write(PacketBuffer buffer)
+	{
+		buffer.writeVarInt(this.chunkPos.x);
+		buffer.writeVarInt(this.chunkPos.z);
+		buffer.writeBoolean(this.fullChunk);
+		buffer.writeVarInt(this.count);
+		int previousIndex = 0;
+		for (int i=0; i<this.count; i++)
+		{
+			buffer.writeVarInt(this.localIndices[i] - previousIndex);
+			previousIndex = this.localIndices[i];
+			buffer.writeByte(this.faceFlags[i]);
+			buffer.writeVarInt(this.packedPower[i]);
+		}
+	}
+
+	public static WirePowerSyncPacket read(PacketBuffer buffer)
+	{
+		ChunkPos chunkPos = new ChunkPos(buffer.readVarInt(), buffer.readVarInt());
+		boolean fullChunk = buffer.readBoolean();
+		// a chunk can't have more wires than positions
+		int count = Math.max(0, Math.min(16*16*256, buffer.readVarInt()));
+		int[] localIndices = new int[count];
+		byte[] faceFlags = new byte[count];
+		int[] packedPower = new int[count];
+		int previousIndex = 0;
+		for (int i=0; i<count; i++)
+		{
+			previousIndex += buffer.readVarInt();
+			localIndices[i] = previousIndex;
+			faceFlags[i] = buffer.readByte();
+			packedPower[i] = buffer.readVarInt();
+		}
+		return new WirePowerSyncPacket(chunkPos, fullChunk, count, localIndices, faceFlags, packedPower);
+	}
+
+	public void handle(Supplier<NetworkEvent.Context> contextGetter)
+	{
+		NetworkEvent.Context context = contextGetter.get();
+		context.enqueueWork(() -> ClientPacketHandlers.onWirePowerSyncPacket(this));
+		context.setPacketHandled(true);
+	}
+}
@@ -0,0 +1,159 @@
+package commoble.morered.wires;
+
+import javax.annotation.Nonnull;
+
+import commoble.morered.MoreRedProfiler;
+import commoble.morered.ServerConfig;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+
+/**
+ * Limits how much wire power updating can happen in one tick when the power update budget is enabled in the server config.
+ *
+ * Work is measured in wire positions updated (a network solve costs as many units as positions in the network),
+ * not in time, so that the same builds always defer the same updates.
+ * Once a tick's budget is spent, further power updates are deferred to a queue instead of running;
+ * at the start of each tick, deferred updates are run in the order they were first deferred, up to that tick's budget.
+ * A position can only be in the queue once, so the queue never holds more than one entry per loaded wire block,
+ * and any backlog clears within (backlog size / budget) ticks once the inputs stop changing.
+ */
+public class WirePropagationScheduler extends WorldSavedData
+{
+	public static final String ID = "morered:wirepropagationscheduler";
+
+	private final LongLinkedOpenHashSet deferredPositions = new LongLinkedOpenHashSet();
+	private long workThisTick = 0;
+
+	private long deferredUpdates = 0;
+	public long getDeferredUpdates() { return this.deferredUpdates; }
+
+	private long resumedUpdates = 0;
+	public long getResumedUpdates() { return this.resumedUpdates; }
+
+	private int largestBacklog = 0;
+	public int getLargestBacklog() { return this.largestBacklog; }
+
+	private long ticksWithBacklog = 0;
+	public long getTicksWithBacklog() { return this.ticksWithBacklog; }
+
+	public int getBacklog() { return this.deferredPositions.size(); }
+
+	public WirePropagationScheduler()
+	{
+		super(ID);
+	}
+
+	public static WirePropagationScheduler get(@Nonnull ServerWorld world)
+	{
+		return world.getDataStorage().computeIfAbsent(WirePropagationScheduler::new, ID);
+	}
+
+	/**
+	 * Runs a wire block's power update now if this tick's budget allows it, or defers it to a later tick
+	 * @param world The world the wire is in
+	 * @param wireBlock The wire block to update
+	 * @param wirePos The position of the wire block
+	 * @param wireState The wire's blockstate
+	 */
+	public static void updatePower(World world, AbstractWireBlock wireBlock, BlockPos wirePos, BlockState wireState)
+	{
+		if (world instanceof ServerWorld)
+		{
+			// the network this position belongs to is being solved off-thread, the update runs once that's done
+			if (AsyncNetworkSolver.get((ServerWorld)world).holdPowerUpdate(wirePos))
+				return;
+			WireBulkEdit bulkEdit = WireBulkEdit.get((ServerWorld)world);
+			if (bulkEdit.isOpen())
+			{
+				bulkEdit.deferPowerUpdate(wirePos);
+				return;
+			}
+		}
+		if (world instanceof ServerWorld && ServerConfig.INSTANCE.budget_power_updates.get())
+		{
+			WirePropagationScheduler scheduler = get((ServerWorld)world);
+			if (scheduler.workThisTick >= ServerConfig.INSTANCE.power_update_budget.get())
+			{
+				scheduler.defer(wirePos);
+				return;
+			}
+			// count at least one unit up front, so updates that recursively cause more updates see it
+			scheduler.workThisTick++;
+		}
+		long startNanos = MoreRedProfiler.startTiming();
+		wireBlock.updatePowerAfterBlockUpdate(world, wirePos, wireState);
+		MoreRedProfiler.recordPowerUpdate(world, wirePos, startNanos);
+	}
+
+	/**
+	 * Adds work to the current tick's total; used by updates that touch more than one position
+	 * @param world The world the work was done in
+	 * @param work Amount of work done beyond the one unit every update costs
+	 */
+	public static void addWork(World world, int work)
+	{
+		if (world instanceof ServerWorld && ServerConfig.INSTANCE.budget_power_updates.get())
+		{
+			get((ServerWorld)world).workThisTick += work;
+		}
+	}
+
+	protected void defer(BlockPos pos)
+	{
+		if (this.deferredPositions.add(pos.asLong()))
+		{
+			this.deferredUpdates++;
+			this.largestBacklog = Math.max(this.largestBacklog, this.deferredPositions.size());
+		}
+	}
+
+	/**
+	 * Resets the tick's budget and runs as many deferred updates as the budget allows; called at the start of the world tick
+	 * @param world The world to run updates in
+	 */
+	public void onTickStart(ServerWorld world)
+	{
+		this.workThisTick = 0;
+		if (this.deferredPositions.isEmpty())
+			return;
+
+		this.ticksWithBacklog++;
+		boolean budgetEnabled = ServerConfig.INSTANCE.budget_power_updates.get();
+		int budget = ServerConfig.INSTANCE.power_update_budget.get();
+		while (!this.deferredPositions.isEmpty() && (!budgetEnabled || this.workThisTick < budget))
+		{
+			BlockPos pos = BlockPos.of(this.deferredPositions.removeFirstLong());
+			// skip positions that were unloaded or stopped being wires since they were deferred
+			if (!world.hasChunkAt(pos))
+				continue;
+			BlockState state = world.getBlockState(pos);
+			Block block = state.getBlock();
+			if (block instanceof AbstractWireBlock)
+			{
+				this.resumedUpdates++;
+				this.workThisTick++;
+				long startNanos = MoreRedProfiler.startTiming();
+				((AbstractWireBlock)block).updatePowerAfterBlockUpdate(world, pos, state);
+				MoreRedProfiler.recordPowerUpdate(world, pos, startNanos);
+			}
+		}
+	}
+
+	@Override
+	public void load(CompoundNBT nbt)
+	{
+		//noop
+	}
+
+	@Override
+	public CompoundNBT save(CompoundNBT compound)
+	{
+		return compound; //noop
+	}
+}
@@ -0,0 +1,228 @@
+package commoble.morered.wires;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.IWorldReader;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+import net.minecraftforge.common.util.LazyOptional;
+
+/**
+ * Chunk capability holding the expanded shape index (see {@link AbstractWireBlock#getExpandedShapeIndex}) of each wire in a chunk
+ * whose shape has been looked up or updated since the chunk was loaded. It isn't saved; it's dropped along with the chunk.
+ *
+ * Each of the chunk's sixteen sections has a sorted array of longs, one per known wire,
+ * holding the wire's section-local index (y << 8 | z << 4 | x) above the 42 bits of its shape index.
+ *
+ * On the client, chunk meshing threads read shape indices while the main thread writes them.
+ * Writes hold a StampedLock's write lock; reads are optimistic and retry under the read lock if a write happened meanwhile.
+ */
+public class WireShapesInChunk implements ICapabilityProvider
+{
+	public static final int SECTIONS = 16;
+	public static final int SHAPE_INDEX_BITS = 42;
+	public static final long SHAPE_INDEX_MASK = (1L << SHAPE_INDEX_BITS) - 1L;
+	/** Returned by {@link #getShapeIndex} for wires without an entry **/
+	public static final long NO_SHAPE_INDEX = -1L;
+	private static final long[] EMPTY_SECTION = new long[0];
+
+	private final LazyOptional<WireShapesInChunk> holder = LazyOptional.of(() -> this);
+
+	private final long[][] sections = new long[SECTIONS][];
+	private final StampedLock lock = new StampedLock();
+
+	public WireShapesInChunk()
+	{
+		Arrays.fill(this.sections, EMPTY_SECTION);
+	}
+
+	@Override
+	public <T> LazyOptional<T> getCapability(Capability<T> cap, Direction side)
+	{
+		if (cap == WireShapesInChunkCapability.INSTANCE)
+		{
+			return WireShapesInChunkCapability.INSTANCE.orEmpty(cap, this.holder);
+		}
+		else
+		{
+			return LazyOptional.empty();
+		}
+	}
+
+	/**
+	 * Gets the shape index storage of the chunk a position is in
+	 * @param world A world, or any other reader that can look up loaded chunks
+	 * @param pos A position in the world
+	 * @return The shape index storage of the loaded chunk containing the position, or null if the chunk isn't loaded
+	 */
+	@Nullable
+	public static WireShapesInChunk get(IBlockReader world, BlockPos pos)
+	{
+		// the capability isn't injected outside of a running game (e.g. in benchmarks)
+		if (WireShapesInChunkCapability.INSTANCE == null || !(world instanceof IWorldReader) || World.isOutsideBuildHeight(pos))
+			return null;
+		IChunk chunk = ((IWorldReader)world).getChunk(pos.getX() >> 4, pos.getZ() >> 4, ChunkStatus.FULL, false);
+		if (!(chunk instanceof ICapabilityProvider))
+			return null;
+		return ((ICapabilityProvider)chunk).getCapability(WireShapesInChunkCapability.INSTANCE).orElse(null);
+	}
+
+	/**
+	 * @param pos The position of a wire
+	 * @return The wire's shape index, or {@link #NO_SHAPE_INDEX} if it has no entry
+	 */
+	public long getShapeIndex(BlockPos pos)
+	{
+		int sectionY = pos.getY() >> 4;
+		int localIndex = WirePowerInChunk.getLocalIndex(pos);
+		long stamp = this.lock.tryOptimisticRead();
+		long shapeIndex = this.findShapeIndex(sectionY, localIndex);
+		if (!this.lock.validate(stamp))
+		{
+			stamp = this.lock.readLock();
+			try
+			{
+				shapeIndex = this.findShapeIndex(sectionY, localIndex);
+			}
+			finally
+			{
+				this.lock.unlockRead(stamp);
+			}
+		}
+		return shapeIndex;
+	}
+
+	private long findShapeIndex(int sectionY, int localIndex)
+	{
+		long[] section = this.sections[sectionY];
+		int i = findEntry(section, localIndex);
+		return i < 0 ? NO_SHAPE_INDEX : section[i] & SHAPE_INDEX_MASK;
+	}
+
+	/**
+	 * Sets the shape index of a wire, adding an entry if it doesn't have one
+	 * @param pos The position of the wire
+	 * @param shapeIndex The wire's expanded shape index
+	 * @return True if an entry was added, false if an existing entry was written
+	 */
+	public boolean setShapeIndex(BlockPos pos, long shapeIndex)
+	{
+		int sectionY = pos.getY() >> 4;
+		int localIndex = WirePowerInChunk.getLocalIndex(pos);
+		long entry = makeEntry(localIndex, shapeIndex);
+		long stamp = this.lock.writeLock();
+		try
+		{
+			long[] section = this.sections[sectionY];
+			int i = findEntry(section, localIndex);
+			if (i >= 0)
+			{
+				section[i] = entry;
+				return false;
+			}
+			int insertion = -i - 1;
+			long[] newSection = new long[section.length + 1];
+			System.arraycopy(section, 0, newSection, 0, insertion);
+			newSection[insertion] = entry;
+			System.arraycopy(section, insertion, newSection, insertion+1, section.length - insertion);
+			this.sections[sectionY] = newSection;
+			return true;
+		}
+		finally
+		{
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes the entry for a position that no longer has a wire, if it had one
+	 * @param pos The position
+	 * @return True if an entry was removed
+	 */
+	public boolean removeShapeIndex(BlockPos pos)
+	{
+		int sectionY = pos.getY() >> 4;
+		int localIndex = WirePowerInChunk.getLocalIndex(pos);
+		long stamp = this.lock.writeLock();
+		try
+		{
+			long[] section = this.sections[sectionY];
+			int i = findEntry(section, localIndex);
+			if (i < 0)
+				return false;
+			long[] newSection = section.length == 1 ? EMPTY_SECTION : new long[section.length - 1];
+			System.arraycopy(section, 0, newSection, 0, i);
+			System.arraycopy(section, i+1, newSection, i, section.length - i - 1);
+			this.sections[sectionY] = newSection;
+			return true;
+		}
+		finally
+		{
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return The number of wires with a shape index entry in the chunk
+	 */
+	public int size()
+	{
+		long stamp = this.lock.readLock();
+		try
+		{
+			int size = 0;
+			for (long[] section : this.sections)
+			{
+				size += section.length;
+			}
+			return size;
+		}
+		finally
+		{
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public static long makeEntry(int localIndex, long shapeIndex)
+	{
+		return ((long)localIndex << SHAPE_INDEX_BITS) | (shapeIndex & SHAPE_INDEX_MASK);
+	}
+
+	/**
+	 * Binary searches a section for a wire's entry
+	 * @param section A section's sorted entries
+	 * @param localIndex The section-local index of the wire
+	 * @return The index of the entry if present, otherwise (-(insertion point) - 1)
+	 */
+	public static int findEntry(long[] section, int localIndex)
+	{
+		int low = 0;
+		int high = section.length - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int midIndex = (int)(section[mid] >>> SHAPE_INDEX_BITS);
+			if (midIndex < localIndex)
+				low = mid + 1;
+			else if (midIndex > localIndex)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	public void onCapabilityInvalidated()
+	{
+		this.holder.invalidate();
+	}
+}
@@ -0,0 +1,28 @@
+package commoble.morered.wires;
+
+import net.minecraft.nbt.INBT;
+import net.minecraft.util.Direction;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+
+public class WireShapesInChunkCapability
+{
+	@CapabilityInject(WireShapesInChunk.class)
+	public static Capability<WireShapesInChunk> INSTANCE = null;
+
+	// shape indices are rebuilt from the world after loading, so there's nothing to save
+	public static class Storage implements Capability.IStorage<WireShapesInChunk>
+	{
+		@Override
+		public INBT writeNBT(Capability<WireShapesInChunk> capability, WireShapesInChunk instance, Direction side)
+		{
+			return null;
+		}
+
+		@Override
+		public void readNBT(Capability<WireShapesInChunk> capability, WireShapesInChunk instance, Direction side, INBT nbt)
+		{
+			//noop
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package commoble.morered.wires;
+
+import javax.annotation.Nonnull;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+
+/**
+ * Remembers the redstone signals wire blocks have given out during the current tick,
+ * so that neighbors asking the same wire for the same side's signal over and over in one wave of updates
+ * don't have to look up the wire's tile entity, neighbor state, and connectors every time.
+ *
+ * Each wire position gets one int holding five bits per side: a known bit and the four-bit signal.
+ * A position's signals are forgotten when its power, its blockstate, or a neighbor of it changes,
+ * and everything is forgotten at the end of each tick.
+ */
+public class WireSignalCache extends WorldSavedData
+{
+	public static final String ID = "morered:wiresignalcache";
+	public static final int UNKNOWN = -1;
+
+	private static final int BITS_PER_SIDE = 5;
+	private static final int KNOWN_BIT = 0b10000;
+	private static final int SIGNAL_BITS = 0b01111;
+	// a large burst of updates shouldn't keep its table around for the rest of the session
+	private static final int MAX_RETAINED_SIZE = 4096;
+
+	// packed position -> packed signals, default 0 (nothing known)
+	private final Long2IntOpenHashMap signals = new Long2IntOpenHashMap();
+
+	private long hits = 0;
+	public long getHits() { return this.hits; }
+
+	private long misses = 0;
+	public long getMisses() { return this.misses; }
+
+	public WireSignalCache()
+	{
+		super(ID);
+	}
+
+	public static WireSignalCache get(@Nonnull ServerWorld world)
+	{
+		return world.getDataStorage().computeIfAbsent(WireSignalCache::new, ID);
+	}
+
+	/**
+	 * @param pos The position of a wire block
+	 * @param side The ordinal of the direction from the wire to the neighbor asking for the signal
+	 * @return The signal remembered for that side this tick, or UNKNOWN
+	 */
+	public int getSignal(BlockPos pos, int side)
+	{
+		int sideBits = this.signals.get(pos.asLong()) >>> (side * BITS_PER_SIDE);
+		if ((sideBits & KNOWN_BIT) == 0)
+		{
+			this.misses++;
+			return UNKNOWN;
+		}
+		this.hits++;
+		return sideBits & SIGNAL_BITS;
+	}
+
+	/**
+	 * Remembers the signal a wire gave out on one side
+	 * @param pos The position of the wire block
+	 * @param side The ordinal of the direction from the wire to the neighbor asking for the signal
+	 * @param signal The signal, in [0,15]
+	 */
+	public void putSignal(BlockPos pos, int side, int signal)
+	{
+		long key = pos.asLong();
+		int shift = side * BITS_PER_SIDE;
+		int packed = this.signals.get(key) & ~((KNOWN_BIT | SIGNAL_BITS) << shift);
+		this.signals.put(key, packed | ((KNOWN_BIT | (signal & SIGNAL_BITS)) << shift));
+	}
+
+	public void invalidate(BlockPos pos)
+	{
+		this.signals.remove(pos.asLong());
+	}
+
+	public int size()
+	{
+		return this.signals.size();
+	}
+
+	public void onTickEnd()
+	{
+		int size = this.signals.size();
+		this.signals.clear();
+		if (size > MAX_RETAINED_SIZE)
+		{
+			this.signals.trim();
+		}
+	}
+
+	/**
+	 * Forgets the signals of a wire block, if the world has a signal cache
+	 * @param world The world the wire block is in
+	 * @param pos The position of the wire block
+	 */
+	public static void invalidate(IBlockReader world, BlockPos pos)
+	{
+		if (world instanceof ServerWorld)
+		{
+			get((ServerWorld)world).invalidate(pos);
+		}
+	}
+
+	@Override
+	public void load(CompoundNBT nbt)
+	{
+		//noop
+	}
+
+	@Override
+	public CompoundNBT save(CompoundNBT compound)
+	{
+		return compound; //noop
+	}
+}
@@ -1,18 +1,25 @@
 package commoble.morered.wires;
 
+import javax.annotation.Nullable;
+
 import commoble.morered.TileEntityRegistrar;
 import net.minecraft.block.BlockState;
 import net.minecraft.nbt.CompoundNBT;
-import net.minecraft.network.NetworkManager;
-import net.minecraft.network.play.server.SUpdateTileEntityPacket;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.tileentity.TileEntityType;
 import net.minecraft.util.Direction;
 
+/**
+ * Tile entity of colored cables, which need one to offer their power to bundled cables as a capability.
+ * Wire power is stored in the chunk's {@link WirePowerInChunk}; this only reads and writes it there.
+ */
 public class WireTileEntity extends TileEntity
 {
+	/** Key of the power array that tile entities saved before power was stored per chunk have **/
 	public static final String POWER = "power";
-	protected int[] power = new int[6];
+	
+	// power read from old data (e.g. structures), applied when the tile entity is added to a world
+	private @Nullable int[] legacyPower = null;
 	
 	public WireTileEntity()
 	{
@@ -32,28 +39,19 @@ public class WireTileEntity extends TileEntity
 	 */
 	public boolean setPower(int side, int newPower)
 	{
-		int oldPower = this.power[side];
-		this.power[side] = newPower;
-		if (oldPower != newPower)
-		{
-			this.setChanged();
-			BlockState state = this.getBlockState();
-			// what do the block flags do here?
-			// client world: only flag 8 (bit 4) is checked (rerender on main thread)
-			// server world: none of the flags are checked
-			this.level.sendBlockUpdated(this.worldPosition, state, state, 0);
-			return true;
-		}
-		return false;
+		return this.level != null && WirePowerInChunk.setPower(this.level, this.worldPosition, side, newPower);
 	}
 	
 	/**
 	 * Sets a power array without causing updates
-	 * @param power array of power values (be wary of reference-type problems)
+	 * @param power array of six power values
 	 */
 	public void setPowerRaw(int[] power)
 	{
-		this.power = power;
+		if (this.level != null)
+		{
+			WirePowerInChunk.setPowerRaw(this.level, this.worldPosition, power);
+		}
 	}
 	
 	/**
@@ -74,76 +72,28 @@ public class WireTileEntity extends TileEntity
 	
 	public int getPower(int side)
 	{
-		return this.power[side];
+		return this.level == null ? 0 : WirePowerInChunk.getPower(this.level, this.worldPosition, side);
 	}
-
-	// called when TE is serialized to hard drive or whatever
-	// defaults to this.writeInternal()
+	
 	@Override
-	public CompoundNBT save(CompoundNBT compound)
+	public void onLoad()
 	{
-		super.save(compound);
-		this.writeCommonData(compound);
-		return compound;
+		super.onLoad();
+		if (this.legacyPower != null && this.level != null && !this.level.isClientSide)
+		{
+			this.setPowerRaw(this.legacyPower);
+		}
+		this.legacyPower = null;
 	}
 	
-	// reads the data written by write, called when TE is loaded from hard drive
+	// power is stored in the chunk's WirePowerInChunk now,
+	// but tile entity data from older versions can still turn up outside of chunks
 	@Override
 	public void load(BlockState state, CompoundNBT compound)
 	{
 		super.load(state, compound);
-		this.readCommonData(compound);
-	}
-
-	// called on server to get the data to send to clients when chunk is loaded for client
-	// defaults to this.writeInternal()
-	@Override
-	public CompoundNBT getUpdateTag()
-	{
-		CompoundNBT compound = super.getUpdateTag();
-		this.writeCommonData(compound);
-		return compound;
-	}
-
-	// reads the data from getUpdateTag on client, defaults to #read
-//	@Override
-//	public void handleUpdateTag(BlockState state, CompoundNBT compound)
-//	{
-//		super.handleUpdateTag(state, compound);
-//		this.readCommonData(compound);
-//	}
-
-	// called on server when world.notifyBlockUpdate is invoked at this TE's position
-	// generates the packet to send to nearby clients
-	@Override
-	public SUpdateTileEntityPacket getUpdatePacket()
-	{
-		CompoundNBT compound = new CompoundNBT();
-		this.writeCommonData(compound);
-		return new SUpdateTileEntityPacket(this.worldPosition, 0, compound); // non-positive ID indicates non-vanilla packet
-	}
-
-	// called on client to read the packet sent by getUpdatePacket
-	@Override
-	public void onDataPacket(NetworkManager net, SUpdateTileEntityPacket pkt)
-	{
-		CompoundNBT compound = pkt.getTag();
-		this.readCommonData(compound);
-		BlockState state = this.getBlockState();
-		this.level.sendBlockUpdated(this.worldPosition, state, state, 8);
-		super.onDataPacket(net, pkt);
-	}
-	
-	public CompoundNBT writeCommonData(CompoundNBT compound)
-	{
-		compound.putIntArray(POWER, this.power.clone());
-		return compound;
-	}
-	
-	public void readCommonData(CompoundNBT compound)
-	{
-		int[] newPower = compound.getIntArray(POWER); // returns 0-length array if field not present
-		if (newPower.length == 6)
-			this.power = newPower.clone();
+		int[] power = compound.getIntArray(POWER); // returns 0-length array if field not present
+		if (power.length == 6)
+			this.legacyPower = power.clone();
 	}
 }
@@ -1,11 +1,29 @@
 package commoble.morered.wires;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
 
 import commoble.morered.MoreRed;
+import commoble.morered.MoreRedProfiler;
+import commoble.morered.ServerConfig;
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.nbt.CompoundNBT;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
@@ -19,6 +37,15 @@ public class WireUpdateBuffer extends WorldSavedData
 	public static final String ID = "morered:wireupdatebuffer";
 	
 	private Map<ChunkPos, Set<BlockPos>> buffer = new HashMap<>();
+	// wire shape changes from the previous tick; block changes made after the chunk tick are only sent to clients on the next tick,
+	// and clients recompute wire shapes when they get these, so they're held back a tick to arrive after the block changes
+	private Map<ChunkPos, Set<BlockPos>> heldBuffer = new HashMap<>();
+	// map of chunk positions to the wires in that chunk whose power changed this tick, and the faces that changed
+	private Long2ObjectOpenHashMap<Long2ByteOpenHashMap> powerBuffer = new Long2ObjectOpenHashMap<>();
+	// power changes that distant players haven't been sent yet, see ServerConfig's power sync settings
+	private final Map<UUID, PlayerPowerSync> deferredPowerByPlayer = new HashMap<>();
+	// chunks that players started watching this tick, which need all of their power sent
+	private final Map<UUID, LongOpenHashSet> fullPowerSyncsByPlayer = new HashMap<>();
 	
 	public WireUpdateBuffer()
 	{
@@ -36,11 +63,42 @@ public class WireUpdateBuffer extends WorldSavedData
 		this.buffer.computeIfAbsent(chunkPos, $-> new HashSet<BlockPos>()).add(pos.immutable());
 	}
 	
+	/**
+	 * Marks a wire face as needing its power synced to clients at the end of the tick
+	 * @param pos The position of the wire
+	 * @param side The attachment side of the subwire whose power changed
+	 */
+	public void enqueuePower(BlockPos pos, int side)
+	{
+		long chunkKey = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+		Long2ByteOpenHashMap facesByPos = this.powerBuffer.get(chunkKey);
+		if (facesByPos == null)
+		{
+			facesByPos = new Long2ByteOpenHashMap();
+			this.powerBuffer.put(chunkKey, facesByPos);
+		}
+		long packedPos = pos.asLong();
+		facesByPos.put(packedPos, (byte)(facesByPos.get(packedPos) | (1 << side)));
+	}
+	
+	/**
+	 * Marks a chunk as needing all of its wire power sent to a player at the end of the tick,
+	 * for when the player starts watching the chunk (wire power isn't part of the chunk's own data packet)
+	 * @param player The player
+	 * @param chunkPos The chunk the player started watching
+	 */
+	public void enqueueFullPowerSync(ServerPlayerEntity player, ChunkPos chunkPos)
+	{
+		this.fullPowerSyncsByPlayer.computeIfAbsent(player.getUUID(), $ -> new LongOpenHashSet()).add(chunkPos.toLong());
+	}
+	
 	public void sendPackets(ServerWorld world)
 	{
-		if (this.buffer.size() > 0)
+		this.sendFullPowerPackets(world);
+		this.sendPowerPackets(world);
+		if (this.heldBuffer.size() > 0)
 		{
-			this.buffer.forEach((chunkPos, positions) ->
+			this.heldBuffer.forEach((chunkPos, positions) ->
 			{
 				// ignore and discard unloaded chunks
 				if (world.hasChunk(chunkPos.x, chunkPos.z))
@@ -48,13 +106,312 @@ public class WireUpdateBuffer extends WorldSavedData
 					PacketTarget target = PacketDistributor.TRACKING_CHUNK.with(() -> world.getChunk(chunkPos.x, chunkPos.z));
 					WireUpdatePacket packet = new WireUpdatePacket(positions);
 					MoreRed.CHANNEL.send(target,packet);
+					// positions are written as longs
+					recordTrackingChunkPacket(world, chunkPos, positions.size() * 8);
 				}
 			});
-			
+		}
+		if (this.heldBuffer.size() > 0 || this.buffer.size() > 0)
+		{
+			this.heldBuffer = this.buffer;
 			this.buffer = new HashMap<>();
 		}
 	}
 
+	protected void sendFullPowerPackets(ServerWorld world)
+	{
+		if (this.fullPowerSyncsByPlayer.isEmpty())
+			return;
+		for (Map.Entry<UUID, LongOpenHashSet> entry : this.fullPowerSyncsByPlayer.entrySet())
+		{
+			PlayerEntity playerEntity = world.getPlayerByUUID(entry.getKey());
+			if (!(playerEntity instanceof ServerPlayerEntity))
+				continue;
+			ServerPlayerEntity player = (ServerPlayerEntity)playerEntity;
+			LongIterator chunkKeys = entry.getValue().iterator();
+			while (chunkKeys.hasNext())
+			{
+				ChunkPos chunkPos = new ChunkPos(chunkKeys.nextLong());
+				// if the chunk isn't loaded yet, it has no power to send; it gets synced again when it loads and is watched
+				@Nullable WirePowerInChunk storage = world.hasChunk(chunkPos.x, chunkPos.z) ? WirePowerInChunk.get(world, chunkPos.getWorldPosition()) : null;
+				if (storage != null && storage.size() > 0)
+				{
+					WirePowerSyncPacket packet = makeFullPowerPacket(chunkPos, storage);
+					MoreRed.CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), packet);
+					MoreRedProfiler.recordPacket(packet.getEncodedSize());
+				}
+			}
+		}
+		this.fullPowerSyncsByPlayer.clear();
+	}
+
+	protected void sendPowerPackets(ServerWorld world)
+	{
+		boolean throttle = ServerConfig.INSTANCE.throttle_power_sync.get();
+		if (!throttle && !this.deferredPowerByPlayer.isEmpty())
+		{
+			// throttling was turned off, the deferred changes don't need to wait anymore
+			this.deferredPowerByPlayer.values().forEach(deferred -> deferred.facesByChunk.forEach((chunkKey, facesByPos) -> mergeFaces(this.powerBuffer, chunkKey, facesByPos)));
+			this.deferredPowerByPlayer.clear();
+		}
+		if (this.powerBuffer.isEmpty() && this.deferredPowerByPlayer.isEmpty())
+			return;
+		
+		Long2ObjectOpenHashMap<Long2ByteOpenHashMap> powerBuffer = this.powerBuffer;
+		this.powerBuffer = new Long2ObjectOpenHashMap<>();
+		long gameTime = world.getGameTime();
+		for (Long2ObjectMap.Entry<Long2ByteOpenHashMap> entry : powerBuffer.long2ObjectEntrySet())
+		{
+			long chunkKey = entry.getLongKey();
+			ChunkPos chunkPos = new ChunkPos(chunkKey);
+			// ignore and discard unloaded chunks
+			if (!world.hasChunk(chunkPos.x, chunkPos.z))
+				continue;
+			
+			Long2ByteOpenHashMap facesByPos = entry.getValue();
+			if (!throttle)
+			{
+				WirePowerSyncPacket packet = makePowerPacket(world, chunkPos, facesByPos);
+				if (packet.getCount() > 0)
+				{
+					PacketTarget target = PacketDistributor.TRACKING_CHUNK.with(() -> world.getChunk(chunkPos.x, chunkPos.z));
+					MoreRed.CHANNEL.send(target, packet);
+					recordTrackingChunkPacket(world, chunkPos, packet.getEncodedSize());
+				}
+				continue;
+			}
+			
+			// the packet for players that don't have any older changes waiting is the same for all of them, so only build it once
+			WirePowerSyncPacket[] sharedPacket = {null};
+			world.getChunkSource().chunkMap.getPlayers(chunkPos, false).forEach(player ->
+			{
+				PlayerPowerSync sync = this.deferredPowerByPlayer.computeIfAbsent(player.getUUID(), $ -> new PlayerPowerSync());
+				if (sync.isSyncDue(player, chunkPos, gameTime))
+				{
+					Long2ByteOpenHashMap deferredFaces = sync.facesByChunk.remove(chunkKey);
+					WirePowerSyncPacket packet;
+					if (deferredFaces == null)
+					{
+						if (sharedPacket[0] == null)
+						{
+							sharedPacket[0] = makePowerPacket(world, chunkPos, facesByPos);
+						}
+						packet = sharedPacket[0];
+					}
+					else
+					{
+						mergeFaces(deferredFaces, facesByPos);
+						packet = makePowerPacket(world, chunkPos, deferredFaces);
+					}
+					sendPowerPacket(player, packet, sync, chunkKey, gameTime);
+				}
+				else
+				{
+					mergeFaces(sync.facesByChunk, chunkKey, facesByPos);
+				}
+			});
+		}
+		
+		// send changes that were held back on earlier ticks and are due now
+		Iterator<Map.Entry<UUID, PlayerPowerSync>> playerIterator = this.deferredPowerByPlayer.entrySet().iterator();
+		while (playerIterator.hasNext())
+		{
+			Map.Entry<UUID, PlayerPowerSync> playerEntry = playerIterator.next();
+			PlayerEntity playerEntity = world.getPlayerByUUID(playerEntry.getKey());
+			// forget players who left this world
+			if (!(playerEntity instanceof ServerPlayerEntity))
+			{
+				playerIterator.remove();
+				continue;
+			}
+			ServerPlayerEntity player = (ServerPlayerEntity)playerEntity;
+			PlayerPowerSync sync = playerEntry.getValue();
+			ObjectIterator<Long2ObjectMap.Entry<Long2ByteOpenHashMap>> chunkIterator = sync.facesByChunk.long2ObjectEntrySet().fastIterator();
+			while (chunkIterator.hasNext())
+			{
+				Long2ObjectMap.Entry<Long2ByteOpenHashMap> chunkEntry = chunkIterator.next();
+				long chunkKey = chunkEntry.getLongKey();
+				ChunkPos chunkPos = new ChunkPos(chunkKey);
+				if (!world.hasChunk(chunkPos.x, chunkPos.z))
+				{
+					// the player gets all of the chunk's power again if it reloads
+					chunkIterator.remove();
+				}
+				else if (sync.isSyncDue(player, chunkPos, gameTime))
+				{
+					chunkIterator.remove();
+					sendPowerPacket(player, makePowerPacket(world, chunkPos, chunkEntry.getValue()), sync, chunkKey, gameTime);
+				}
+			}
+			if (gameTime % 20 == 0)
+			{
+				sync.forgetOldSyncs(gameTime);
+			}
+		}
+	}
+	
+	protected static void sendPowerPacket(ServerPlayerEntity player, WirePowerSyncPacket packet, PlayerPowerSync sync, long chunkKey, long gameTime)
+	{
+		sync.lastSyncTimes.put(chunkKey, gameTime);
+		if (packet.getCount() > 0)
+		{
+			MoreRed.CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), packet);
+			MoreRedProfiler.recordPacket(packet.getEncodedSize());
+		}
+	}
+	
+	protected static void recordTrackingChunkPacket(ServerWorld world, ChunkPos chunkPos, int bytes)
+	{
+		if (MoreRedProfiler.isRunning())
+		{
+			world.getChunkSource().chunkMap.getPlayers(chunkPos, false).forEach(player -> MoreRedProfiler.recordPacket(bytes));
+		}
+	}
+	
+	protected static void mergeFaces(Long2ObjectOpenHashMap<Long2ByteOpenHashMap> facesByChunk, long chunkKey, Long2ByteOpenHashMap facesByPos)
+	{
+		Long2ByteOpenHashMap existingFaces = facesByChunk.get(chunkKey);
+		if (existingFaces == null)
+		{
+			facesByChunk.put(chunkKey, new Long2ByteOpenHashMap(facesByPos));
+		}
+		else
+		{
+			mergeFaces(existingFaces, facesByPos);
+		}
+	}
+	
+	protected static void mergeFaces(Long2ByteOpenHashMap target, Long2ByteOpenHashMap source)
+	{
+		for (Long2ByteMap.Entry entry : source.long2ByteEntrySet())
+		{
+			long packedPos = entry.getLongKey();
+			target.put(packedPos, (byte)(target.get(packedPos) | entry.getByteValue()));
+		}
+	}
+	
+	protected static WirePowerSyncPacket makePowerPacket(ServerWorld world, ChunkPos chunkPos, Long2ByteOpenHashMap facesByPos)
+	{
+		@Nullable WirePowerInChunk storage = WirePowerInChunk.get(world, chunkPos.getWorldPosition());
+		if (storage == null)
+			return new WirePowerSyncPacket(chunkPos, false, 0, new int[0], new byte[0], new int[0]);
+		// sort the wires by their index within the chunk so the packet can delta-encode them
+		int size = facesByPos.size();
+		long[] sortKeys = new long[size];
+		int i = 0;
+		for (Long2ByteMap.Entry entry : facesByPos.long2ByteEntrySet())
+		{
+			BlockPos pos = BlockPos.of(entry.getLongKey());
+			// chunk-local index in the high bits, face flags in the low byte
+			sortKeys[i++] = ((long)WirePowerSyncPacket.getLocalIndex(pos) << 8) | (entry.getByteValue() & 0xFF);
+		}
+		Arrays.sort(sortKeys);
+		
+		int[] localIndices = new int[size];
+		byte[] faceFlags = new byte[size];
+		int[] packedPower = new int[size];
+		int count = 0;
+		BlockPos.Mutable mutaPos = new BlockPos.Mutable();
+		for (long sortKey : sortKeys)
+		{
+			int localIndex = (int)(sortKey >>> 8);
+			int flags = (int)(sortKey & 0xFF);
+			mutaPos.set(chunkPos.getMinBlockX() + (localIndex & 15), localIndex >> 8, chunkPos.getMinBlockZ() + ((localIndex >> 4) & 15));
+			int wirePower = storage.getPackedPower(mutaPos);
+			int packed = 0;
+			int shift = 0;
+			for (int side=0; side<6; side++)
+			{
+				if ((flags & (1 << side)) != 0)
+				{
+					packed |= ((wirePower >>> (side * WirePowerInChunk.POWER_BITS)) & WirePowerSyncPacket.POWER_MASK) << shift;
+					shift += WirePowerSyncPacket.POWER_BITS;
+				}
+			}
+			localIndices[count] = localIndex;
+			faceFlags[count] = (byte)flags;
+			packedPower[count] = packed;
+			count++;
+		}
+		return new WirePowerSyncPacket(chunkPos, false, count, localIndices, faceFlags, packedPower);
+	}
+	
+	/**
+	 * Makes a packet holding every powered wire in a chunk, which replaces whatever power the client had for the chunk
+	 * @param chunkPos The position of the chunk
+	 * @param storage The chunk's power storage
+	 * @return The packet
+	 */
+	protected static WirePowerSyncPacket makeFullPowerPacket(ChunkPos chunkPos, WirePowerInChunk storage)
+	{
+		int size = storage.size();
+		int[] localIndices = new int[size];
+		byte[] faceFlags = new byte[size];
+		int[] packedPower = new int[size];
+		int count = 0;
+		for (int sectionY=0; sectionY<WirePowerInChunk.SECTIONS; sectionY++)
+		{
+			// sections are sorted by their own local index, so the chunk-local indices come out sorted too
+			for (long entry : storage.getSection(sectionY))
+			{
+				localIndices[count] = (sectionY << 12) | (int)(entry >>> 32);
+				faceFlags[count] = WirePowerSyncPacket.ALL_FACES;
+				// the storage packs all six faces the same way the packet does
+				packedPower[count] = (int)entry;
+				count++;
+			}
+		}
+		return new WirePowerSyncPacket(chunkPos, true, count, localIndices, faceFlags, packedPower);
+	}
+
+	/**
+	 * Power sync state of one player: the changes we haven't sent them yet,
+	 * and when we last sent them each chunk they've been sent recently
+	 */
+	protected static class PlayerPowerSync
+	{
+		public final Long2ObjectOpenHashMap<Long2ByteOpenHashMap> facesByChunk = new Long2ObjectOpenHashMap<>();
+		public final Long2LongOpenHashMap lastSyncTimes = new Long2LongOpenHashMap();
+		
+		public PlayerPowerSync()
+		{
+			this.lastSyncTimes.defaultReturnValue(Long.MIN_VALUE);
+		}
+		
+		public boolean isSyncDue(ServerPlayerEntity player, ChunkPos chunkPos, long gameTime)
+		{
+			ServerConfig config = ServerConfig.INSTANCE;
+			double dx = player.getX() - (chunkPos.getMinBlockX() + 8D);
+			double dz = player.getZ() - (chunkPos.getMinBlockZ() + 8D);
+			double distance = Math.sqrt(dx*dx + dz*dz);
+			double exactRange = config.exact_power_sync_range.get();
+			if (distance <= exactRange)
+				return true;
+			
+			long lastSyncTime = this.lastSyncTimes.get(chunkPos.toLong());
+			if (lastSyncTime == Long.MIN_VALUE)
+				return true;
+			
+			double interval = Math.min(config.max_power_sync_interval.get(),
+				config.min_power_sync_interval.get() + (distance - exactRange) * config.power_sync_interval_per_block.get());
+			return gameTime - lastSyncTime >= interval;
+		}
+		
+		public void forgetOldSyncs(long gameTime)
+		{
+			// every chunk is due again after the max interval, so older sync times don't matter
+			int maxInterval = ServerConfig.INSTANCE.max_power_sync_interval.get();
+			ObjectIterator<Long2LongMap.Entry> iterator = this.lastSyncTimes.long2LongEntrySet().fastIterator();
+			while (iterator.hasNext())
+			{
+				if (gameTime - iterator.next().getLongValue() >= maxInterval)
+				{
+					iterator.remove();
+				}
+			}
+		}
+	}
+
 	@Override
 	public void load(CompoundNBT nbt)
 	{
@@ -0,0 +1,54 @@
+package morered;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import commoble.morered.util.ChannelLanes;
+
+public class ChannelLanesTests
+{
+	@Test
+	void testPackingRoundTrip()
+	{
+		byte[] channels = new byte[16];
+		for (int i=0; i<16; i++)
+		{
+			channels[i] = (byte)(i*2);
+		}
+		byte[] unpacked = new byte[16];
+		ChannelLanes.unpack(ChannelLanes.pack(channels, 0), unpacked, 0);
+		ChannelLanes.unpack(ChannelLanes.pack(channels, 8), unpacked, 8);
+		Assertions.assertArrayEquals(channels, unpacked);
+	}
+
+	@Test
+	void testLaneMathMatchesScalarMath()
+	{
+		Random random = new Random(0);
+		byte[] a = new byte[8];
+		byte[] b = new byte[8];
+		for (int run=0; run<10000; run++)
+		{
+			int nonzeroLanes = 0;
+			for (int lane=0; lane<8; lane++)
+			{
+				a[lane] = (byte)(random.nextBoolean() ? 0 : random.nextInt(32));
+				b[lane] = (byte)random.nextInt(32);
+				if (a[lane] != 0)
+					nonzeroLanes |= (1 << lane);
+			}
+			long packedA = ChannelLanes.pack(a, 0);
+			long packedB = ChannelLanes.pack(b, 0);
+			long max = ChannelLanes.max(packedA, packedB);
+			long decremented = ChannelLanes.decrementSaturating(packedA);
+			for (int lane=0; lane<8; lane++)
+			{
+				Assertions.assertEquals(Math.max(a[lane], b[lane]), ChannelLanes.getLane(max, lane));
+				Assertions.assertEquals(Math.max(0, a[lane]-1), ChannelLanes.getLane(decremented, lane));
+			}
+			Assertions.assertEquals(nonzeroLanes, ChannelLanes.getNonzeroLanes(packedA));
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package morered;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import commoble.morered.util.ChannelLanes;
+import commoble.morered.util.ChannelPowerCodec;
+
+public class ChannelPowerCodecTests
+{
+	private static final String[] SIDE_NAMES = {"down", "up", "north", "south", "west", "east"};
+
+	@Test
+	void testRoundTrip()
+	{
+		Random random = new Random(0);
+		for (int run=0; run<10000; run++)
+		{
+			long[] lanes = randomLanes(random);
+			long[] decoded = new long[12];
+			Assertions.assertTrue(ChannelPowerCodec.decode(ChannelPowerCodec.encode(lanes), decoded));
+			Assertions.assertArrayEquals(lanes, decoded);
+		}
+	}
+
+	@Test
+	void testNoPowerEncodesToNothing()
+	{
+		Assertions.assertEquals(0, ChannelPowerCodec.encode(new long[12]).length);
+	}
+
+	@Test
+	void testBadDataDecodesToNoPower()
+	{
+		long[] lanes = new long[12];
+		lanes[3] = ChannelLanes.fill(31);
+		byte[] data = ChannelPowerCodec.encode(lanes);
+
+		byte[] futureVersion = data.clone();
+		futureVersion[0] = (byte)(ChannelPowerCodec.VERSION + 1);
+		long[] decoded = new long[12];
+		Assertions.assertFalse(ChannelPowerCodec.decode(futureVersion, decoded));
+		Assertions.assertArrayEquals(new long[12], decoded);
+
+		byte[] truncated = new byte[data.length-1];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+		Assertions.assertFalse(ChannelPowerCodec.decode(truncated, decoded));
+	}
+
+	// compares the serialized size of the power tags, as written inside the tile entity's compound
+	@Test
+	void testEncodingIsSmallerThanLegacyFormat()
+	{
+		Random random = new Random(0);
+		for (int run=0; run<10000; run++)
+		{
+			long[] lanes = randomLanes(random);
+			int compactSize = getCompactTagSize(lanes);
+			int legacySize = getLegacyTagSize(lanes);
+			Assertions.assertTrue(compactSize <= legacySize);
+		}
+
+		// typical cables: one face carrying one channel, one face carrying all sixteen, two faces carrying four channels each
+		long[] oneChannel = new long[12];
+		oneChannel[0] = ChannelLanes.setLane(0L, 0, 15);
+		long[] allChannels = new long[12];
+		allChannels[0] = ChannelLanes.fill(15);
+		allChannels[1] = ChannelLanes.fill(15);
+		long[] twoFaces = new long[12];
+		twoFaces[0] = 0x0F0F0F0FL;
+		twoFaces[2] = 0x0F0F0F0FL;
+		Assertions.assertEquals(22, getCompactTagSize(oneChannel));
+		Assertions.assertEquals(54, getLegacyTagSize(oneChannel));
+		Assertions.assertEquals(31, getCompactTagSize(allChannels));
+		Assertions.assertEquals(69, getLegacyTagSize(allChannels));
+		Assertions.assertEquals(28, getCompactTagSize(twoFaces));
+		Assertions.assertEquals(103, getLegacyTagSize(twoFaces));
+	}
+
+	private static long[] randomLanes(Random random)
+	{
+		long[] lanes = new long[12];
+		for (int side=0; side<6; side++)
+		{
+			if (random.nextInt(3) == 0)
+			{
+				for (int channel=0; channel<16; channel++)
+				{
+					if (random.nextBoolean())
+					{
+						int word = side*2 + channel/8;
+						lanes[word] = ChannelLanes.setLane(lanes[word], channel%8, random.nextInt(32));
+					}
+				}
+			}
+		}
+		return lanes;
+	}
+
+	// named tag: type byte, name length short, name, payload
+	private static int getNamedTagSize(String name, int payloadSize)
+	{
+		return 1 + 2 + name.length() + payloadSize;
+	}
+
+	private static int getCompactTagSize(long[] lanes)
+	{
+		int length = ChannelPowerCodec.encode(lanes).length;
+		return length == 0 ? 0 : getNamedTagSize("power_data", 4 + length);
+	}
+
+	private static int getLegacyTagSize(long[] lanes)
+	{
+		int powerPayload = 1; // end tag
+		for (int side=0; side<6; side++)
+		{
+			int channels = Integer.bitCount(ChannelLanes.getNonzeroLanes(lanes[side*2])) + Integer.bitCount(ChannelLanes.getNonzeroLanes(lanes[side*2+1]));
+			if (channels > 0)
+			{
+				int sidePayload = getNamedTagSize("channel_flags", 2) + getNamedTagSize("power_bytes", 4 + channels) + 1;
+				powerPayload += getNamedTagSize(SIDE_NAMES[side], sidePayload);
+			}
+		}
+		return powerPayload == 1 ? 0 : getNamedTagSize("power", powerPayload);
+	}
+}
@@ -1,11 +1,14 @@
 package morered;
 
+import java.util.Arrays;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import commoble.morered.client.EdgeRotation;
 import commoble.morered.wires.Edge;
 import net.minecraft.client.renderer.model.ModelRotation;
+import net.minecraft.util.Direction;
 
 public class EdgeTests
 {
@@ -25,4 +28,19 @@ public class EdgeTests
 		
 		Assertions.assertArrayEquals(expected, actual);
 	}
+	
+	// the incremental edge flag updates recheck only the edges listed for the changed direction,
+	// so every edge must be listed under both of its sides and no others
+	@Test
+	void testEdgesByRelevantDirection()
+	{
+		for (Edge edge : Edge.VALUES)
+		{
+			for (Direction direction : Direction.values())
+			{
+				boolean listed = Arrays.asList(Edge.EDGES_BY_RELEVANT_DIRECTION[direction.ordinal()]).contains(edge);
+				Assertions.assertEquals(edge.sideA == direction || edge.sideB == direction, listed);
+			}
+		}
+	}
 }
@@ -0,0 +1,99 @@
+package morered;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import commoble.morered.util.LongKeyedClockCache;
+
+public class LongKeyedClockCacheTests
+{
+	@Test
+	void testHitsAndMisses()
+	{
+		AtomicInteger loads = new AtomicInteger();
+		LongKeyedClockCache<String> cache = new LongKeyedClockCache<>(64, key -> { loads.incrementAndGet(); return Long.toString(key); });
+		for (int run=0; run<3; run++)
+		{
+			for (long key=0; key<10; key++)
+			{
+				Assertions.assertEquals(Long.toString(key), cache.get(key));
+			}
+		}
+		Assertions.assertEquals(10, loads.get());
+		Assertions.assertEquals(10, cache.getMisses());
+		Assertions.assertEquals(20, cache.getHits());
+		Assertions.assertEquals(10, cache.size());
+
+		cache.clear();
+		Assertions.assertEquals(0, cache.size());
+		cache.get(0L);
+		Assertions.assertEquals(11, loads.get());
+	}
+
+	@Test
+	void testSizeIsBounded()
+	{
+		LongKeyedClockCache<Long> cache = new LongKeyedClockCache<>(100, key -> key * 2);
+		Assertions.assertEquals(128, cache.capacity());
+		for (long key=0; key<10000; key++)
+		{
+			Assertions.assertEquals(key * 2, cache.get(key).longValue());
+			Assertions.assertTrue(cache.size() <= cache.capacity());
+		}
+		Assertions.assertTrue(cache.getEvictions() > 0);
+		Assertions.assertEquals(10000, cache.getMisses());
+		Assertions.assertEquals(cache.size() + cache.getEvictions(), cache.getMisses());
+	}
+
+	@Test
+	void testReferencedEntriesSurviveEviction()
+	{
+		LongKeyedClockCache<Long> cache = new LongKeyedClockCache<>(256, key -> key);
+		long hotKey = -1L;
+		cache.get(hotKey);
+		for (long key=0; key<100000; key++)
+		{
+			cache.get(key);
+			cache.get(hotKey);
+		}
+		// the hot key is read between every insertion, so it's only ever loaded the once
+		Assertions.assertEquals(100001, cache.getMisses());
+	}
+
+	@Test
+	void testConcurrentReads() throws InterruptedException
+	{
+		LongKeyedClockCache<Long> cache = new LongKeyedClockCache<>(512, key -> key ^ 0x5555L);
+		List<Thread> threads = new ArrayList<>();
+		AtomicInteger failures = new AtomicInteger();
+		for (int t=0; t<4; t++)
+		{
+			long seed = t;
+			Thread thread = new Thread(() ->
+			{
+				long key = seed;
+				for (int i=0; i<200000; i++)
+				{
+					key = (key * 6364136223846793005L + 1442695040888963407L);
+					long smallKey = (key >>> 40) & 2047;
+					if (cache.get(smallKey).longValue() != (smallKey ^ 0x5555L))
+					{
+						failures.incrementAndGet();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		Assertions.assertEquals(0, failures.get());
+		Assertions.assertTrue(cache.size() <= cache.capacity());
+	}
+}
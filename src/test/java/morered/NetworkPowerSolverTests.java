@@ -0,0 +1,235 @@
+package morered;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import commoble.morered.wires.NetworkPowerSolver;
+
+public class NetworkPowerSolverTests
+{
+	// makes a line of nodes where each node is linked to the nodes before and after it
+	static int[][] makeLine(int nodeCount)
+	{
+		int[] linkStarts = new int[nodeCount+1];
+		int[] links = new int[Math.max(0, nodeCount*2 - 2)];
+		int linkCount = 0;
+		for (int node=0; node<nodeCount; node++)
+		{
+			linkStarts[node] = linkCount;
+			if (node > 0)
+				links[linkCount++] = node-1;
+			if (node < nodeCount-1)
+				links[linkCount++] = node+1;
+		}
+		linkStarts[nodeCount] = linkCount;
+		return new int[][] {linkStarts, links};
+	}
+
+	@Test
+	void testLineFallsOffByOne()
+	{
+		int[][] line = makeLine(40);
+		int[] sources = new int[40];
+		sources[0] = 31;
+		int[] power = NetworkPowerSolver.solve(sources, line[0], line[1]);
+		for (int node=0; node<40; node++)
+		{
+			Assertions.assertEquals(Math.max(0, 31-node), power[node]);
+		}
+	}
+
+	@Test
+	void testSourcesAreClamped()
+	{
+		int[][] line = makeLine(3);
+		int[] power = NetworkPowerSolver.solve(new int[] {-5, 0, 100}, line[0], line[1]);
+		Assertions.assertArrayEquals(new int[] {29, 30, 31}, power);
+	}
+
+	@Test
+	void testMatchesRelaxation()
+	{
+		Random random = new Random(0);
+		for (int run=0; run<50; run++)
+		{
+			int nodeCount = 1 + random.nextInt(100);
+			boolean[][] adjacency = new boolean[nodeCount][nodeCount];
+			int linkCount = 0;
+			for (int i=0; i<nodeCount*2; i++)
+			{
+				int a = random.nextInt(nodeCount);
+				int b = random.nextInt(nodeCount);
+				if (a != b && !adjacency[a][b])
+				{
+					adjacency[a][b] = true;
+					adjacency[b][a] = true;
+					linkCount += 2;
+				}
+			}
+			int[] linkStarts = new int[nodeCount+1];
+			int[] links = new int[linkCount];
+			int nextLink = 0;
+			for (int a=0; a<nodeCount; a++)
+			{
+				linkStarts[a] = nextLink;
+				for (int b=0; b<nodeCount; b++)
+				{
+					if (adjacency[a][b])
+						links[nextLink++] = b;
+				}
+			}
+			linkStarts[nodeCount] = nextLink;
+			int[] sources = new int[nodeCount];
+			for (int i=0; i<nodeCount; i++)
+			{
+				sources[i] = random.nextInt(4) == 0 ? random.nextInt(32) : 0;
+			}
+
+			// naive relaxation until nothing changes
+			int[] expected = sources.clone();
+			boolean changed = true;
+			while (changed)
+			{
+				changed = false;
+				for (int a=0; a<nodeCount; a++)
+				{
+					for (int b=0; b<nodeCount; b++)
+					{
+						if (adjacency[a][b] && expected[b]-1 > expected[a])
+						{
+							expected[a] = expected[b]-1;
+							changed = true;
+						}
+					}
+				}
+			}
+
+			Assertions.assertArrayEquals(expected, NetworkPowerSolver.solve(sources, linkStarts, links));
+		}
+	}
+
+	@Test
+	void testParallelMatchesSerial()
+	{
+		Random random = new Random(0);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			for (int run=0; run<200; run++)
+			{
+				// wire networks are mostly lattices, with nodes numbered in the order they were found
+				int width = 1 + random.nextInt(40);
+				int nodeCount = width * (1 + random.nextInt(run < 190 ? 40 : 600));
+				List<List<Integer>> adjacency = new ArrayList<>();
+				for (int i=0; i<nodeCount; i++)
+				{
+					adjacency.add(new ArrayList<>());
+				}
+				for (int node=0; node<nodeCount; node++)
+				{
+					if (node % width != width-1 && random.nextInt(8) != 0)
+						link(adjacency, node, node+1);
+					if (node+width < nodeCount && random.nextInt(8) != 0)
+						link(adjacency, node, node+width);
+					if (random.nextInt(50) == 0)
+						link(adjacency, node, random.nextInt(nodeCount));
+				}
+				int[] linkStarts = new int[nodeCount+1];
+				int[] links = new int[adjacency.stream().mapToInt(List::size).sum()];
+				int nextLink = 0;
+				for (int node=0; node<nodeCount; node++)
+				{
+					linkStarts[node] = nextLink;
+					for (int neighbor : adjacency.get(node))
+					{
+						links[nextLink++] = neighbor;
+					}
+				}
+				linkStarts[nodeCount] = nextLink;
+				int[] sources = new int[nodeCount];
+				for (int i=0; i<nodeCount; i++)
+				{
+					sources[i] = random.nextInt(40) == 0 ? random.nextInt(40) - 4 : 0;
+				}
+
+				int[] expected = NetworkPowerSolver.solve(sources, linkStarts, links);
+				int partitionCount = 1 + random.nextInt(16);
+				Assertions.assertArrayEquals(expected, NetworkPowerSolver.solveParallel(sources, linkStarts, links, pool, partitionCount));
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testRunsMatchSerial()
+	{
+		Random random = new Random(0);
+		for (int run=0; run<2000; run++)
+		{
+			// long runs of wire between junctions, with taps and inputs along them and some loops
+			int nodeCount = 1 + random.nextInt(300);
+			List<List<Integer>> adjacency = new ArrayList<>();
+			for (int i=0; i<nodeCount; i++)
+			{
+				adjacency.add(new ArrayList<>());
+			}
+			for (int node=1; node<nodeCount; node++)
+			{
+				if (random.nextInt(30) != 0)
+					link(adjacency, node-1, node);
+				if (random.nextInt(25) == 0)
+					link(adjacency, node, random.nextInt(nodeCount));
+			}
+			int[] linkStarts = new int[nodeCount+1];
+			int[] links = new int[adjacency.stream().mapToInt(List::size).sum()];
+			int nextLink = 0;
+			for (int node=0; node<nodeCount; node++)
+			{
+				linkStarts[node] = nextLink;
+				for (int neighbor : adjacency.get(node))
+				{
+					links[nextLink++] = neighbor;
+				}
+			}
+			linkStarts[nodeCount] = nextLink;
+			int[] sources = new int[nodeCount];
+			for (int i=0; i<nodeCount; i++)
+			{
+				sources[i] = random.nextInt(30) == 0 ? random.nextInt(40) - 4 : 0;
+			}
+
+			Assertions.assertArrayEquals(NetworkPowerSolver.solve(sources, linkStarts, links), NetworkPowerSolver.solveRuns(sources, linkStarts, links));
+		}
+	}
+
+	@Test
+	void testRunIsFilledFromBothEnds()
+	{
+		int[][] line = makeLine(40);
+		int[] sources = new int[40];
+		sources[0] = 31;
+		sources[39] = 20;
+		int[] power = NetworkPowerSolver.solveRuns(sources, line[0], line[1]);
+		for (int node=0; node<40; node++)
+		{
+			Assertions.assertEquals(Math.max(0, Math.max(31-node, 20-(39-node))), power[node]);
+		}
+	}
+
+	private static void link(List<List<Integer>> adjacency, int a, int b)
+	{
+		if (a != b && !adjacency.get(a).contains(b))
+		{
+			adjacency.get(a).add(b);
+			adjacency.get(b).add(a);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package morered;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import commoble.morered.benchmark.BenchmarkWorld;
+import commoble.morered.benchmark.WireFixture;
+import commoble.morered.wires.WireBoundaryCache;
+import commoble.morered.wires.WirePowerInChunk;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkStatus;
+
+public class WireBoundaryCacheTests
+{
+	// a wire at the corner of an unloaded chunk, attached to an x face and wrapping around the edge of its wall along z,
+	// links to a wire in the diagonal chunk; that wire must still get its boundary power
+	@Test
+	void testCornerChunkBoundary()
+	{
+		WireFixture fixture = WireFixture.get();
+		BenchmarkWorld world = fixture.makeWorld();
+		BlockPos wallPos = new BlockPos(16,1,15); // chunk (1,0)
+		BlockPos unloadedWirePos = new BlockPos(15,1,15); // chunk (0,0), on the wall's west face
+		BlockPos edgePos = new BlockPos(15,1,16); // chunk (0,1), the empty wire block the edge passes through
+		BlockPos outsideWirePos = new BlockPos(16,1,16); // chunk (1,1), on the wall's south face
+		world.putBlock(wallPos, Blocks.STONE.defaultBlockState());
+		world.putBlock(unloadedWirePos, WireFixture.withFaces(fixture.redAlloyWire, Direction.EAST));
+		world.putBlock(edgePos, fixture.redAlloyWire.defaultBlockState());
+		world.putBlock(outsideWirePos, WireFixture.withFaces(fixture.redAlloyWire, Direction.NORTH));
+		int[] power = new int[6];
+		power[Direction.EAST.ordinal()] = WirePowerInChunk.MAX_POWER;
+		WirePowerInChunk.setPowerRaw(world, unloadedWirePos, power);
+
+		world.setChunkLoaded(0, 0, false);
+		WireBoundaryCache boundaries = new WireBoundaryCache();
+		boundaries.onChunkUnloaded(world, (Chunk)world.getChunk(0, 0, ChunkStatus.FULL, true));
+
+		Assertions.assertEquals(WirePowerInChunk.MAX_POWER - 1, boundaries.getIncomingPower(outsideWirePos, Direction.NORTH.ordinal()));
+	}
+}
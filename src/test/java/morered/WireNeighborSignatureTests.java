@@ -0,0 +1,62 @@
+package morered;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import commoble.morered.benchmark.BenchmarkWorld;
+import commoble.morered.benchmark.WireFixture;
+import commoble.morered.wires.WireNeighborSignatures;
+import commoble.morered.wires.WirePowerInChunk;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.LeverBlock;
+import net.minecraft.state.properties.AttachFace;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+
+public class WireNeighborSignatureTests
+{
+	private static BlockState lever(boolean powered)
+	{
+		// on the east side of the block west of it
+		return Blocks.LEVER.defaultBlockState()
+			.setValue(LeverBlock.FACE, AttachFace.WALL)
+			.setValue(LeverBlock.FACING, Direction.EAST)
+			.setValue(LeverBlock.POWERED, powered);
+	}
+
+	// a lever powering the stone a red alloy wire sits on must change the stone's signature both ways,
+	// even though the powered wire conducts power back into the stone
+	@Test
+	void testLeverThroughConductor()
+	{
+		WireFixture fixture = WireFixture.get();
+		BenchmarkWorld world = fixture.makeWorld();
+		BlockPos stonePos = new BlockPos(0,0,0);
+		BlockPos wirePos = stonePos.above();
+		BlockPos leverPos = stonePos.east();
+		BlockState wire = WireFixture.withFaces(fixture.redAlloyWire, Direction.DOWN);
+		world.putBlock(stonePos, Blocks.STONE.defaultBlockState());
+		world.putBlock(wirePos, wire);
+		world.putBlock(leverPos, lever(false));
+		WireNeighborSignatures signatures = new WireNeighborSignatures();
+		int down = Direction.DOWN.ordinal();
+
+		// remember the unpowered stone's signature
+		signatures.hasRelevantChange(world, fixture.redAlloyWire, wirePos, wire, stonePos, Direction.DOWN);
+
+		// lever on (setting it without updates, so the signature is checked before the wire handles anything)
+		world.putBlock(leverPos, lever(true));
+		Assertions.assertTrue(signatures.hasRelevantChange(world, fixture.redAlloyWire, wirePos, wire, stonePos, Direction.DOWN));
+		world.neighborChanged(wirePos, Blocks.LEVER, stonePos);
+		Assertions.assertTrue(WirePowerInChunk.getPower(world, wirePos, down) > 0);
+		// the wire's own power conducted into the stone doesn't count as a change
+		Assertions.assertFalse(signatures.hasRelevantChange(world, fixture.redAlloyWire, wirePos, wire, stonePos, Direction.DOWN));
+
+		// lever off, while the wire is still powering the stone
+		world.putBlock(leverPos, lever(false));
+		Assertions.assertTrue(signatures.hasRelevantChange(world, fixture.redAlloyWire, wirePos, wire, stonePos, Direction.DOWN));
+		world.neighborChanged(wirePos, Blocks.LEVER, stonePos);
+		Assertions.assertEquals(0, WirePowerInChunk.getPower(world, wirePos, down));
+	}
+}